@@ -0,0 +1,173 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.benchmark;
+
+import com.github.goober.coordinatetransformation.GaussKreugerProjection;
+import com.github.goober.coordinatetransformation.HelmertTransformation;
+import com.github.goober.coordinatetransformation.InterpolatedProjection;
+import com.github.goober.coordinatetransformation.ParallelConverter;
+import com.github.goober.coordinatetransformation.PolynomialKernel;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
+import com.github.goober.coordinatetransformation.positions.RT90Position.RT90BesselProjection;
+import com.github.goober.coordinatetransformation.positions.RT90Position.RT90Projection;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position.SWEREFProjection;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Batch conversions of coordinate arrays, sequential and parallel.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BatchBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int size;
+
+    private final GaussKreugerProjection sweref99 = ProjectionRegistry.get(SWEREFProjection.sweref_99_tm);
+    private final GaussKreugerProjection rt90 = ProjectionRegistry.get(RT90Projection.rt90_2_5_gon_v);
+    private final GaussKreugerProjection besselRt90 = ProjectionRegistry.get(RT90BesselProjection.bessel_rt90_2_5_gon_v);
+    private final InterpolatedProjection interpolatedSweref99 = InterpolatedProjection.get(SWEREFProjection.sweref_99_tm);
+
+    private double[] latitudes;
+    private double[] longitudes;
+    private double[] lat_lon;
+    private double[] x;
+    private double[] y;
+    private double[] x_y;
+    private double[] sweref99X;
+    private double[] sweref99Y;
+    private ExecutorService executor;
+    private ParallelConverter parallelConverter;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        latitudes = new double[size];
+        longitudes = new double[size];
+        lat_lon = new double[2 * size];
+        for (int i = 0; i < size; i++) {
+            latitudes[i] = 55.0 + random.nextDouble() * 14.0;
+            longitudes[i] = 11.0 + random.nextDouble() * 13.0;
+            lat_lon[2 * i] = latitudes[i];
+            lat_lon[2 * i + 1] = longitudes[i];
+        }
+        x = new double[size];
+        y = new double[size];
+        x_y = new double[2 * size];
+        rt90.geodetic_to_grid(lat_lon, 0, x_y, 0, size);
+        sweref99X = new double[size];
+        sweref99Y = new double[size];
+        sweref99.geodetic_to_grid(latitudes, longitudes, 0, sweref99X, sweref99Y, 0, size);
+        executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        parallelConverter = new ParallelConverter(executor);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Benchmark
+    public double[] geodeticToGridArrays() {
+        sweref99.geodetic_to_grid(latitudes, longitudes, 0, x, y, 0, size);
+        return x;
+    }
+
+    @Benchmark
+    public double[] kernelGeodeticToGridArrays() {
+        PolynomialKernel.geodetic_to_grid(sweref99, latitudes, longitudes, 0, x, y, 0, size);
+        return x;
+    }
+
+    @Benchmark
+    public double[] besselGeodeticToGridArrays() {
+        HelmertTransformation.SWEREF99_TO_RT90.geodetic_to_grid(besselRt90, latitudes, longitudes, 0, x, y, 0, size);
+        return x;
+    }
+
+    @Benchmark
+    public double[] gridToGeodeticArrays() {
+        sweref99.grid_to_geodetic(sweref99X, sweref99Y, 0, x, y, 0, size);
+        return x;
+    }
+
+    @Benchmark
+    public double[] kernelGridToGeodeticArrays() {
+        PolynomialKernel.grid_to_geodetic(sweref99, sweref99X, sweref99Y, 0, x, y, 0, size);
+        return x;
+    }
+
+    @Benchmark
+    public double[] interpolatedGeodeticToGridArrays() {
+        interpolatedSweref99.geodetic_to_grid(latitudes, longitudes, 0, x, y, 0, size);
+        return x;
+    }
+
+    @Benchmark
+    public double[] geodeticToGridInterleaved() {
+        double[] result = new double[2 * size];
+        sweref99.geodetic_to_grid(lat_lon, 0, result, 0, size);
+        return result;
+    }
+
+    @Benchmark
+    public double[] gridToGeodeticInterleaved() {
+        double[] result = new double[2 * size];
+        rt90.grid_to_geodetic(x_y, 0, result, 0, size);
+        return result;
+    }
+
+    @Benchmark
+    public double[] gridToGridInterleaved() {
+        double[] result = new double[2 * size];
+        rt90.grid_to_grid(x_y, 0, sweref99, result, 0, size);
+        return result;
+    }
+
+    @Benchmark
+    public double[] parallelGeodeticToGridArrays() throws InterruptedException {
+        parallelConverter.geodetic_to_grid(sweref99, latitudes, longitudes, 0, x, y, 0, size);
+        return x;
+    }
+
+    @Benchmark
+    public double[] parallelGridToGridInterleaved() throws InterruptedException {
+        double[] result = new double[2 * size];
+        parallelConverter.grid_to_grid(rt90, x_y, 0, sweref99, result, 0, size);
+        return result;
+    }
+}
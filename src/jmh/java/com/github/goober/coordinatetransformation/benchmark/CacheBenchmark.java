@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.benchmark;
+import com.github.goober.coordinatetransformation.ConversionCache;
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.GaussKreugerProjection;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cached conversions of a repeating set of coordinates, compared to converting them every time.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CacheBenchmark {
+
+    /**
+     * Number of distinct coordinates, converted through a cache holding 1000 results.
+     */
+    @Param({"100", "2000"})
+    public int distinct;
+
+    private final GaussKreugerProjection projection = ProjectionRegistry.get("sweref_99_tm");
+    private final CoordinateHolder holder = new CoordinateHolder();
+    private ConversionCache cache;
+    private double[] latitudes;
+    private double[] longitudes;
+    private int index;
+
+    @Setup
+    public void setup() {
+        cache = new ConversionCache(1000);
+        Random random = new Random(42);
+        latitudes = new double[distinct];
+        longitudes = new double[distinct];
+        for (int i = 0; i < distinct; i++) {
+            latitudes[i] = 55.0 + 14.0 * random.nextDouble();
+            longitudes[i] = 11.0 + 13.0 * random.nextDouble();
+        }
+    }
+
+    @Benchmark
+    public CoordinateHolder uncached() {
+        int i = next();
+        return projection.geodetic_to_grid(latitudes[i], longitudes[i], holder);
+    }
+
+    @Benchmark
+    public CoordinateHolder cached() {
+        int i = next();
+        return cache.geodetic_to_grid(projection, latitudes[i], longitudes[i], holder);
+    }
+
+    private int next() {
+        int i = index;
+        index = i + 1 == distinct ? 0 : i + 1;
+        return i;
+    }
+}
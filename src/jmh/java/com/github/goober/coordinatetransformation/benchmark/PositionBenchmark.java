@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.benchmark;
+
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.positions.RT90Position;
+import com.github.goober.coordinatetransformation.positions.RT90Position.RT90Projection;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position.SWEREFProjection;
+import com.github.goober.coordinatetransformation.positions.WGS84Position;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Conversions through the position classes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PositionBenchmark {
+
+    private final WGS84Position wgs84 = new WGS84Position(59.98201, 17.83503);
+    private final RT90Position rt90 = new RT90Position(6653174.343, 1613318.742);
+    private final SWEREF99Position sweref99 = new SWEREF99Position(6652797.165, 658185.201);
+    private final CoordinateHolder holder = new CoordinateHolder();
+
+    @Benchmark
+    public RT90Position rt90FromWGS84() {
+        return new RT90Position(wgs84, RT90Projection.rt90_2_5_gon_v);
+    }
+
+    @Benchmark
+    public SWEREF99Position sweref99FromWGS84() {
+        return new SWEREF99Position(wgs84, SWEREFProjection.sweref_99_tm);
+    }
+
+    @Benchmark
+    public WGS84Position rt90ToWGS84() {
+        return rt90.toWGS84();
+    }
+
+    @Benchmark
+    public WGS84Position sweref99ToWGS84() {
+        return sweref99.toWGS84();
+    }
+
+    @Benchmark
+    public CoordinateHolder sweref99ToWGS84Holder() {
+        return sweref99.toWGS84(holder);
+    }
+
+    @Benchmark
+    public SWEREF99Position rt90ToSweref99() {
+        return new SWEREF99Position(rt90, SWEREFProjection.sweref_99_tm);
+    }
+
+    @Benchmark
+    public SWEREF99Position rt90ToSweref99ViaWGS84() {
+        return new SWEREF99Position(rt90.toWGS84(), SWEREFProjection.sweref_99_tm);
+    }
+}
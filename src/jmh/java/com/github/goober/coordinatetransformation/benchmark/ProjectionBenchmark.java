@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.benchmark;
+
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.GaussKreuger;
+import com.github.goober.coordinatetransformation.GaussKreugerProjection;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single point conversions for every registered projection.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ProjectionBenchmark {
+
+    @Param({"rt90_7.5_gon_v", "rt90_5.0_gon_v", "rt90_2.5_gon_v", "rt90_0.0_gon_v", "rt90_2.5_gon_o", "rt90_5.0_gon_o",
+            "bessel_rt90_7.5_gon_v", "bessel_rt90_5.0_gon_v", "bessel_rt90_2.5_gon_v",
+            "bessel_rt90_0.0_gon_v", "bessel_rt90_2.5_gon_o", "bessel_rt90_5.0_gon_o",
+            "sweref_99_tm", "sweref_99_1200", "sweref_99_1330", "sweref_99_1500", "sweref_99_1630",
+            "sweref_99_1800", "sweref_99_1415", "sweref_99_1545", "sweref_99_1715", "sweref_99_1845",
+            "sweref_99_2015", "sweref_99_2145", "sweref_99_2315"})
+    public String projectionName;
+
+    @Param({"Reference", "Clenshaw"})
+    public GaussKreugerProjection.SeriesEvaluation seriesEvaluation;
+
+    private GaussKreugerProjection projection;
+    private final CoordinateHolder holder = new CoordinateHolder();
+    private double latitude;
+    private double longitude;
+    private double x;
+    private double y;
+
+    @Setup
+    public void setup() {
+        projection = ProjectionRegistry.get(projectionName).withSeriesEvaluation(seriesEvaluation);
+        latitude = 62.0;
+        longitude = projection.getCentralMeridian() + 0.3;
+        double[] x_y = projection.geodetic_to_grid(latitude, longitude);
+        x = x_y[0];
+        y = x_y[1];
+    }
+
+    @Benchmark
+    public double[] geodeticToGrid() {
+        return projection.geodetic_to_grid(latitude, longitude);
+    }
+
+    @Benchmark
+    public CoordinateHolder geodeticToGridHolder() {
+        return projection.geodetic_to_grid(latitude, longitude, holder);
+    }
+
+    @Benchmark
+    public double[] gridToGeodetic() {
+        return projection.grid_to_geodetic(x, y);
+    }
+
+    @Benchmark
+    public CoordinateHolder gridToGeodeticHolder() {
+        return projection.grid_to_geodetic(x, y, holder);
+    }
+
+    @Benchmark
+    public double[] gaussKreugerGeodeticToGrid() {
+        GaussKreuger gkProjection = new GaussKreuger();
+        gkProjection.swedish_params(projectionName);
+        return gkProjection.geodetic_to_grid(latitude, longitude);
+    }
+
+    @Benchmark
+    public double[] gaussKreugerGridToGeodetic() {
+        GaussKreuger gkProjection = new GaussKreuger();
+        gkProjection.swedish_params(projectionName);
+        return gkProjection.grid_to_geodetic(x, y);
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.benchmark;
+
+import com.github.goober.coordinatetransformation.server.ConversionClient;
+import com.github.goober.coordinatetransformation.server.ConversionServer;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Load generator for {@link ConversionServer}. Every connection is driven by
+ * its own thread, which keeps a fixed number of pipelined requests in flight.
+ *
+ * <p>Arguments: {@code [connections [pipeline depth [points per request [seconds [host port]]]]]},
+ * by default 8 connections, 16 requests in flight, 100 points per request
+ * and 10 seconds against a server started in this process.</p>
+ */
+public class ServerLoadGenerator {
+
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        final int depth = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        final int points = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        int seconds = args.length > 3 ? Integer.parseInt(args[3]) : 10;
+
+        ConversionServer server = null;
+        final InetSocketAddress address;
+        if (args.length > 5) {
+            address = new InetSocketAddress(args[4], Integer.parseInt(args[5]));
+        } else {
+            server = new ConversionServer(new InetSocketAddress(InetAddress.getByName(null), 0));
+            server.start();
+            address = server.getAddress();
+        }
+
+        final AtomicLong requests = new AtomicLong();
+        final AtomicLong latencyNanos = new AtomicLong();
+        final long end = System.nanoTime() + seconds * 1000000000L;
+        final CountDownLatch finished = new CountDownLatch(connections);
+        final List<Throwable> failures = new ArrayList<Throwable>();
+        for (int c = 0; c < connections; c++) {
+            final long seed = c;
+            new Thread(new Runnable() {
+                public void run() {
+                    try {
+                        drive(address, depth, points, end, seed, requests, latencyNanos);
+                    } catch (Throwable e) {
+                        synchronized (failures) {
+                            failures.add(e);
+                        }
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            }, "load-" + c).start();
+        }
+        finished.await();
+        if (server != null) {
+            server.close();
+        }
+        for (Throwable failure : failures) {
+            failure.printStackTrace();
+        }
+
+        long total = requests.get();
+        System.out.printf("%d connections, %d in flight, %d points per request%n", connections, depth, points);
+        System.out.printf("%.0f requests/s, %.0f points/s, mean latency %.1f us%n",
+                total / (double) seconds, total * (double) points / seconds,
+                total == 0 ? 0.0 : latencyNanos.get() / 1000.0 / total);
+    }
+
+    private static void drive(InetSocketAddress address, int depth, int points, long end, long seed,
+                              AtomicLong requests, AtomicLong latencyNanos) throws IOException {
+        Random random = new Random(seed);
+        double[] latitudes = new double[points];
+        double[] longitudes = new double[points];
+        for (int i = 0; i < points; i++) {
+            latitudes[i] = 55.0 + random.nextDouble() * 14.0;
+            longitudes[i] = 11.0 + random.nextDouble() * 13.0;
+        }
+        double[] x = new double[points];
+        double[] y = new double[points];
+        long[] sent = new long[depth];
+        ConversionClient client = new ConversionClient(address);
+        try {
+            for (int i = 0; i < depth; i++) {
+                sent[i] = System.nanoTime();
+                client.sendGeodeticToGrid("sweref_99_tm", latitudes, longitudes, 0, points);
+            }
+            client.flush();
+            long received = 0;
+            while (System.nanoTime() < end) {
+                client.receive(x, y, 0);
+                long now = System.nanoTime();
+                int slot = (int) (received++ % depth);
+                latencyNanos.addAndGet(now - sent[slot]);
+                requests.incrementAndGet();
+                sent[slot] = now;
+                client.sendGeodeticToGrid("sweref_99_tm", latitudes, longitudes, 0, points);
+                client.flush();
+            }
+            while (client.getPendingCount() > 0) {
+                client.receive(x, y, 0);
+            }
+        } finally {
+            client.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.benchmark;
+
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.GaussKreugerProjection;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position.SWEREFProjection;
+import com.github.goober.coordinatetransformation.positions.WGS84Position;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single point conversions from all available threads through one shared projection.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(Threads.MAX)
+@State(Scope.Benchmark)
+public class SharedProjectionBenchmark {
+
+    private final GaussKreugerProjection projection = ProjectionRegistry.get(SWEREFProjection.sweref_99_tm);
+    private final WGS84Position wgs84 = new WGS84Position(59.98201, 17.83503);
+    private double latitude = 59.98201;
+    private double longitude = 17.83503;
+
+    @State(Scope.Thread)
+    public static class ThreadState {
+        final CoordinateHolder holder = new CoordinateHolder();
+    }
+
+    @Benchmark
+    public double[] geodeticToGrid() {
+        return projection.geodetic_to_grid(latitude, longitude);
+    }
+
+    @Benchmark
+    public CoordinateHolder geodeticToGridHolder(ThreadState state) {
+        return projection.geodetic_to_grid(latitude, longitude, state.holder);
+    }
+
+    @Benchmark
+    public SWEREF99Position sweref99FromWGS84() {
+        return new SWEREF99Position(wgs84, SWEREFProjection.sweref_99_tm);
+    }
+}
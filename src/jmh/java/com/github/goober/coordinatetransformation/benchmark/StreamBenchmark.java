@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.benchmark;
+
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.Position.Grid;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position.SWEREFProjection;
+import com.github.goober.coordinatetransformation.positions.WGS84Position;
+import com.github.goober.coordinatetransformation.stream.CoordinateMapper;
+import com.github.goober.coordinatetransformation.stream.CoordinateProcessor;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Converting a stream of positions one at a time compared to the batching
+ * {@link CoordinateProcessor}, with a subscriber that requests a batch of
+ * positions at a time after they have arrived.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class StreamBenchmark {
+
+    private static final CoordinateMapper<WGS84Position, SWEREF99Position> MAPPER =
+            new CoordinateMapper<WGS84Position, SWEREF99Position>() {
+                public void read(WGS84Position record, CoordinateHolder coordinates) {
+                    coordinates.set(record.getLatitude(), record.getLongitude());
+                }
+
+                public SWEREF99Position create(WGS84Position record, double lat, double lon) {
+                    return new SWEREF99Position(lat, lon);
+                }
+            };
+
+    @Param({"16", "256"})
+    public int batchSize;
+
+    private WGS84Position[] positions;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        positions = new WGS84Position[10000];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = new WGS84Position(55.0 + random.nextDouble() * 14.0, 11.0 + random.nextDouble() * 13.0);
+        }
+    }
+
+    @Benchmark
+    public void perElement(Blackhole blackhole) {
+        for (WGS84Position position : positions) {
+            blackhole.consume(new SWEREF99Position(position, SWEREFProjection.sweref_99_tm));
+        }
+    }
+
+    @Benchmark
+    public void processor(final Blackhole blackhole) {
+        CoordinateProcessor<WGS84Position, SWEREF99Position> processor =
+                new CoordinateProcessor<WGS84Position, SWEREF99Position>(Grid.WGS84, null,
+                        Grid.SWEREF99, ProjectionRegistry.get(SWEREFProjection.sweref_99_tm), MAPPER, batchSize);
+        final Subscription[] downstream = new Subscription[1];
+        processor.subscribe(new Subscriber<SWEREF99Position>() {
+            public void onSubscribe(Subscription subscription) {
+                downstream[0] = subscription;
+            }
+
+            public void onNext(SWEREF99Position element) {
+                blackhole.consume(element);
+            }
+
+            public void onError(Throwable error) {
+                throw new IllegalStateException(error);
+            }
+
+            public void onComplete() {
+            }
+        });
+        processor.onSubscribe(new Subscription() {
+            public void request(long n) {
+            }
+
+            public void cancel() {
+            }
+        });
+        for (int i = 0; i < positions.length; i++) {
+            processor.onNext(positions[i]);
+            if ((i + 1) % batchSize == 0) {
+                downstream[0].request(batchSize);
+            }
+        }
+        processor.onComplete();
+        downstream[0].request(batchSize);
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.benchmark;
+
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.exception.FormatException;
+import com.github.goober.coordinatetransformation.positions.WGS84Formatter;
+import com.github.goober.coordinatetransformation.positions.WGS84Parser;
+import com.github.goober.coordinatetransformation.positions.WGS84Position;
+import com.github.goober.coordinatetransformation.positions.WGS84Position.WGS84Format;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.text.ParseException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing and formatting of WGS84 positions.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class WGS84FormatBenchmark {
+
+    private final String dms = "N 62º 10' 33.60\" E 015º 54' 10.80\"";
+    private final String dm = "N 62º 10.560' E 015º 54.180'";
+    private final String degrees = "62.176 15.903";
+    private final WGS84Position position = new WGS84Position(62.176, 15.903);
+    private final WGS84Parser parser = new WGS84Parser();
+    private final CoordinateHolder holder = new CoordinateHolder();
+    private final StringBuilder builder = new StringBuilder(32);
+
+    @Benchmark
+    public WGS84Position parseDegreesMinutesSeconds() throws ParseException {
+        return new WGS84Position(dms, WGS84Format.DegreesMinutesSeconds);
+    }
+
+    @Benchmark
+    public WGS84Position parseDegreesMinutes() throws ParseException {
+        return new WGS84Position(dm, WGS84Format.DegreesMinutes);
+    }
+
+    @Benchmark
+    public WGS84Position parseDegrees() throws ParseException {
+        return new WGS84Position(degrees, WGS84Format.Degrees);
+    }
+
+    @Benchmark
+    public CoordinateHolder parserDegreesMinutesSeconds() throws FormatException {
+        return parser.parse(dms, 0, dms.length(), WGS84Format.DegreesMinutesSeconds, holder);
+    }
+
+    @Benchmark
+    public CoordinateHolder parserDegreesMinutes() throws FormatException {
+        return parser.parse(dm, 0, dm.length(), WGS84Format.DegreesMinutes, holder);
+    }
+
+    @Benchmark
+    public String formatDegreesMinutesSeconds() {
+        return position.latitudeToString(WGS84Format.DegreesMinutesSeconds);
+    }
+
+    @Benchmark
+    public String formatDegreesMinutes() {
+        return position.latitudeToString(WGS84Format.DegreesMinutes);
+    }
+
+    @Benchmark
+    public String formatDegrees() {
+        return position.latitudeToString(WGS84Format.Degrees);
+    }
+
+    @Benchmark
+    public StringBuilder appendDegreesMinutesSeconds() {
+        builder.setLength(0);
+        return WGS84Formatter.appendLatitude(builder, position.getLatitude(), WGS84Format.DegreesMinutesSeconds);
+    }
+
+    @Benchmark
+    public StringBuilder appendDegrees() {
+        builder.setLength(0);
+        return WGS84Formatter.appendLatitude(builder, position.getLatitude(), WGS84Format.Degrees);
+    }
+
+    @Benchmark
+    public String positionToString() {
+        return position.toString();
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Size bounded cache of conversion results, for input where the same
+ * coordinates are converted over and over again. Entries are keyed by the
+ * projection(s) and the input coordinate, and the least recently used
+ * entries are evicted when the cache is full.
+ * <p>
+ * Input coordinates can optionally be quantized. A coordinate is then
+ * snapped to the nearest multiple of the quantum before it is converted,
+ * so nearby coordinates share one entry and the result does not depend on
+ * which of them was converted first. With a quantum of 0, the default,
+ * only identical coordinates share an entry and results are identical to
+ * an uncached conversion. Coordinates that are not finite, or too large to
+ * quantize, are converted without the cache and are not counted in the
+ * statistics.
+ * <p>
+ * The cache is split into independently locked segments, so it can be
+ * shared between threads. Each entry uses roughly {@link #BYTES_PER_ENTRY}
+ * bytes of heap, which together with the maximum size bounds its memory use.
+ */
+public final class ConversionCache {
+
+    /**
+     * Approximate heap use of one cache entry, including key and result.
+     */
+    public static final int BYTES_PER_ENTRY = 128;
+
+    public static final int DEFAULT_CONCURRENCY_LEVEL = 16;
+
+    /**
+     * Largest number of quanta a quantized coordinate may have, keeping it well inside the range of a long.
+     */
+    private static final double MAX_QUANTA = 0x1p62;
+
+    private final int maximumSize;
+    private final double geodeticQuantum;
+    private final double gridQuantum;
+    private final Segment[] segments;
+    private final int segmentMask;
+
+    /**
+     * Create a cache without quantization.
+     * @param maximumSize Maximum number of cached results
+     */
+    public ConversionCache(int maximumSize) {
+        this(maximumSize, 0.0, 0.0, DEFAULT_CONCURRENCY_LEVEL);
+    }
+
+    /**
+     * Create a cache.
+     * @param maximumSize Maximum number of cached results
+     * @param geodeticQuantum Quantum in degrees for latitudes and longitudes, 0 to disable quantization
+     * @param gridQuantum Quantum in metres for grid coordinates, 0 to disable quantization
+     * @param concurrencyLevel Expected number of threads using the cache at the same time
+     */
+    public ConversionCache(int maximumSize, double geodeticQuantum, double gridQuantum, int concurrencyLevel) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("Maximum size must be positive: " + maximumSize);
+        }
+        if (!(geodeticQuantum >= 0.0) || Double.isInfinite(geodeticQuantum)) {
+            throw new IllegalArgumentException("Invalid geodetic quantum: " + geodeticQuantum);
+        }
+        if (!(gridQuantum >= 0.0) || Double.isInfinite(gridQuantum)) {
+            throw new IllegalArgumentException("Invalid grid quantum: " + gridQuantum);
+        }
+        if (concurrencyLevel < 1) {
+            throw new IllegalArgumentException("Concurrency level must be positive: " + concurrencyLevel);
+        }
+        int segmentCount = 1;
+        while (segmentCount < concurrencyLevel && segmentCount * 2 <= maximumSize) {
+            segmentCount *= 2;
+        }
+        this.maximumSize = maximumSize;
+        this.geodeticQuantum = geodeticQuantum;
+        this.gridQuantum = gridQuantum;
+        this.segments = new Segment[segmentCount];
+        this.segmentMask = segmentCount - 1;
+        for (int i = 0; i < segmentCount; i++) {
+            // Spread the capacity so that the segments together hold at most maximumSize entries
+            segments[i] = new Segment(maximumSize / segmentCount + (i < maximumSize % segmentCount ? 1 : 0));
+        }
+    }
+
+    /**
+     * Cached conversion from geodetic coordinates to grid coordinates.
+     * @see GaussKreugerProjection#geodetic_to_grid(double, double, CoordinateHolder)
+     */
+    public CoordinateHolder geodetic_to_grid(GaussKreugerProjection projection, double latitude, double longitude,
+                                             CoordinateHolder result) {
+        if (!cacheable(latitude, geodeticQuantum) || !cacheable(longitude, geodeticQuantum)) {
+            return projection.geodetic_to_grid(latitude, longitude, result);
+        }
+        long a = quantize(latitude, geodeticQuantum);
+        long b = quantize(longitude, geodeticQuantum);
+        int hash = Key.hash(null, projection, a, b);
+        Segment segment = segmentFor(hash);
+        if (!segment.lookup(null, projection, a, b, hash, result)) {
+            projection.geodetic_to_grid(input(a, geodeticQuantum, latitude), input(b, geodeticQuantum, longitude),
+                    result);
+            segment.store(new Key(null, projection, a, b, hash), result);
+        }
+        return result;
+    }
+
+    /**
+     * Cached conversion from grid coordinates to geodetic coordinates.
+     * @see GaussKreugerProjection#grid_to_geodetic(double, double, CoordinateHolder)
+     */
+    public CoordinateHolder grid_to_geodetic(GaussKreugerProjection projection, double x, double y,
+                                             CoordinateHolder result) {
+        if (!cacheable(x, gridQuantum) || !cacheable(y, gridQuantum)) {
+            return projection.grid_to_geodetic(x, y, result);
+        }
+        long a = quantize(x, gridQuantum);
+        long b = quantize(y, gridQuantum);
+        int hash = Key.hash(projection, null, a, b);
+        Segment segment = segmentFor(hash);
+        if (!segment.lookup(projection, null, a, b, hash, result)) {
+            projection.grid_to_geodetic(input(a, gridQuantum, x), input(b, gridQuantum, y), result);
+            segment.store(new Key(projection, null, a, b, hash), result);
+        }
+        return result;
+    }
+
+    /**
+     * Cached conversion from grid coordinates in one projection to another.
+     * @see GaussKreugerProjection#grid_to_grid(double, double, GaussKreugerProjection, CoordinateHolder)
+     */
+    public CoordinateHolder grid_to_grid(GaussKreugerProjection projection, double x, double y,
+                                         GaussKreugerProjection target, CoordinateHolder result) {
+        if (!cacheable(x, gridQuantum) || !cacheable(y, gridQuantum)) {
+            return projection.grid_to_grid(x, y, target, result);
+        }
+        long a = quantize(x, gridQuantum);
+        long b = quantize(y, gridQuantum);
+        int hash = Key.hash(projection, target, a, b);
+        Segment segment = segmentFor(hash);
+        if (!segment.lookup(projection, target, a, b, hash, result)) {
+            projection.grid_to_grid(input(a, gridQuantum, x), input(b, gridQuantum, y), target, result);
+            segment.store(new Key(projection, target, a, b, hash), result);
+        }
+        return result;
+    }
+
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return Number of cached results
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    public long getHitCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.hits;
+            }
+        }
+        return count;
+    }
+
+    public long getMissCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.misses;
+            }
+        }
+        return count;
+    }
+
+    public long getEvictionCount() {
+        long count = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                count += segment.evictions;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * @return Share of lookups that were served from the cache, or 0 if there have been no lookups
+     */
+    public double getHitRate() {
+        long hits = getHitCount();
+        long lookups = hits + getMissCount();
+        return lookups == 0 ? 0.0 : (double) hits / lookups;
+    }
+
+    /**
+     * Remove all cached results. Statistics are kept.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "ConversionCache[size=" + size() + ", maximumSize=" + maximumSize + ", hits=" + getHitCount()
+                + ", misses=" + getMissCount() + ", evictions=" + getEvictionCount() + "]";
+    }
+
+    private Segment segmentFor(int hash) {
+        return segments[(hash ^ (hash >>> 16)) & segmentMask];
+    }
+
+    /**
+     * @return False for values that are not finite or too large to quantize,
+     * which are converted without the cache
+     */
+    private static boolean cacheable(double value, double quantum) {
+        if (quantum == 0.0) {
+            return !Double.isNaN(value) && !Double.isInfinite(value);
+        }
+        return Math.abs(value / quantum) < MAX_QUANTA;
+    }
+
+    private static long quantize(double value, double quantum) {
+        // Adding 0.0 normalizes -0.0 so that it shares an entry with 0.0
+        return quantum == 0.0 ? Double.doubleToLongBits(value + 0.0) : Math.round(value / quantum);
+    }
+
+    private static double input(long quantized, double quantum, double value) {
+        return quantum == 0.0 ? value : quantized * quantum;
+    }
+
+    /**
+     * Cache key. Each segment has one mutable key to look up entries with,
+     * so that only misses allocate a key.
+     */
+    private static final class Key {
+
+        private GaussKreugerProjection source;
+        private GaussKreugerProjection target;
+        private long a;
+        private long b;
+        private int hash;
+
+        Key() {
+        }
+
+        Key(GaussKreugerProjection source, GaussKreugerProjection target, long a, long b, int hash) {
+            set(source, target, a, b, hash);
+        }
+
+        void set(GaussKreugerProjection source, GaussKreugerProjection target, long a, long b, int hash) {
+            this.source = source;
+            this.target = target;
+            this.a = a;
+            this.b = b;
+            this.hash = hash;
+        }
+
+        static int hash(GaussKreugerProjection source, GaussKreugerProjection target, long a, long b) {
+            long h = a * 0x9E3779B97F4A7C15L + b;
+            h = h * 0x9E3779B97F4A7C15L + System.identityHashCode(source);
+            h = h * 0x9E3779B97F4A7C15L + System.identityHashCode(target);
+            return (int) (h ^ (h >>> 32));
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return a == other.a && b == other.b && source == other.source && target == other.target;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private static final class Segment extends LinkedHashMap<Key, double[]> {
+
+        private final int capacity;
+        private final Key probe = new Key();
+        private long hits;
+        private long misses;
+        private long evictions;
+
+        Segment(int capacity) {
+            super(16, 0.75f, true);
+            this.capacity = capacity;
+        }
+
+        synchronized boolean lookup(GaussKreugerProjection source, GaussKreugerProjection target, long a, long b,
+                                    int hash, CoordinateHolder result) {
+            probe.set(source, target, a, b, hash);
+            double[] values = get(probe);
+            if (values == null) {
+                misses++;
+                return false;
+            }
+            hits++;
+            result.set(values[0], values[1]);
+            return true;
+        }
+
+        synchronized void store(Key key, CoordinateHolder result) {
+            put(key, new double[]{result.getLatitude(), result.getLongitude()});
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, double[]> eldest) {
+            if (size() > capacity) {
+                evictions++;
+                return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Converts single points submitted from many threads in batches. A worker
+ * thread collects submitted points until a batch is full or the first point
+ * of the batch has waited for the maximum delay, converts the batch with the
+ * batch methods of {@link GaussKreugerProjection} and completes the future of
+ * every point. Under load the hand-over between threads is paid once per
+ * batch instead of once per point, at the cost of at most the maximum delay
+ * in latency. Every point is converted by the same code as a single
+ * conversion, so the result does not depend on which other points shared its
+ * batch.
+ *
+ * <p>Submitting and waiting only block on {@code java.util.concurrent}
+ * locks, never in synchronized blocks, so callers may run in virtual
+ * threads without pinning their carrier threads. When the queue of
+ * submitted points is full, submitting blocks until there is room.</p>
+ */
+public final class ConversionService {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+    public static final long DEFAULT_MAX_DELAY_MICROS = 1000;
+    public static final int DEFAULT_QUEUE_CAPACITY = 65536;
+
+    private static final AtomicInteger SERVICE_NUMBER = new AtomicInteger();
+
+    private final int batchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<Request> queue;
+    private final Thread worker;
+    private final CountDownLatch terminated = new CountDownLatch(1);
+    private volatile boolean shutdown;
+
+    /**
+     * Create a service with the default batch size, delay and queue capacity,
+     * converting in a daemon thread.
+     */
+    public ConversionService() {
+        this(DEFAULT_BATCH_SIZE, DEFAULT_MAX_DELAY_MICROS, TimeUnit.MICROSECONDS, DEFAULT_QUEUE_CAPACITY,
+                new ThreadFactory() {
+                    public Thread newThread(Runnable runnable) {
+                        Thread thread = new Thread(runnable, "coordinate-conversion-" + SERVICE_NUMBER.incrementAndGet());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Create a service
+     * @param batchSize Maximum number of points converted at a time
+     * @param maxDelay Longest time a point waits for a batch to fill
+     * @param unit Unit of the maximum delay
+     * @param queueCapacity Maximum number of submitted points waiting to be converted
+     * @param threadFactory Creates the worker thread
+     */
+    public ConversionService(int batchSize, long maxDelay, TimeUnit unit, int queueCapacity,
+                             ThreadFactory threadFactory) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        if (maxDelay < 0) {
+            throw new IllegalArgumentException("Maximum delay must not be negative: " + maxDelay);
+        }
+        if (queueCapacity < 1) {
+            throw new IllegalArgumentException("Queue capacity must be positive: " + queueCapacity);
+        }
+        this.batchSize = batchSize;
+        this.maxDelayNanos = unit.toNanos(maxDelay);
+        this.queue = new ArrayBlockingQueue<Request>(queueCapacity);
+        this.worker = threadFactory.newThread(new Runnable() {
+            public void run() {
+                try {
+                    work();
+                } finally {
+                    terminated.countDown();
+                }
+            }
+        });
+        worker.start();
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public long getMaxDelay(TimeUnit unit) {
+        return unit.convert(maxDelayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Submit geodetic coordinates for conversion to grid coordinates.
+     * @param projection Projection to convert to
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return Future x (northing) and y (easting)
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     * @throws RejectedExecutionException if the service has been shut down
+     */
+    public Future<double[]> geodetic_to_grid(GaussKreugerProjection projection, double latitude, double longitude)
+            throws InterruptedException {
+        return submit(new Request(projection, true, latitude, longitude));
+    }
+
+    /**
+     * Submit grid coordinates for conversion to geodetic coordinates.
+     * @param projection Projection to convert from
+     * @param x X (northing) value
+     * @param y Y (easting) value
+     * @return Future latitude and longitude in degrees
+     * @throws InterruptedException if interrupted while waiting for room in the queue
+     * @throws RejectedExecutionException if the service has been shut down
+     */
+    public Future<double[]> grid_to_geodetic(GaussKreugerProjection projection, double x, double y)
+            throws InterruptedException {
+        return submit(new Request(projection, false, x, y));
+    }
+
+    /**
+     * Stop accepting points. Points already submitted are still converted.
+     */
+    public void shutdown() {
+        shutdown = true;
+        worker.interrupt();
+    }
+
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    /**
+     * Wait for the points submitted before {@link #shutdown()} to be converted.
+     * @return True if the service terminated, false if the timeout elapsed first
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return terminated.await(timeout, unit);
+    }
+
+    private Future<double[]> submit(Request request) throws InterruptedException {
+        if (request.projection == null) {
+            throw new NullPointerException("projection");
+        }
+        if (shutdown) {
+            throw new RejectedExecutionException("The conversion service has been shut down");
+        }
+        queue.put(request);
+        if (shutdown && queue.remove(request)) {
+            throw new RejectedExecutionException("The conversion service has been shut down");
+        }
+        return request;
+    }
+
+    private void work() {
+        List<Request> batch = new ArrayList<Request>(batchSize);
+        double[] a = new double[batchSize];
+        double[] b = new double[batchSize];
+        Request[] group = new Request[batchSize];
+        for (;;) {
+            try {
+                collect(batch);
+            } catch (InterruptedException e) {
+                // Interrupted by shutdown, convert what is left in the queue.
+                queue.drainTo(batch, batchSize - batch.size());
+            }
+            if (batch.isEmpty() && shutdown) {
+                return;
+            }
+            convert(batch, a, b, group);
+            batch.clear();
+        }
+    }
+
+    /**
+     * Wait for a first point, then for the batch to fill up or the maximum delay to pass.
+     */
+    private void collect(List<Request> batch) throws InterruptedException {
+        if (shutdown) {
+            queue.drainTo(batch, batchSize);
+            return;
+        }
+        batch.add(queue.take());
+        long deadline = System.nanoTime() + maxDelayNanos;
+        while (batch.size() < batchSize) {
+            if (queue.drainTo(batch, batchSize - batch.size()) > 0) {
+                continue;
+            }
+            long remaining = deadline - System.nanoTime();
+            Request request = remaining > 0 ? queue.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (request == null) {
+                return;
+            }
+            batch.add(request);
+        }
+    }
+
+    /**
+     * Convert a batch, one group of points with the same projection and direction at a time.
+     */
+    private static void convert(List<Request> batch, double[] a, double[] b, Request[] group) {
+        int size = batch.size();
+        for (int first = 0; first < size; first++) {
+            Request head = batch.get(first);
+            if (head == null) {
+                continue;
+            }
+            int count = 0;
+            for (int i = first; i < size; i++) {
+                Request request = batch.get(i);
+                if (request != null && request.projection == head.projection && request.toGrid == head.toGrid) {
+                    batch.set(i, null);
+                    if (request.start()) {
+                        group[count] = request;
+                        a[count] = request.a;
+                        b[count] = request.b;
+                        count++;
+                    }
+                }
+            }
+            try {
+                convert(head.projection, head.toGrid, a, b, count);
+                for (int i = 0; i < count; i++) {
+                    group[i].complete(new double[]{a[i], b[i]}, null);
+                }
+            } catch (RuntimeException e) {
+                for (int i = 0; i < count; i++) {
+                    group[i].complete(null, e);
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                group[i] = null;
+            }
+        }
+    }
+
+    private static void convert(GaussKreugerProjection projection, boolean toGrid, double[] a, double[] b, int count) {
+        if (toGrid) {
+            projection.geodetic_to_grid(a, b, 0, a, b, 0, count);
+        } else {
+            projection.grid_to_geodetic(a, b, 0, a, b, 0, count);
+        }
+    }
+
+    /**
+     * A submitted point and the future of its conversion.
+     */
+    private static final class Request implements Future<double[]> {
+
+        private static final int WAITING = 0;
+        private static final int CONVERTING = 1;
+        private static final int DONE = 2;
+        private static final int CANCELLED = 3;
+
+        final GaussKreugerProjection projection;
+        final boolean toGrid;
+        final double a;
+        final double b;
+        private final AtomicInteger state = new AtomicInteger(WAITING);
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private double[] result;
+        private RuntimeException failure;
+
+        Request(GaussKreugerProjection projection, boolean toGrid, double a, double b) {
+            this.projection = projection;
+            this.toGrid = toGrid;
+            this.a = a;
+            this.b = b;
+        }
+
+        /**
+         * @return False if the request has been cancelled and should not be converted
+         */
+        boolean start() {
+            return state.compareAndSet(WAITING, CONVERTING);
+        }
+
+        void complete(double[] result, RuntimeException failure) {
+            this.result = result;
+            this.failure = failure;
+            state.set(DONE);
+            completed.countDown();
+        }
+
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            if (state.compareAndSet(WAITING, CANCELLED)) {
+                completed.countDown();
+                return true;
+            }
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == CANCELLED;
+        }
+
+        public boolean isDone() {
+            return completed.getCount() == 0;
+        }
+
+        public double[] get() throws InterruptedException, ExecutionException {
+            completed.await();
+            return result();
+        }
+
+        public double[] get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException, TimeoutException {
+            if (!completed.await(timeout, unit)) {
+                throw new TimeoutException();
+            }
+            return result();
+        }
+
+        private double[] result() throws ExecutionException {
+            if (state.get() == CANCELLED) {
+                throw new CancellationException();
+            }
+            if (failure != null) {
+                throw new ExecutionException(failure);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation;
+
+import com.github.goober.coordinatetransformation.Position.Grid;
+
+import java.util.Arrays;
+
+/**
+ * Growable columnar store of coordinates in one grid and projection. The
+ * coordinates are kept in two primitive arrays, one per axis, so a point
+ * costs 16 bytes and iterating over the points is cache friendly.
+ * As in {@link Position}, latitude holds the x (northing) value and
+ * longitude the y (easting) value for grid coordinates.
+ * <p>
+ * The whole buffer can be converted in place to another grid or projection
+ * with {@link #transformTo(Grid, GaussKreugerProjection)}.
+ * Buffers are not thread safe.
+ */
+public final class CoordinateBuffer {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private Grid grid;
+    private GaussKreugerProjection projection;
+    private double[] latitudes;
+    private double[] longitudes;
+    private int size;
+
+    /**
+     * Create an empty buffer.
+     * @param grid Grid of the coordinates
+     * @param projection Projection for grid coordinates, null for WGS84
+     */
+    public CoordinateBuffer(Grid grid, GaussKreugerProjection projection) {
+        this(grid, projection, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Create an empty buffer.
+     * @param grid Grid of the coordinates
+     * @param projection Projection for grid coordinates, null for WGS84
+     * @param initialCapacity Number of coordinates the buffer can hold before it grows
+     */
+    public CoordinateBuffer(Grid grid, GaussKreugerProjection projection, int initialCapacity) {
+        checkProjection(grid, projection);
+        if (initialCapacity < 0 || initialCapacity > MAX_CAPACITY) {
+            throw new IllegalArgumentException("Invalid capacity: " + initialCapacity);
+        }
+        this.grid = grid;
+        this.projection = projection;
+        this.latitudes = new double[initialCapacity];
+        this.longitudes = new double[initialCapacity];
+    }
+
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return Projection of the coordinates, null for WGS84
+     */
+    public GaussKreugerProjection getProjection() {
+        return projection;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public int capacity() {
+        return latitudes.length;
+    }
+
+    /**
+     * Append a coordinate.
+     * @param lat Latitude or x (northing) value
+     * @param lon Longitude or y (easting) value
+     */
+    public void add(double lat, double lon) {
+        if (size == latitudes.length) {
+            grow(size + 1);
+        }
+        latitudes[size] = lat;
+        longitudes[size] = lon;
+        size++;
+    }
+
+    /**
+     * Append coordinates given as parallel arrays.
+     * @param lats Latitudes or x (northing) values
+     * @param lons Longitudes or y (easting) values
+     * @param offset Index of the first coordinate to append
+     * @param length Number of coordinates to append
+     */
+    public void addAll(double[] lats, double[] lons, int offset, int length) {
+        GaussKreugerProjection.checkRange(lats, offset, length);
+        GaussKreugerProjection.checkRange(lons, offset, length);
+        ensureCapacity(size + length);
+        System.arraycopy(lats, offset, latitudes, size, length);
+        System.arraycopy(lons, offset, longitudes, size, length);
+        size += length;
+    }
+
+    public double getLatitude(int index) {
+        checkIndex(index);
+        return latitudes[index];
+    }
+
+    public double getLongitude(int index) {
+        checkIndex(index);
+        return longitudes[index];
+    }
+
+    /**
+     * Read a coordinate without allocating.
+     * @param index Index of the coordinate
+     * @param result Holder that receives the coordinate
+     * @return The supplied result holder
+     */
+    public CoordinateHolder get(int index, CoordinateHolder result) {
+        checkIndex(index);
+        result.set(latitudes[index], longitudes[index]);
+        return result;
+    }
+
+    public void set(int index, double lat, double lon) {
+        checkIndex(index);
+        latitudes[index] = lat;
+        longitudes[index] = lon;
+    }
+
+    /**
+     * Copy coordinates to parallel arrays.
+     * @param from Index of the first coordinate to copy
+     * @param lats Destination for the latitudes or x (northing) values
+     * @param lons Destination for the longitudes or y (easting) values
+     * @param destOffset Index of the first copied coordinate in the destination arrays
+     * @param length Number of coordinates to copy
+     */
+    public void copyTo(int from, double[] lats, double[] lons, int destOffset, int length) {
+        if (from < 0 || length < 0 || from > size - length) {
+            throw new IndexOutOfBoundsException("Range [" + from + ", " + from + " + " + length
+                    + ") out of bounds for size " + size);
+        }
+        GaussKreugerProjection.checkRange(lats, destOffset, length);
+        GaussKreugerProjection.checkRange(lons, destOffset, length);
+        System.arraycopy(latitudes, from, lats, destOffset, length);
+        System.arraycopy(longitudes, from, lons, destOffset, length);
+    }
+
+    /**
+     * Remove all coordinates, keeping the capacity.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Make sure the buffer can hold at least the given number of coordinates without growing.
+     * @param minCapacity Required capacity
+     */
+    public void ensureCapacity(int minCapacity) {
+        if (minCapacity > latitudes.length) {
+            grow(minCapacity);
+        }
+    }
+
+    /**
+     * Release unused capacity.
+     */
+    public void trimToSize() {
+        if (size < latitudes.length) {
+            latitudes = Arrays.copyOf(latitudes, size);
+            longitudes = Arrays.copyOf(longitudes, size);
+        }
+    }
+
+    /**
+     * Convert all coordinates in place to another grid or projection.
+     * Grid to grid conversions go directly between the projections.
+     * @param targetGrid Grid to convert to
+     * @param targetProjection Projection to convert to, null for WGS84
+     */
+    public void transformTo(Grid targetGrid, GaussKreugerProjection targetProjection) {
+        checkProjection(targetGrid, targetProjection);
+        if (projection != null && targetProjection != null) {
+            if (projection != targetProjection) {
+                projection.grid_to_grid(latitudes, longitudes, 0, targetProjection, latitudes, longitudes, 0, size);
+            }
+        } else if (projection != null) {
+            projection.grid_to_geodetic(latitudes, longitudes, 0, latitudes, longitudes, 0, size);
+        } else if (targetProjection != null) {
+            targetProjection.geodetic_to_grid(latitudes, longitudes, 0, latitudes, longitudes, 0, size);
+        }
+        grid = targetGrid;
+        projection = targetProjection;
+    }
+
+    @Override
+    public String toString() {
+        return "CoordinateBuffer[grid=" + grid + ", size=" + size + "]";
+    }
+
+    private void grow(int minCapacity) {
+        if (minCapacity < 0 || minCapacity > MAX_CAPACITY) {
+            throw new OutOfMemoryError("Required capacity " + minCapacity + " exceeds the maximum buffer size");
+        }
+        int capacity = (int) Math.min(MAX_CAPACITY,
+                Math.max(minCapacity, latitudes.length + (latitudes.length >> 1) + 1L));
+        latitudes = Arrays.copyOf(latitudes, capacity);
+        longitudes = Arrays.copyOf(longitudes, capacity);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+
+    static void checkProjection(Grid grid, GaussKreugerProjection projection) {
+        if (grid == null) {
+            throw new NullPointerException("grid");
+        }
+        if ((grid == Grid.WGS84) != (projection == null)) {
+            throw new IllegalArgumentException("Grid coordinates require a projection, WGS84 coordinates must not have one");
+        }
+    }
+}
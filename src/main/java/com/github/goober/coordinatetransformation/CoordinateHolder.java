@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation;
+
+/**
+ * Mutable holder for the result of a single conversion. A holder can be
+ * reused for any number of conversions so that no result is allocated per
+ * point. As in {@link Position}, latitude holds the x (northing) value and
+ * longitude the y (easting) value for grid coordinates.
+ * Holders are not thread safe.
+ */
+public final class CoordinateHolder {
+
+    final double[] values = new double[2];
+
+    public CoordinateHolder() {
+    }
+
+    public CoordinateHolder(double lat, double lon) {
+        set(lat, lon);
+    }
+
+    public double getLatitude() {
+        return values[0];
+    }
+
+    public double getLongitude() {
+        return values[1];
+    }
+
+    public void set(double lat, double lon) {
+        values[0] = lat;
+        values[1] = lon;
+    }
+}
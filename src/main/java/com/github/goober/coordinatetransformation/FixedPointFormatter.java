@@ -0,0 +1,94 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation;
+
+import java.util.Locale;
+
+/**
+ * Fixed precision decimal formatting that appends to a StringBuilder.
+ * The output is identical to {@code String.format(Locale.US, "%.Nf", value)}
+ * but avoids parsing the format string and creating intermediate objects.
+ */
+public final class FixedPointFormatter {
+
+    private static final long[] POWERS_OF_TEN = {
+            1L, 10L, 100L, 1000L, 10000L, 100000L, 1000000L, 10000000L, 100000000L,
+            1000000000L, 10000000000L, 100000000000L, 1000000000000L, 10000000000000L,
+            100000000000000L, 1000000000000000L};
+
+    /**
+     * Largest scaled value that is formatted without falling back to String.format.
+     */
+    private static final double MAX_SCALED = (double) (1L << 52);
+
+    /**
+     * Relative error bound for the scaled value. It covers the rounding of the
+     * multiplication and the difference between the double and its shortest
+     * decimal representation, which is what String.format rounds.
+     */
+    private static final double RELATIVE_ERROR = 1e-15;
+
+    private FixedPointFormatter() {
+    }
+
+    /**
+     * Append a value with a fixed number of decimals, rounded half up
+     * @param out Builder to append to
+     * @param value Value to format
+     * @param decimals Number of decimals, 0 to 15
+     * @return The supplied builder
+     */
+    public static StringBuilder append(StringBuilder out, double value, int decimals) {
+        if (decimals < 0 || decimals >= POWERS_OF_TEN.length) {
+            throw new IllegalArgumentException("Unsupported number of decimals: " + decimals);
+        }
+        long unit = POWERS_OF_TEN[decimals];
+        double scaled = Math.abs(value) * unit;
+        if (!(scaled < MAX_SCALED)) {
+            // NaN, infinity or too large to be scaled exactly.
+            return slowAppend(out, value, decimals);
+        }
+        double floor = Math.floor(scaled);
+        double fraction = scaled - floor;
+        if (Math.abs(fraction - 0.5) <= scaled * RELATIVE_ERROR + Double.MIN_NORMAL) {
+            // Too close to a tie to know which way String.format rounds.
+            return slowAppend(out, value, decimals);
+        }
+        long units = (long) floor;
+        if (fraction > 0.5) {
+            units++;
+        }
+
+        if (Double.doubleToRawLongBits(value) < 0) {
+            out.append('-');
+        }
+        out.append(units / unit);
+        if (decimals > 0) {
+            out.append('.');
+            long remainder = units % unit;
+            for (long digit = unit / 10; digit > 1 && remainder < digit; digit /= 10) {
+                out.append('0');
+            }
+            out.append(remainder);
+        }
+        return out;
+    }
+
+    private static StringBuilder slowAppend(StringBuilder out, double value, int decimals) {
+        return out.append(String.format(Locale.US, "%." + decimals + "f", value));
+    }
+}
@@ -0,0 +1,731 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation;
+
+import com.github.goober.coordinatetransformation.metrics.ConversionMetrics;
+
+/**
+ * Immutable Gauss-Kreuger projection.
+ * All ellipsoid based series coefficients are computed once when the
+ * projection is created, which makes instances thread safe and cheap to
+ * share between conversions.
+ * <p>
+ * A single instance can be used by any number of threads at the same time
+ * without locking. The conversions themselves only read final fields and
+ * write nothing but the caller's result arrays or holder, so each thread
+ * should use its own {@link CoordinateHolder} and destination arrays. With
+ * metrics turned off only the overloads returning a new array allocate.
+ * When {@link ConversionMetrics} are installed every call also updates the
+ * shared, striped counters of the installed metrics, and the first
+ * conversion of each projection allocates its counters.
+ */
+public final class GaussKreugerProjection {
+
+    /**
+     * How the projection series are evaluated.
+     */
+    public enum SeriesEvaluation {
+        /**
+         * Every term of the series is evaluated separately, exactly as in the
+         * original formulas published by Lantmäteriet.
+         */
+        Reference,
+        /**
+         * The higher harmonics are derived from the base ones with Clenshaw
+         * summation, which needs about a third of the transcendental function
+         * calls. Results agree with the reference evaluation far below a millimetre.
+         */
+        Clenshaw
+    }
+
+    private static final double DEG_TO_RAD = Math.PI / 180.0;
+
+    /**
+     * Semi-major axis of the ellipsoid.
+     */
+    private final double axis;
+
+    /**
+     * Flattening of the ellipsoid.
+     */
+    private final double flattening;
+
+    /**
+     * Central meridian for the projection.
+     */
+    private final double central_meridian;
+
+    /**
+     * Scale on central meridian.
+     */
+    private final double scale;
+
+    /**
+     * Offset for origo.
+     */
+    private final double false_northing;
+
+    /**
+     * Offset for origo.
+     */
+    private final double false_easting;
+
+    private final SeriesEvaluation series_evaluation;
+    private final boolean clenshaw;
+
+    /**
+     * Rounding of produced grid coordinates.
+     */
+    private final GridPrecision precision;
+
+    // Ellipsoid-based stuff, the coefficients are shared with PolynomialKernel.
+    private final double a_roof;
+    final double scale_a_roof;
+    final double lambda_zero;
+
+    // Coefficients for geodetic_to_grid.
+    final double A;
+    final double B;
+    final double C;
+    final double D;
+    final double beta1;
+    final double beta2;
+    final double beta3;
+    final double beta4;
+
+    // Coefficients for grid_to_geodetic.
+    final double Astar;
+    final double Bstar;
+    final double Cstar;
+    final double Dstar;
+    final double delta1;
+    final double delta2;
+    final double delta3;
+    final double delta4;
+
+    /**
+     * Create a new projection using the reference series evaluation and millimetre precision.
+     * @param axis Semi-major axis of the ellipsoid
+     * @param flattening Flattening of the ellipsoid
+     * @param central_meridian Central meridian in degrees
+     * @param scale Scale on central meridian
+     * @param false_northing Northing offset for origo
+     * @param false_easting Easting offset for origo
+     */
+    public GaussKreugerProjection(double axis, double flattening, double central_meridian,
+                                  double scale, double false_northing, double false_easting) {
+        this(axis, flattening, central_meridian, scale, false_northing, false_easting,
+                SeriesEvaluation.Reference, GridPrecision.MILLIMETRE);
+    }
+
+    /**
+     * Create a new projection using millimetre precision.
+     * @param axis Semi-major axis of the ellipsoid
+     * @param flattening Flattening of the ellipsoid
+     * @param central_meridian Central meridian in degrees
+     * @param scale Scale on central meridian
+     * @param false_northing Northing offset for origo
+     * @param false_easting Easting offset for origo
+     * @param series_evaluation How the projection series are evaluated
+     */
+    public GaussKreugerProjection(double axis, double flattening, double central_meridian,
+                                  double scale, double false_northing, double false_easting,
+                                  SeriesEvaluation series_evaluation) {
+        this(axis, flattening, central_meridian, scale, false_northing, false_easting,
+                series_evaluation, GridPrecision.MILLIMETRE);
+    }
+
+    /**
+     * Create a new projection.
+     * @param axis Semi-major axis of the ellipsoid
+     * @param flattening Flattening of the ellipsoid
+     * @param central_meridian Central meridian in degrees
+     * @param scale Scale on central meridian
+     * @param false_northing Northing offset for origo
+     * @param false_easting Easting offset for origo
+     * @param series_evaluation How the projection series are evaluated
+     * @param precision Rounding of produced grid coordinates
+     */
+    public GaussKreugerProjection(double axis, double flattening, double central_meridian,
+                                  double scale, double false_northing, double false_easting,
+                                  SeriesEvaluation series_evaluation, GridPrecision precision) {
+        if (series_evaluation == null) {
+            throw new NullPointerException("series_evaluation");
+        }
+        if (precision == null) {
+            throw new NullPointerException("precision");
+        }
+        this.axis = axis;
+        this.flattening = flattening;
+        this.central_meridian = central_meridian;
+        this.scale = scale;
+        this.false_northing = false_northing;
+        this.false_easting = false_easting;
+        this.series_evaluation = series_evaluation;
+        this.clenshaw = series_evaluation == SeriesEvaluation.Clenshaw;
+        this.precision = precision;
+
+        double e2 = flattening * (2.0 - flattening);
+        double n = flattening / (2.0 - flattening);
+        a_roof = axis / (1.0 + n) * (1.0 + n * n / 4.0 + n * n * n * n / 64.0);
+        scale_a_roof = scale * a_roof;
+        lambda_zero = central_meridian * DEG_TO_RAD;
+
+        A = e2;
+        B = (5.0 * e2 * e2 - e2 * e2 * e2) / 6.0;
+        C = (104.0 * e2 * e2 * e2 - 45.0 * e2 * e2 * e2 * e2) / 120.0;
+        D = (1237.0 * e2 * e2 * e2 * e2) / 1260.0;
+        beta1 = n / 2.0 - 2.0 * n * n / 3.0 + 5.0 * n * n * n / 16.0 + 41.0 * n * n * n * n / 180.0;
+        beta2 = 13.0 * n * n / 48.0 - 3.0 * n * n * n / 5.0 + 557.0 * n * n * n * n / 1440.0;
+        beta3 = 61.0 * n * n * n / 240.0 - 103.0 * n * n * n * n / 140.0;
+        beta4 = 49561.0 * n * n * n * n / 161280.0;
+
+        delta1 = n / 2.0 - 2.0 * n * n / 3.0 + 37.0 * n * n * n / 96.0 - n * n * n * n / 360.0;
+        delta2 = n * n / 48.0 + n * n * n / 15.0 - 437.0 * n * n * n * n / 1440.0;
+        delta3 = 17.0 * n * n * n / 480.0 - 37 * n * n * n * n / 840.0;
+        delta4 = 4397.0 * n * n * n * n / 161280.0;
+        Astar = e2 + e2 * e2 + e2 * e2 * e2 + e2 * e2 * e2 * e2;
+        Bstar = -(7.0 * e2 * e2 + 17.0 * e2 * e2 * e2 + 30.0 * e2 * e2 * e2 * e2) / 6.0;
+        Cstar = (224.0 * e2 * e2 * e2 + 889.0 * e2 * e2 * e2 * e2) / 120.0;
+        Dstar = -(4279.0 * e2 * e2 * e2 * e2) / 1260.0;
+    }
+
+    public double getAxis() {
+        return axis;
+    }
+
+    public double getFlattening() {
+        return flattening;
+    }
+
+    public double getCentralMeridian() {
+        return central_meridian;
+    }
+
+    public double getScale() {
+        return scale;
+    }
+
+    public double getFalseNorthing() {
+        return false_northing;
+    }
+
+    public double getFalseEasting() {
+        return false_easting;
+    }
+
+    public SeriesEvaluation getSeriesEvaluation() {
+        return series_evaluation;
+    }
+
+    /**
+     * Get a projection with the same parameters as this one but another series evaluation.
+     * @param series_evaluation How the projection series are evaluated
+     * @return This projection if it already uses the given evaluation, otherwise a new projection
+     */
+    public GaussKreugerProjection withSeriesEvaluation(SeriesEvaluation series_evaluation) {
+        if (series_evaluation == this.series_evaluation) {
+            return this;
+        }
+        return new GaussKreugerProjection(axis, flattening, central_meridian, scale,
+                false_northing, false_easting, series_evaluation, precision);
+    }
+
+    public GridPrecision getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Get a projection with the same parameters as this one but another precision.
+     * An unrounded projection is useful when chaining several transforms, the final
+     * result can then be rounded once with {@link GridPrecision#round(double)}.
+     * @param precision Rounding of produced grid coordinates
+     * @return This projection if it already uses the given precision, otherwise a new projection
+     */
+    public GaussKreugerProjection withPrecision(GridPrecision precision) {
+        if (precision == this.precision) {
+            return this;
+        }
+        return new GaussKreugerProjection(axis, flattening, central_meridian, scale,
+                false_northing, false_easting, series_evaluation, precision);
+    }
+
+    /**
+     * Check whether another projection describes the same grid as this one,
+     * regardless of how the series are evaluated and the results rounded.
+     * @param other Projection to compare with
+     * @return true if the ellipsoid and projection parameters are equal
+     */
+    public boolean hasSameParameters(GaussKreugerProjection other) {
+        return other != null
+                && Double.compare(axis, other.axis) == 0
+                && Double.compare(flattening, other.flattening) == 0
+                && Double.compare(central_meridian, other.central_meridian) == 0
+                && Double.compare(scale, other.scale) == 0
+                && Double.compare(false_northing, other.false_northing) == 0
+                && Double.compare(false_easting, other.false_easting) == 0;
+    }
+
+    // Conversion from geodetic coordinates to grid coordinates.
+    public double[] geodetic_to_grid(double latitude, double longitude) {
+        long start = startTiming();
+        double[] x_y = new double[2];
+        geodetic_to_grid(latitude, longitude, x_y, 0, x_y, 1);
+        recordConversion(this, ConversionMetrics.Operation.GeodeticToGrid, 1, start);
+        return x_y;
+    }
+
+    /**
+     * Convert geodetic coordinates to grid coordinates without allocating a result.
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @param result Holder that receives the x (northing) and y (easting) values
+     * @return The supplied result holder
+     */
+    public CoordinateHolder geodetic_to_grid(double latitude, double longitude, CoordinateHolder result) {
+        long start = startTiming();
+        geodetic_to_grid(latitude, longitude, result.values, 0, result.values, 1);
+        recordConversion(this, ConversionMetrics.Operation.GeodeticToGrid, 1, start);
+        return result;
+    }
+
+    /**
+     * Convert a batch of geodetic coordinates given as parallel arrays to grid coordinates.
+     * @param latitudes Latitudes in degrees
+     * @param longitudes Longitudes in degrees
+     * @param offset Index of the first coordinate to convert
+     * @param x Destination for the x (northing) values
+     * @param y Destination for the y (easting) values
+     * @param destOffset Index of the first converted coordinate in the destination arrays
+     * @param length Number of coordinates to convert
+     */
+    public void geodetic_to_grid(double[] latitudes, double[] longitudes, int offset,
+                                 double[] x, double[] y, int destOffset, int length) {
+        long start = startTiming();
+        checkRange(latitudes, offset, length);
+        checkRange(longitudes, offset, length);
+        checkRange(x, destOffset, length);
+        checkRange(y, destOffset, length);
+        geodetic_to_grid(latitudes, offset, longitudes, offset, x, destOffset, y, destOffset, 1, length);
+        recordConversion(this, ConversionMetrics.Operation.GeodeticToGrid, length, start);
+    }
+
+    /**
+     * Convert a batch of interleaved latitude/longitude pairs to interleaved x/y pairs.
+     * Source and destination may be the same array, converting in place.
+     * @param lat_lon Interleaved latitudes and longitudes in degrees
+     * @param offset Index of the first latitude to convert
+     * @param x_y Destination for the interleaved x (northing) and y (easting) values
+     * @param destOffset Index of the first converted x value in the destination array,
+     *                   must not be greater than offset when converting in place
+     * @param count Number of coordinate pairs to convert
+     */
+    public void geodetic_to_grid(double[] lat_lon, int offset, double[] x_y, int destOffset, int count) {
+        long start = startTiming();
+        checkRange(lat_lon, offset, 2 * count);
+        checkRange(x_y, destOffset, 2 * count);
+        geodetic_to_grid(lat_lon, offset, lat_lon, offset + 1, x_y, destOffset, x_y, destOffset + 1, 2, count);
+        recordConversion(this, ConversionMetrics.Operation.GeodeticToGrid, count, start);
+    }
+
+    void geodetic_to_grid(double latitude, double longitude, double[] x_out, int x_index,
+                          double[] y_out, int y_index) {
+        geodetic_to_grid_unrounded(latitude, longitude, x_out, x_index, y_out, y_index);
+        x_out[x_index] = precision.round(x_out[x_index]);
+        y_out[y_index] = precision.round(y_out[y_index]);
+    }
+
+    void geodetic_to_grid_unrounded(double latitude, double longitude, double[] x_out, int x_index,
+                                    double[] y_out, int y_index) {
+        if (clenshaw) {
+            geodetic_to_grid_clenshaw(latitude, longitude, x_out, x_index, y_out, y_index);
+        } else {
+            geodetic_to_grid_reference(latitude, longitude, x_out, x_index, y_out, y_index);
+        }
+    }
+
+    /**
+     * Convert count points whose values are stride elements apart. The series
+     * evaluation and the rounding are selected once for the whole batch, so
+     * the loops themselves do not branch on them.
+     */
+    private void geodetic_to_grid(double[] lat, int lat_index, double[] lon, int lon_index,
+                                  double[] x_out, int x_index, double[] y_out, int y_index, int stride, int count) {
+        int end = stride * count;
+        if (clenshaw) {
+            for (int i = 0; i < end; i += stride) {
+                geodetic_to_grid_clenshaw(lat[lat_index + i], lon[lon_index + i], x_out, x_index + i, y_out, y_index + i);
+            }
+        } else {
+            for (int i = 0; i < end; i += stride) {
+                geodetic_to_grid_reference(lat[lat_index + i], lon[lon_index + i], x_out, x_index + i, y_out, y_index + i);
+            }
+        }
+        precision.round(x_out, x_index, stride, count);
+        precision.round(y_out, y_index, stride, count);
+    }
+
+    private void geodetic_to_grid_reference(double latitude, double longitude, double[] x_out, int x_index,
+                                            double[] y_out, int y_index) {
+        double phi = latitude * DEG_TO_RAD;
+        double lambda = longitude * DEG_TO_RAD;
+
+        double phi_star = phi - Math.sin(phi) * Math.cos(phi) * (A +
+                B * Math.pow(Math.sin(phi), 2) +
+                C * Math.pow(Math.sin(phi), 4) +
+                D * Math.pow(Math.sin(phi), 6));
+        double delta_lambda = lambda - lambda_zero;
+        double xi_prim = Math.atan(Math.tan(phi_star) / Math.cos(delta_lambda));
+        double eta_prim = math_atanh(Math.cos(phi_star) * Math.sin(delta_lambda));
+        double x = scale_a_roof * (xi_prim +
+                beta1 * Math.sin(2.0 * xi_prim) * math_cosh(2.0 * eta_prim) +
+                beta2 * Math.sin(4.0 * xi_prim) * math_cosh(4.0 * eta_prim) +
+                beta3 * Math.sin(6.0 * xi_prim) * math_cosh(6.0 * eta_prim) +
+                beta4 * Math.sin(8.0 * xi_prim) * math_cosh(8.0 * eta_prim)) +
+                false_northing;
+        double y = scale_a_roof * (eta_prim +
+                beta1 * Math.cos(2.0 * xi_prim) * math_sinh(2.0 * eta_prim) +
+                beta2 * Math.cos(4.0 * xi_prim) * math_sinh(4.0 * eta_prim) +
+                beta3 * Math.cos(6.0 * xi_prim) * math_sinh(6.0 * eta_prim) +
+                beta4 * Math.cos(8.0 * xi_prim) * math_sinh(8.0 * eta_prim)) +
+                false_easting;
+        x_out[x_index] = x;
+        y_out[y_index] = y;
+    }
+
+    private void geodetic_to_grid_clenshaw(double latitude, double longitude, double[] x_out, int x_index,
+                                           double[] y_out, int y_index) {
+        double phi = latitude * DEG_TO_RAD;
+        double lambda = longitude * DEG_TO_RAD;
+
+        double sin_phi = Math.sin(phi);
+        double sin2_phi = sin_phi * sin_phi;
+        double phi_star = phi - sin_phi * Math.cos(phi) * (A + sin2_phi * (B + sin2_phi * (C + sin2_phi * D)));
+        double delta_lambda = lambda - lambda_zero;
+        double cos_phi_star = Math.cos(phi_star);
+        double xi_prim = Math.atan(Math.sin(phi_star) / (cos_phi_star * Math.cos(delta_lambda)));
+        double eta_prim = math_atanh(cos_phi_star * Math.sin(delta_lambda));
+
+        // Sum beta_k * sin(2k * (xi_prim + i eta_prim)) for k = 1..4 using Clenshaw's
+        // recurrence, where the real part is the northing series and the imaginary
+        // part the easting series.
+        double sin_2xi = Math.sin(2.0 * xi_prim);
+        double cos_2xi = Math.cos(2.0 * xi_prim);
+        double exp_2eta = Math.exp(2.0 * eta_prim);
+        double sinh_2eta = 0.5 * (exp_2eta - 1.0 / exp_2eta);
+        double cosh_2eta = 0.5 * (exp_2eta + 1.0 / exp_2eta);
+        double r_re = 2.0 * cos_2xi * cosh_2eta;
+        double r_im = -2.0 * sin_2xi * sinh_2eta;
+        double b3_re = beta3 + r_re * beta4;
+        double b3_im = r_im * beta4;
+        double b2_re = beta2 + r_re * b3_re - r_im * b3_im - beta4;
+        double b2_im = r_im * b3_re + r_re * b3_im;
+        double b1_re = beta1 + r_re * b2_re - r_im * b2_im - b3_re;
+        double b1_im = r_im * b2_re + r_re * b2_im - b3_im;
+        double s_re = sin_2xi * cosh_2eta;
+        double s_im = cos_2xi * sinh_2eta;
+
+        double x = scale_a_roof * (xi_prim + s_re * b1_re - s_im * b1_im) + false_northing;
+        double y = scale_a_roof * (eta_prim + s_im * b1_re + s_re * b1_im) + false_easting;
+        x_out[x_index] = x;
+        y_out[y_index] = y;
+    }
+
+    // Conversion from grid coordinates to geodetic coordinates.
+    public double[] grid_to_geodetic(double x, double y) {
+        long start = startTiming();
+        double[] lat_lon = new double[2];
+        grid_to_geodetic(x, y, lat_lon, 0, lat_lon, 1);
+        recordConversion(this, ConversionMetrics.Operation.GridToGeodetic, 1, start);
+        return lat_lon;
+    }
+
+    /**
+     * Convert grid coordinates to geodetic coordinates without allocating a result.
+     * @param x X (northing) value
+     * @param y Y (easting) value
+     * @param result Holder that receives the latitude and longitude in degrees
+     * @return The supplied result holder
+     */
+    public CoordinateHolder grid_to_geodetic(double x, double y, CoordinateHolder result) {
+        long start = startTiming();
+        grid_to_geodetic(x, y, result.values, 0, result.values, 1);
+        recordConversion(this, ConversionMetrics.Operation.GridToGeodetic, 1, start);
+        return result;
+    }
+
+    /**
+     * Convert a batch of grid coordinates given as parallel arrays to geodetic coordinates.
+     * @param x X (northing) values
+     * @param y Y (easting) values
+     * @param offset Index of the first coordinate to convert
+     * @param latitudes Destination for the latitudes in degrees
+     * @param longitudes Destination for the longitudes in degrees
+     * @param destOffset Index of the first converted coordinate in the destination arrays
+     * @param length Number of coordinates to convert
+     */
+    public void grid_to_geodetic(double[] x, double[] y, int offset,
+                                 double[] latitudes, double[] longitudes, int destOffset, int length) {
+        long start = startTiming();
+        checkRange(x, offset, length);
+        checkRange(y, offset, length);
+        checkRange(latitudes, destOffset, length);
+        checkRange(longitudes, destOffset, length);
+        grid_to_geodetic(x, offset, y, offset, latitudes, destOffset, longitudes, destOffset, 1, length);
+        recordConversion(this, ConversionMetrics.Operation.GridToGeodetic, length, start);
+    }
+
+    /**
+     * Convert a batch of interleaved x/y pairs to interleaved latitude/longitude pairs.
+     * Source and destination may be the same array, converting in place.
+     * @param x_y Interleaved x (northing) and y (easting) values
+     * @param offset Index of the first x value to convert
+     * @param lat_lon Destination for the interleaved latitudes and longitudes in degrees
+     * @param destOffset Index of the first converted latitude in the destination array,
+     *                   must not be greater than offset when converting in place
+     * @param count Number of coordinate pairs to convert
+     */
+    public void grid_to_geodetic(double[] x_y, int offset, double[] lat_lon, int destOffset, int count) {
+        long start = startTiming();
+        checkRange(x_y, offset, 2 * count);
+        checkRange(lat_lon, destOffset, 2 * count);
+        grid_to_geodetic(x_y, offset, x_y, offset + 1, lat_lon, destOffset, lat_lon, destOffset + 1, 2, count);
+        recordConversion(this, ConversionMetrics.Operation.GridToGeodetic, count, start);
+    }
+
+    void grid_to_geodetic(double x, double y, double[] lat_out, int lat_index,
+                          double[] lon_out, int lon_index) {
+        if (clenshaw) {
+            grid_to_geodetic_clenshaw(x, y, lat_out, lat_index, lon_out, lon_index);
+        } else {
+            grid_to_geodetic_reference(x, y, lat_out, lat_index, lon_out, lon_index);
+        }
+    }
+
+    /**
+     * Convert count points whose values are stride elements apart, selecting
+     * the series evaluation once for the whole batch.
+     */
+    private void grid_to_geodetic(double[] x, int x_index, double[] y, int y_index,
+                                  double[] lat_out, int lat_index, double[] lon_out, int lon_index,
+                                  int stride, int count) {
+        int end = stride * count;
+        if (clenshaw) {
+            for (int i = 0; i < end; i += stride) {
+                grid_to_geodetic_clenshaw(x[x_index + i], y[y_index + i], lat_out, lat_index + i, lon_out, lon_index + i);
+            }
+        } else {
+            for (int i = 0; i < end; i += stride) {
+                grid_to_geodetic_reference(x[x_index + i], y[y_index + i], lat_out, lat_index + i, lon_out, lon_index + i);
+            }
+        }
+    }
+
+    private void grid_to_geodetic_reference(double x, double y, double[] lat_out, int lat_index,
+                                            double[] lon_out, int lon_index) {
+        double xi = (x - false_northing) / scale_a_roof;
+        double eta = (y - false_easting) / scale_a_roof;
+        double xi_prim = xi -
+                delta1 * Math.sin(2.0 * xi) * math_cosh(2.0 * eta) -
+                delta2 * Math.sin(4.0 * xi) * math_cosh(4.0 * eta) -
+                delta3 * Math.sin(6.0 * xi) * math_cosh(6.0 * eta) -
+                delta4 * Math.sin(8.0 * xi) * math_cosh(8.0 * eta);
+        double eta_prim = eta -
+                delta1 * Math.cos(2.0 * xi) * math_sinh(2.0 * eta) -
+                delta2 * Math.cos(4.0 * xi) * math_sinh(4.0 * eta) -
+                delta3 * Math.cos(6.0 * xi) * math_sinh(6.0 * eta) -
+                delta4 * Math.cos(8.0 * xi) * math_sinh(8.0 * eta);
+        double phi_star = Math.asin(Math.sin(xi_prim) / math_cosh(eta_prim));
+        double delta_lambda = Math.atan(math_sinh(eta_prim) / Math.cos(xi_prim));
+        double lon_radian = lambda_zero + delta_lambda;
+        double lat_radian = phi_star + Math.sin(phi_star) * Math.cos(phi_star) *
+                (Astar +
+                Bstar * Math.pow(Math.sin(phi_star), 2) +
+                Cstar * Math.pow(Math.sin(phi_star), 4) +
+                Dstar * Math.pow(Math.sin(phi_star), 6));
+        lat_out[lat_index] = lat_radian * 180.0 / Math.PI;
+        lon_out[lon_index] = lon_radian * 180.0 / Math.PI;
+    }
+
+    private void grid_to_geodetic_clenshaw(double x, double y, double[] lat_out, int lat_index,
+                                           double[] lon_out, int lon_index) {
+        double xi = (x - false_northing) / scale_a_roof;
+        double eta = (y - false_easting) / scale_a_roof;
+
+        // Sum delta_k * sin(2k * (xi + i eta)) for k = 1..4 using Clenshaw's recurrence.
+        double sin_2xi = Math.sin(2.0 * xi);
+        double cos_2xi = Math.cos(2.0 * xi);
+        double exp_2eta = Math.exp(2.0 * eta);
+        double sinh_2eta = 0.5 * (exp_2eta - 1.0 / exp_2eta);
+        double cosh_2eta = 0.5 * (exp_2eta + 1.0 / exp_2eta);
+        double r_re = 2.0 * cos_2xi * cosh_2eta;
+        double r_im = -2.0 * sin_2xi * sinh_2eta;
+        double b3_re = delta3 + r_re * delta4;
+        double b3_im = r_im * delta4;
+        double b2_re = delta2 + r_re * b3_re - r_im * b3_im - delta4;
+        double b2_im = r_im * b3_re + r_re * b3_im;
+        double b1_re = delta1 + r_re * b2_re - r_im * b2_im - b3_re;
+        double b1_im = r_im * b2_re + r_re * b2_im - b3_im;
+        double s_re = sin_2xi * cosh_2eta;
+        double s_im = cos_2xi * sinh_2eta;
+        double xi_prim = xi - (s_re * b1_re - s_im * b1_im);
+        double eta_prim = eta - (s_im * b1_re + s_re * b1_im);
+
+        double exp_eta = Math.exp(eta_prim);
+        double sinh_eta = 0.5 * (exp_eta - 1.0 / exp_eta);
+        double cosh_eta = 0.5 * (exp_eta + 1.0 / exp_eta);
+        double cos_xi_prim = Math.cos(xi_prim);
+        double sin_phi_star = Math.sin(xi_prim) / cosh_eta;
+        double sin2_phi_star = sin_phi_star * sin_phi_star;
+        double phi_star = Math.asin(sin_phi_star);
+        double delta_lambda = Math.atan(sinh_eta / cos_xi_prim);
+        double lon_radian = lambda_zero + delta_lambda;
+        // phi_star lies within [-pi/2, pi/2], so its cosine is never negative.
+        double lat_radian = phi_star + sin_phi_star * Math.sqrt(1.0 - sin2_phi_star) *
+                (Astar + sin2_phi_star * (Bstar + sin2_phi_star * (Cstar + sin2_phi_star * Dstar)));
+        lat_out[lat_index] = lat_radian * 180.0 / Math.PI;
+        lon_out[lon_index] = lon_radian * 180.0 / Math.PI;
+    }
+
+    /**
+     * Convert grid coordinates in this projection directly to grid coordinates in
+     * another projection, without creating any intermediate positions.
+     * @param x X (northing) value in this projection
+     * @param y Y (easting) value in this projection
+     * @param target Projection to convert to
+     * @return x (northing) and y (easting) in the target projection
+     */
+    public double[] grid_to_grid(double x, double y, GaussKreugerProjection target) {
+        long start = startTiming();
+        double[] x_y = new double[2];
+        grid_to_grid(x, y, target, x_y, 0, x_y, 1);
+        recordConversion(this, ConversionMetrics.Operation.GridToGrid, 1, start);
+        return x_y;
+    }
+
+    /**
+     * Convert grid coordinates in this projection directly to grid coordinates in
+     * another projection without allocating a result.
+     * @param x X (northing) value in this projection
+     * @param y Y (easting) value in this projection
+     * @param target Projection to convert to
+     * @param result Holder that receives the x (northing) and y (easting) values in the target projection
+     * @return The supplied result holder
+     */
+    public CoordinateHolder grid_to_grid(double x, double y, GaussKreugerProjection target, CoordinateHolder result) {
+        long start = startTiming();
+        grid_to_grid(x, y, target, result.values, 0, result.values, 1);
+        recordConversion(this, ConversionMetrics.Operation.GridToGrid, 1, start);
+        return result;
+    }
+
+    /**
+     * Convert a batch of grid coordinates given as parallel arrays directly to another projection.
+     * @param x X (northing) values in this projection
+     * @param y Y (easting) values in this projection
+     * @param offset Index of the first coordinate to convert
+     * @param target Projection to convert to
+     * @param targetX Destination for the x (northing) values in the target projection
+     * @param targetY Destination for the y (easting) values in the target projection
+     * @param destOffset Index of the first converted coordinate in the destination arrays
+     * @param length Number of coordinates to convert
+     */
+    public void grid_to_grid(double[] x, double[] y, int offset, GaussKreugerProjection target,
+                             double[] targetX, double[] targetY, int destOffset, int length) {
+        long start = startTiming();
+        checkRange(x, offset, length);
+        checkRange(y, offset, length);
+        checkRange(targetX, destOffset, length);
+        checkRange(targetY, destOffset, length);
+        // The geodetic coordinates are kept in the destination until they are
+        // replaced by the target grid coordinates.
+        grid_to_geodetic(x, offset, y, offset, targetX, destOffset, targetY, destOffset, 1, length);
+        target.geodetic_to_grid(targetX, destOffset, targetY, destOffset, targetX, destOffset, targetY, destOffset,
+                1, length);
+        recordConversion(this, ConversionMetrics.Operation.GridToGrid, length, start);
+    }
+
+    /**
+     * Convert a batch of interleaved x/y pairs directly to interleaved x/y pairs in another projection.
+     * Source and destination may be the same array, converting in place.
+     * @param x_y Interleaved x (northing) and y (easting) values in this projection
+     * @param offset Index of the first x value to convert
+     * @param target Projection to convert to
+     * @param target_x_y Destination for the interleaved values in the target projection
+     * @param destOffset Index of the first converted x value in the destination array,
+     *                   must not be greater than offset when converting in place
+     * @param count Number of coordinate pairs to convert
+     */
+    public void grid_to_grid(double[] x_y, int offset, GaussKreugerProjection target,
+                             double[] target_x_y, int destOffset, int count) {
+        long start = startTiming();
+        checkRange(x_y, offset, 2 * count);
+        checkRange(target_x_y, destOffset, 2 * count);
+        grid_to_geodetic(x_y, offset, x_y, offset + 1, target_x_y, destOffset, target_x_y, destOffset + 1, 2, count);
+        target.geodetic_to_grid(target_x_y, destOffset, target_x_y, destOffset + 1,
+                target_x_y, destOffset, target_x_y, destOffset + 1, 2, count);
+        recordConversion(this, ConversionMetrics.Operation.GridToGrid, count, start);
+    }
+
+    private void grid_to_grid(double x, double y, GaussKreugerProjection target,
+                              double[] x_out, int x_index, double[] y_out, int y_index) {
+        // The geodetic coordinates are kept in the output slots until they are
+        // replaced by the target grid coordinates.
+        grid_to_geodetic(x, y, x_out, x_index, y_out, y_index);
+        target.geodetic_to_grid(x_out[x_index], y_out[y_index], x_out, x_index, y_out, y_index);
+    }
+
+    /**
+     * @return Value of {@link System#nanoTime()} to pass to {@link #recordConversion},
+     * or 0 if metrics are turned off
+     */
+    static long startTiming() {
+        return ConversionMetrics.current() == null ? 0L : System.nanoTime();
+    }
+
+    /**
+     * Record a conversion if metrics are turned on. Conversions started
+     * before metrics were turned on are not recorded.
+     * @param start Value returned by {@link #startTiming()} when the conversion started
+     */
+    static void recordConversion(GaussKreugerProjection projection, ConversionMetrics.Operation operation,
+                                 int points, long start) {
+        ConversionMetrics metrics = ConversionMetrics.current();
+        if (metrics != null && start != 0L) {
+            metrics.recordConversion(projection, operation, points, start);
+        }
+    }
+
+    static void checkRange(double[] array, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > array.length - length) {
+            throw new ArrayIndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length
+                    + ") out of bounds for length " + array.length);
+        }
+    }
+
+    private static double math_sinh(double value) {
+        return 0.5 * (Math.exp(value) - Math.exp(-value));
+    }
+
+    private static double math_cosh(double value) {
+        return 0.5 * (Math.exp(value) + Math.exp(-value));
+    }
+
+    private static double math_atanh(double value) {
+        return 0.5 * Math.log((1.0 + value) / (1.0 - value));
+    }
+}
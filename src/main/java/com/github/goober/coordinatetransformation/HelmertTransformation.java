@@ -0,0 +1,300 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation;
+
+/**
+ * Seven parameter Helmert transformation of geodetic coordinates between two
+ * datums, through geocentric cartesian coordinates. The rotation matrices
+ * of both directions and all ellipsoid constants are computed once when the
+ * transformation is created, so transforming a point takes no more than the
+ * trigonometric functions of the geodetic and geocentric conversions.
+ * Points are taken to lie on the ellipsoid of the source datum, and the
+ * height above the target ellipsoid is dropped.
+ *
+ * <p>{@link #RT90_TO_SWEREF99} and {@link #SWEREF99_TO_RT90} transform between
+ * RT 90 on the Bessel 1841 ellipsoid and SWEREF 99 on GRS 80, which agrees
+ * with WGS 84 to well within a metre. Combined with the Bessel projections of
+ * {@link ProjectionRegistry#get(com.github.goober.coordinatetransformation.positions.RT90Position.RT90BesselProjection)}
+ * they convert between WGS 84 and RT 90 grid coordinates with the
+ * transformation published by Lantmäteriet, instead of the modified GRS 80
+ * parameters of the RT 90 projections.</p>
+ *
+ * <p>Instances are immutable and thread safe.</p>
+ */
+public final class HelmertTransformation {
+
+    private static final double ARC_SECONDS_TO_RAD = Math.PI / (180.0 * 3600.0);
+    private static final double DEG_TO_RAD = Math.PI / 180.0;
+    private static final double RAD_TO_DEG = 180.0 / Math.PI;
+
+    /**
+     * RT 90 (Bessel 1841) to SWEREF 99 (GRS 80), position vector rotation.
+     */
+    public static final HelmertTransformation RT90_TO_SWEREF99 = new HelmertTransformation(
+            ProjectionRegistry.BESSEL_AXIS, ProjectionRegistry.BESSEL_FLATTENING,
+            ProjectionRegistry.GRS80_AXIS, ProjectionRegistry.GRS80_FLATTENING,
+            414.1055246174, 41.3265500042, 603.0582474221,
+            -0.8551163377, 2.1413174055, -7.0227298286, 0.0);
+
+    /**
+     * SWEREF 99 (GRS 80) to RT 90 (Bessel 1841), the inverse of {@link #RT90_TO_SWEREF99}.
+     */
+    public static final HelmertTransformation SWEREF99_TO_RT90 = RT90_TO_SWEREF99.inverse();
+
+    private final Ellipsoid source;
+    private final Ellipsoid target;
+    private final double tx;
+    private final double ty;
+    private final double tz;
+    // Rotation and scale matrix, row by row.
+    private final double m00;
+    private final double m01;
+    private final double m02;
+    private final double m10;
+    private final double m11;
+    private final double m12;
+    private final double m20;
+    private final double m21;
+    private final double m22;
+
+    /**
+     * Create a transformation with the position vector rotation convention
+     * (the convention of ISO 19111 and EPSG method 9606; negate the
+     * rotations for the coordinate frame convention).
+     * @param sourceAxis Semi major axis of the source ellipsoid in metres
+     * @param sourceFlattening Flattening of the source ellipsoid
+     * @param targetAxis Semi major axis of the target ellipsoid in metres
+     * @param targetFlattening Flattening of the target ellipsoid
+     * @param tx Translation along the X axis in metres
+     * @param ty Translation along the Y axis in metres
+     * @param tz Translation along the Z axis in metres
+     * @param rx Rotation around the X axis in arc seconds
+     * @param ry Rotation around the Y axis in arc seconds
+     * @param rz Rotation around the Z axis in arc seconds
+     * @param scale Scale difference in parts per million
+     */
+    public HelmertTransformation(double sourceAxis, double sourceFlattening,
+                                 double targetAxis, double targetFlattening,
+                                 double tx, double ty, double tz,
+                                 double rx, double ry, double rz, double scale) {
+        this(new Ellipsoid(sourceAxis, sourceFlattening), new Ellipsoid(targetAxis, targetFlattening),
+                tx, ty, tz, rotation(rx, ry, rz, scale));
+    }
+
+    private HelmertTransformation(Ellipsoid source, Ellipsoid target, double tx, double ty, double tz, double[] m) {
+        this.source = source;
+        this.target = target;
+        this.tx = tx;
+        this.ty = ty;
+        this.tz = tz;
+        this.m00 = m[0];
+        this.m01 = m[1];
+        this.m02 = m[2];
+        this.m10 = m[3];
+        this.m11 = m[4];
+        this.m12 = m[5];
+        this.m20 = m[6];
+        this.m21 = m[7];
+        this.m22 = m[8];
+    }
+
+    /**
+     * @return The transformation in the opposite direction, with the exact inverse of the rotation matrix
+     */
+    public HelmertTransformation inverse() {
+        // Inverse of the matrix by its adjugate.
+        double c00 = m11 * m22 - m12 * m21;
+        double c01 = m02 * m21 - m01 * m22;
+        double c02 = m01 * m12 - m02 * m11;
+        double c10 = m12 * m20 - m10 * m22;
+        double c11 = m00 * m22 - m02 * m20;
+        double c12 = m02 * m10 - m00 * m12;
+        double c20 = m10 * m21 - m11 * m20;
+        double c21 = m01 * m20 - m00 * m21;
+        double c22 = m00 * m11 - m01 * m10;
+        double det = m00 * c00 + m01 * c10 + m02 * c20;
+        double[] inverse = {
+                c00 / det, c01 / det, c02 / det,
+                c10 / det, c11 / det, c12 / det,
+                c20 / det, c21 / det, c22 / det};
+        return new HelmertTransformation(target, source,
+                -(inverse[0] * tx + inverse[1] * ty + inverse[2] * tz),
+                -(inverse[3] * tx + inverse[4] * ty + inverse[5] * tz),
+                -(inverse[6] * tx + inverse[7] * ty + inverse[8] * tz),
+                inverse);
+    }
+
+    /**
+     * Transform geodetic coordinates.
+     * @param latitude Latitude in degrees in the source datum
+     * @param longitude Longitude in degrees in the source datum
+     * @return Latitude and longitude in degrees in the target datum
+     */
+    public double[] transform(double latitude, double longitude) {
+        double[] lat_lon = new double[2];
+        transform(latitude, longitude, lat_lon, 0, lat_lon, 1);
+        return lat_lon;
+    }
+
+    /**
+     * Transform geodetic coordinates without allocating a result.
+     * @param latitude Latitude in degrees in the source datum
+     * @param longitude Longitude in degrees in the source datum
+     * @param result Holder that receives the latitude and longitude in degrees in the target datum
+     * @return The supplied result holder
+     */
+    public CoordinateHolder transform(double latitude, double longitude, CoordinateHolder result) {
+        transform(latitude, longitude, result.values, 0, result.values, 1);
+        return result;
+    }
+
+    /**
+     * Transform a batch of geodetic coordinates given as parallel arrays. Source
+     * and destination may be the same arrays, transforming in place.
+     * @param latitudes Latitudes in degrees in the source datum
+     * @param longitudes Longitudes in degrees in the source datum
+     * @param offset Index of the first coordinate to transform
+     * @param destLatitudes Destination for the latitudes in the target datum
+     * @param destLongitudes Destination for the longitudes in the target datum
+     * @param destOffset Index of the first transformed coordinate in the destination arrays
+     * @param length Number of coordinates to transform
+     */
+    public void transform(double[] latitudes, double[] longitudes, int offset,
+                          double[] destLatitudes, double[] destLongitudes, int destOffset, int length) {
+        GaussKreugerProjection.checkRange(latitudes, offset, length);
+        GaussKreugerProjection.checkRange(longitudes, offset, length);
+        GaussKreugerProjection.checkRange(destLatitudes, destOffset, length);
+        GaussKreugerProjection.checkRange(destLongitudes, destOffset, length);
+        for (int i = 0; i < length; i++) {
+            transform(latitudes[offset + i], longitudes[offset + i],
+                    destLatitudes, destOffset + i, destLongitudes, destOffset + i);
+        }
+    }
+
+    /**
+     * Transform a batch of geodetic coordinates and project them to grid coordinates.
+     * Batches are projected by {@link PolynomialKernel}.
+     * @param projection Projection on the ellipsoid of the target datum, e.g. a Bessel RT 90 projection
+     * @param latitudes Latitudes in degrees in the source datum
+     * @param longitudes Longitudes in degrees in the source datum
+     * @param offset Index of the first coordinate to convert
+     * @param x Destination for the x (northing) values
+     * @param y Destination for the y (easting) values
+     * @param destOffset Index of the first converted coordinate in the destination arrays
+     * @param length Number of coordinates to convert
+     * @throws IllegalArgumentException if the projection is not on the ellipsoid of the target datum
+     */
+    public void geodetic_to_grid(GaussKreugerProjection projection, double[] latitudes, double[] longitudes,
+                                 int offset, double[] x, double[] y, int destOffset, int length) {
+        checkEllipsoid(projection, target);
+        transform(latitudes, longitudes, offset, x, y, destOffset, length);
+        if (length < PolynomialKernel.MIN_BATCH_SIZE) {
+            projection.geodetic_to_grid(x, y, destOffset, x, y, destOffset, length);
+        } else {
+            PolynomialKernel.geodetic_to_grid(projection, x, y, destOffset, x, y, destOffset, length);
+        }
+    }
+
+    /**
+     * Convert a batch of grid coordinates to geodetic coordinates and transform them.
+     * Batches are converted by {@link PolynomialKernel}.
+     * @param projection Projection on the ellipsoid of the source datum, e.g. a Bessel RT 90 projection
+     * @param x X (northing) values
+     * @param y Y (easting) values
+     * @param offset Index of the first coordinate to convert
+     * @param latitudes Destination for the latitudes in degrees in the target datum
+     * @param longitudes Destination for the longitudes in degrees in the target datum
+     * @param destOffset Index of the first converted coordinate in the destination arrays
+     * @param length Number of coordinates to convert
+     * @throws IllegalArgumentException if the projection is not on the ellipsoid of the source datum
+     */
+    public void grid_to_geodetic(GaussKreugerProjection projection, double[] x, double[] y, int offset,
+                                 double[] latitudes, double[] longitudes, int destOffset, int length) {
+        checkEllipsoid(projection, source);
+        if (length < PolynomialKernel.MIN_BATCH_SIZE) {
+            projection.grid_to_geodetic(x, y, offset, latitudes, longitudes, destOffset, length);
+        } else {
+            PolynomialKernel.grid_to_geodetic(projection, x, y, offset, latitudes, longitudes, destOffset, length);
+        }
+        transform(latitudes, longitudes, destOffset, latitudes, longitudes, destOffset, length);
+    }
+
+    private void transform(double latitude, double longitude, double[] lat_out, int lat_index,
+                           double[] lon_out, int lon_index) {
+        // Geodetic to geocentric coordinates on the source ellipsoid.
+        double phi = latitude * DEG_TO_RAD;
+        double lambda = longitude * DEG_TO_RAD;
+        double sin_phi = Math.sin(phi);
+        double cos_phi = Math.cos(phi);
+        double n = source.axis / Math.sqrt(1.0 - source.e2 * sin_phi * sin_phi);
+        double x = n * cos_phi * Math.cos(lambda);
+        double y = n * cos_phi * Math.sin(lambda);
+        double z = n * (1.0 - source.e2) * sin_phi;
+
+        double x2 = tx + m00 * x + m01 * y + m02 * z;
+        double y2 = ty + m10 * x + m11 * y + m12 * z;
+        double z2 = tz + m20 * x + m21 * y + m22 * z;
+
+        // Geocentric to geodetic coordinates on the target ellipsoid, Bowring's
+        // formula, accurate to well below a micrometre near the ellipsoid.
+        double p = Math.sqrt(x2 * x2 + y2 * y2);
+        double t = z2 * target.axis / (p * target.minor_axis);
+        double cos_theta = 1.0 / Math.sqrt(1.0 + t * t);
+        double sin_theta = t * cos_theta;
+        lat_out[lat_index] = RAD_TO_DEG * Math.atan2(
+                z2 + target.ep2 * target.minor_axis * sin_theta * sin_theta * sin_theta,
+                p - target.e2 * target.axis * cos_theta * cos_theta * cos_theta);
+        lon_out[lon_index] = RAD_TO_DEG * Math.atan2(y2, x2);
+    }
+
+    private static double[] rotation(double rx, double ry, double rz, double scale) {
+        double m = 1.0 + scale * 1e-6;
+        double x = rx * ARC_SECONDS_TO_RAD;
+        double y = ry * ARC_SECONDS_TO_RAD;
+        double z = rz * ARC_SECONDS_TO_RAD;
+        return new double[]{
+                m, -m * z, m * y,
+                m * z, m, -m * x,
+                -m * y, m * x, m};
+    }
+
+    private static void checkEllipsoid(GaussKreugerProjection projection, Ellipsoid ellipsoid) {
+        if (Double.compare(projection.getAxis(), ellipsoid.axis) != 0
+                || Double.compare(projection.getFlattening(), ellipsoid.flattening) != 0) {
+            throw new IllegalArgumentException("The projection is not on the ellipsoid of the datum");
+        }
+    }
+
+    /**
+     * Constants of an ellipsoid.
+     */
+    private static final class Ellipsoid {
+        final double axis;
+        final double flattening;
+        final double minor_axis;
+        final double e2;
+        final double ep2;
+
+        Ellipsoid(double axis, double flattening) {
+            this.axis = axis;
+            this.flattening = flattening;
+            this.minor_axis = axis * (1.0 - flattening);
+            this.e2 = flattening * (2.0 - flattening);
+            this.ep2 = e2 / (1.0 - e2);
+        }
+    }
+}
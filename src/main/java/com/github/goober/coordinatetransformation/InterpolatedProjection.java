@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation;
+
+import com.github.goober.coordinatetransformation.metrics.ConversionMetrics;
+import com.github.goober.coordinatetransformation.positions.RT90Position.RT90Projection;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position.SWEREFProjection;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Approximate, fast conversion from geodetic to grid coordinates for
+ * rendering and binning, where throughput matters more than millimetres.
+ * <p>
+ * The exact projection is evaluated once on a regular grid of nodes covering
+ * a bounding box, by default all of Sweden, and points are then converted by
+ * bicubic (tensor product cubic Lagrange) interpolation between the 4x4
+ * surrounding nodes. The node table is built on first use. Points outside
+ * the bounding box are converted with the exact projection.
+ * <p>
+ * With the default node spacing of {@link #DEFAULT_SPACING} degrees the
+ * interpolation error within Sweden is below {@link #MAX_ERROR} metres for
+ * every RT90 and SWEREF99 projection, compared to the unrounded exact result
+ * (the largest error measured is about 0.03 mm). The error grows with the
+ * fourth power of the spacing. The node table then holds less than 4000
+ * nodes, which is small enough to stay in the processor caches.
+ * Results are not rounded.
+ * Instances are thread safe.
+ */
+public final class InterpolatedProjection {
+
+    public static final double MIN_LATITUDE = 55.0;
+    public static final double MAX_LATITUDE = 69.5;
+    public static final double MIN_LONGITUDE = 10.5;
+    public static final double MAX_LONGITUDE = 24.5;
+    public static final double DEFAULT_SPACING = 0.25;
+
+    /**
+     * Documented interpolation error bound, in metres, for the default bounding box and spacing.
+     */
+    public static final double MAX_ERROR = 0.001;
+
+    private static final Map<RT90Projection, InterpolatedProjection> RT90 =
+            new EnumMap<RT90Projection, InterpolatedProjection>(RT90Projection.class);
+    private static final Map<SWEREFProjection, InterpolatedProjection> SWEREF99 =
+            new EnumMap<SWEREFProjection, InterpolatedProjection>(SWEREFProjection.class);
+
+    static {
+        for (RT90Projection projection : RT90Projection.values()) {
+            RT90.put(projection, new InterpolatedProjection(ProjectionRegistry.get(projection)));
+        }
+        for (SWEREFProjection projection : SWEREFProjection.values()) {
+            SWEREF99.put(projection, new InterpolatedProjection(ProjectionRegistry.get(projection)));
+        }
+    }
+
+    private final GaussKreugerProjection projection;
+    private final double minLatitude;
+    private final double maxLatitude;
+    private final double minLongitude;
+    private final double maxLongitude;
+    private final double spacing;
+    private final int rows;
+    private final int columns;
+
+    /**
+     * Interleaved x/y values of the nodes, row by row from south to north.
+     * The outermost nodes lie outside the bounding box so that every point
+     * inside it has a full 4x4 neighbourhood.
+     */
+    private volatile double[] nodes;
+
+    /**
+     * Create an interpolated projection covering Sweden with the default node spacing.
+     * @param projection Exact projection to interpolate
+     */
+    public InterpolatedProjection(GaussKreugerProjection projection) {
+        this(projection, MIN_LATITUDE, MIN_LONGITUDE, MAX_LATITUDE, MAX_LONGITUDE, DEFAULT_SPACING);
+    }
+
+    /**
+     * Create an interpolated projection.
+     * @param projection Exact projection to interpolate
+     * @param minLatitude Southern edge of the bounding box in degrees
+     * @param minLongitude Western edge of the bounding box in degrees
+     * @param maxLatitude Northern edge of the bounding box in degrees
+     * @param maxLongitude Eastern edge of the bounding box in degrees
+     * @param spacing Distance between nodes in degrees
+     */
+    public InterpolatedProjection(GaussKreugerProjection projection, double minLatitude, double minLongitude,
+                                  double maxLatitude, double maxLongitude, double spacing) {
+        if (projection == null) {
+            throw new NullPointerException("projection");
+        }
+        if (!(spacing > 0.0) || !(minLatitude < maxLatitude) || !(minLongitude < maxLongitude)
+                || minLatitude - spacing < -90.0 || maxLatitude + 2.0 * spacing > 90.0) {
+            throw new IllegalArgumentException("Invalid bounding box or spacing");
+        }
+        this.projection = projection.withPrecision(GridPrecision.UNROUNDED);
+        this.minLatitude = minLatitude;
+        this.maxLatitude = maxLatitude;
+        this.minLongitude = minLongitude;
+        this.maxLongitude = maxLongitude;
+        this.spacing = spacing;
+        this.rows = (int) Math.ceil((maxLatitude - minLatitude) / spacing) + 4;
+        this.columns = (int) Math.ceil((maxLongitude - minLongitude) / spacing) + 4;
+        if ((long) rows * columns > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Too many nodes, increase the spacing");
+        }
+    }
+
+    /**
+     * Get the shared interpolated projection for a RT90 projection, covering Sweden.
+     * @param projection RT90 projection
+     * @return Interpolated projection
+     */
+    public static InterpolatedProjection get(RT90Projection projection) {
+        return RT90.get(projection);
+    }
+
+    /**
+     * Get the shared interpolated projection for a SWEREF99 projection, covering Sweden.
+     * @param projection SWEREF99 projection
+     * @return Interpolated projection
+     */
+    public static InterpolatedProjection get(SWEREFProjection projection) {
+        return SWEREF99.get(projection);
+    }
+
+    /**
+     * @return The exact, unrounded projection that is interpolated
+     */
+    public GaussKreugerProjection getProjection() {
+        return projection;
+    }
+
+    public double getSpacing() {
+        return spacing;
+    }
+
+    /**
+     * Check whether a point is converted by interpolation rather than by the exact projection.
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return true if the point is inside the bounding box
+     */
+    public boolean covers(double latitude, double longitude) {
+        return latitude >= minLatitude && latitude <= maxLatitude
+                && longitude >= minLongitude && longitude <= maxLongitude;
+    }
+
+    /**
+     * Approximate conversion from geodetic coordinates to grid coordinates.
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @return x (northing) and y (easting)
+     */
+    public double[] geodetic_to_grid(double latitude, double longitude) {
+        long start = GaussKreugerProjection.startTiming();
+        double[] x_y = new double[2];
+        geodetic_to_grid(nodes(), latitude, longitude, x_y, 0, x_y, 1);
+        record(1, start);
+        return x_y;
+    }
+
+    /**
+     * Approximate conversion from geodetic coordinates to grid coordinates without allocating a result.
+     * @param latitude Latitude in degrees
+     * @param longitude Longitude in degrees
+     * @param result Holder that receives the x (northing) and y (easting) values
+     * @return The supplied result holder
+     */
+    public CoordinateHolder geodetic_to_grid(double latitude, double longitude, CoordinateHolder result) {
+        long start = GaussKreugerProjection.startTiming();
+        geodetic_to_grid(nodes(), latitude, longitude, result.values, 0, result.values, 1);
+        record(1, start);
+        return result;
+    }
+
+    /**
+     * Approximate conversion of a batch of geodetic coordinates given as parallel arrays.
+     * @see GaussKreugerProjection#geodetic_to_grid(double[], double[], int, double[], double[], int, int)
+     */
+    public void geodetic_to_grid(double[] latitudes, double[] longitudes, int offset,
+                                 double[] x, double[] y, int destOffset, int length) {
+        long start = GaussKreugerProjection.startTiming();
+        GaussKreugerProjection.checkRange(latitudes, offset, length);
+        GaussKreugerProjection.checkRange(longitudes, offset, length);
+        GaussKreugerProjection.checkRange(x, destOffset, length);
+        GaussKreugerProjection.checkRange(y, destOffset, length);
+        double[] nodes = nodes();
+        for (int i = 0; i < length; i++) {
+            geodetic_to_grid(nodes, latitudes[offset + i], longitudes[offset + i], x, destOffset + i, y, destOffset + i);
+        }
+        record(length, start);
+    }
+
+    /**
+     * Approximate conversion of a batch of interleaved latitude/longitude pairs.
+     * @see GaussKreugerProjection#geodetic_to_grid(double[], int, double[], int, int)
+     */
+    public void geodetic_to_grid(double[] lat_lon, int offset, double[] x_y, int destOffset, int count) {
+        long start = GaussKreugerProjection.startTiming();
+        GaussKreugerProjection.checkRange(lat_lon, offset, 2 * count);
+        GaussKreugerProjection.checkRange(x_y, destOffset, 2 * count);
+        double[] nodes = nodes();
+        for (int i = 0; i < 2 * count; i += 2) {
+            geodetic_to_grid(nodes, lat_lon[offset + i], lat_lon[offset + i + 1],
+                    x_y, destOffset + i, x_y, destOffset + i + 1);
+        }
+        record(count, start);
+    }
+
+    private void record(int points, long start) {
+        GaussKreugerProjection.recordConversion(projection, ConversionMetrics.Operation.GeodeticToGrid, points, start);
+    }
+
+    private void geodetic_to_grid(double[] nodes, double latitude, double longitude,
+                                  double[] x_out, int x_index, double[] y_out, int y_index) {
+        if (!covers(latitude, longitude)) {
+            projection.geodetic_to_grid(latitude, longitude, x_out, x_index, y_out, y_index);
+            return;
+        }
+        double u = (latitude - minLatitude) / spacing;
+        double v = (longitude - minLongitude) / spacing;
+        int row = (int) u;
+        int column = (int) v;
+        double t = u - row;
+        double s = v - column;
+
+        // Cubic Lagrange weights for the nodes at -1, 0, 1 and 2
+        double t0 = -t * (t - 1.0) * (t - 2.0) / 6.0;
+        double t1 = (t + 1.0) * (t - 1.0) * (t - 2.0) / 2.0;
+        double t2 = -(t + 1.0) * t * (t - 2.0) / 2.0;
+        double t3 = (t + 1.0) * t * (t - 1.0) / 6.0;
+        double s0 = -s * (s - 1.0) * (s - 2.0) / 6.0;
+        double s1 = (s + 1.0) * (s - 1.0) * (s - 2.0) / 2.0;
+        double s2 = -(s + 1.0) * s * (s - 2.0) / 2.0;
+        double s3 = (s + 1.0) * s * (s - 1.0) / 6.0;
+
+        int stride = 2 * columns;
+        int index = row * stride + 2 * column;
+        double x = t0 * interpolate(nodes, index, s0, s1, s2, s3)
+                + t1 * interpolate(nodes, index + stride, s0, s1, s2, s3)
+                + t2 * interpolate(nodes, index + 2 * stride, s0, s1, s2, s3)
+                + t3 * interpolate(nodes, index + 3 * stride, s0, s1, s2, s3);
+        double y = t0 * interpolate(nodes, index + 1, s0, s1, s2, s3)
+                + t1 * interpolate(nodes, index + 1 + stride, s0, s1, s2, s3)
+                + t2 * interpolate(nodes, index + 1 + 2 * stride, s0, s1, s2, s3)
+                + t3 * interpolate(nodes, index + 1 + 3 * stride, s0, s1, s2, s3);
+        x_out[x_index] = x;
+        y_out[y_index] = y;
+    }
+
+    private static double interpolate(double[] nodes, int index, double s0, double s1, double s2, double s3) {
+        return s0 * nodes[index] + s1 * nodes[index + 2] + s2 * nodes[index + 4] + s3 * nodes[index + 6];
+    }
+
+    private double[] nodes() {
+        double[] result = nodes;
+        if (result == null) {
+            synchronized (this) {
+                result = nodes;
+                if (result == null) {
+                    result = buildNodes();
+                    nodes = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    private double[] buildNodes() {
+        double[] result = new double[2 * rows * columns];
+        double[] longitudes = new double[columns];
+        for (int column = 0; column < columns; column++) {
+            longitudes[column] = minLongitude + (column - 1) * spacing;
+        }
+        for (int row = 0; row < rows; row++) {
+            double latitude = minLatitude + (row - 1) * spacing;
+            for (int column = 0; column < columns; column++) {
+                int index = 2 * (row * columns + column);
+                projection.geodetic_to_grid(latitude, longitudes[column], result, index, result, index + 1);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,258 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation;
+
+import com.github.goober.coordinatetransformation.Position.Grid;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Growable store of coordinates in one grid and projection, kept outside the
+ * Java heap so that billions of points add nothing to garbage collection.
+ * <p>
+ * Coordinates are stored as interleaved latitude/longitude (or x/y) pairs of
+ * native order doubles in direct buffers of {@value #CHUNK_SIZE} coordinates
+ * each, and are addressed with long indexes. The memory of a chunk is released
+ * when the buffer, or the chunk after {@link #trimToSize()}, is garbage collected.
+ * <p>
+ * The whole buffer can be converted in place with
+ * {@link #transformTo(Grid, GaussKreugerProjection)}, which copies the
+ * coordinates of each chunk through a small heap block, converts the block
+ * and writes it back, so no chunk sized heap array is needed.
+ * {@link #transform(DoubleBuffer, GaussKreugerProjection, DoubleBuffer, GaussKreugerProjection)}
+ * does the same for any buffer of interleaved pairs.
+ * Buffers are not thread safe.
+ */
+public final class OffHeapCoordinateBuffer {
+
+    public static final int CHUNK_SIZE = 1 << 20;
+
+    /**
+     * Number of coordinates converted at a time through a small heap block.
+     */
+    private static final int BLOCK_SIZE = 1024;
+
+    private final int chunkSize;
+    private final List<DoubleBuffer> chunks = new ArrayList<DoubleBuffer>();
+    private Grid grid;
+    private GaussKreugerProjection projection;
+    private long size;
+
+    /**
+     * Create an empty buffer.
+     * @param grid Grid of the coordinates
+     * @param projection Projection for grid coordinates, null for WGS84
+     */
+    public OffHeapCoordinateBuffer(Grid grid, GaussKreugerProjection projection) {
+        this(grid, projection, CHUNK_SIZE);
+    }
+
+    OffHeapCoordinateBuffer(Grid grid, GaussKreugerProjection projection, int chunkSize) {
+        CoordinateBuffer.checkProjection(grid, projection);
+        this.grid = grid;
+        this.projection = projection;
+        this.chunkSize = chunkSize;
+    }
+
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return Projection of the coordinates, null for WGS84
+     */
+    public GaussKreugerProjection getProjection() {
+        return projection;
+    }
+
+    public long size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return Number of coordinates the allocated chunks can hold
+     */
+    public long capacity() {
+        return (long) chunks.size() * chunkSize;
+    }
+
+    /**
+     * Append a coordinate.
+     * @param lat Latitude or x (northing) value
+     * @param lon Longitude or y (easting) value
+     */
+    public void add(double lat, double lon) {
+        DoubleBuffer chunk = chunkForAppend();
+        int offset = 2 * (int) (size % chunkSize);
+        chunk.put(offset, lat);
+        chunk.put(offset + 1, lon);
+        size++;
+    }
+
+    /**
+     * Append coordinates given as parallel arrays.
+     * @param lats Latitudes or x (northing) values
+     * @param lons Longitudes or y (easting) values
+     * @param offset Index of the first coordinate to append
+     * @param length Number of coordinates to append
+     */
+    public void addAll(double[] lats, double[] lons, int offset, int length) {
+        GaussKreugerProjection.checkRange(lats, offset, length);
+        GaussKreugerProjection.checkRange(lons, offset, length);
+        for (int i = 0; i < length; i++) {
+            add(lats[offset + i], lons[offset + i]);
+        }
+    }
+
+    public double getLatitude(long index) {
+        checkIndex(index);
+        return chunk(index).get(2 * (int) (index % chunkSize));
+    }
+
+    public double getLongitude(long index) {
+        checkIndex(index);
+        return chunk(index).get(2 * (int) (index % chunkSize) + 1);
+    }
+
+    /**
+     * Read a coordinate without allocating.
+     * @param index Index of the coordinate
+     * @param result Holder that receives the coordinate
+     * @return The supplied result holder
+     */
+    public CoordinateHolder get(long index, CoordinateHolder result) {
+        checkIndex(index);
+        DoubleBuffer chunk = chunk(index);
+        int offset = 2 * (int) (index % chunkSize);
+        result.set(chunk.get(offset), chunk.get(offset + 1));
+        return result;
+    }
+
+    public void set(long index, double lat, double lon) {
+        checkIndex(index);
+        DoubleBuffer chunk = chunk(index);
+        int offset = 2 * (int) (index % chunkSize);
+        chunk.put(offset, lat);
+        chunk.put(offset + 1, lon);
+    }
+
+    /**
+     * Remove all coordinates, keeping the allocated chunks.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Drop the chunks that hold no coordinates.
+     */
+    public void trimToSize() {
+        long needed = (size + chunkSize - 1) / chunkSize;
+        while (chunks.size() > needed) {
+            chunks.remove(chunks.size() - 1);
+        }
+    }
+
+    /**
+     * Convert all coordinates in place to another grid or projection.
+     * Grid to grid conversions go directly between the projections.
+     * @param targetGrid Grid to convert to
+     * @param targetProjection Projection to convert to, null for WGS84
+     */
+    public void transformTo(Grid targetGrid, GaussKreugerProjection targetProjection) {
+        CoordinateBuffer.checkProjection(targetGrid, targetProjection);
+        if (projection != targetProjection) {
+            for (int c = 0; (long) c * chunkSize < size; c++) {
+                int count = (int) Math.min(chunkSize, size - (long) c * chunkSize);
+                DoubleBuffer chunk = chunks.get(c).duplicate();
+                chunk.limit(2 * count);
+                transform(chunk, projection, chunk, targetProjection);
+            }
+        }
+        grid = targetGrid;
+        projection = targetProjection;
+    }
+
+    /**
+     * Convert the interleaved coordinate pairs between the position and limit of
+     * a buffer, writing the results from the position of another buffer, which may
+     * be the same buffer. The positions of the buffers are not changed.
+     * @param source Coordinates to convert
+     * @param sourceProjection Projection of the coordinates, null for WGS84
+     * @param target Destination for the converted coordinates
+     * @param targetProjection Projection to convert to, null for WGS84
+     */
+    public static void transform(DoubleBuffer source, GaussKreugerProjection sourceProjection,
+                                 DoubleBuffer target, GaussKreugerProjection targetProjection) {
+        if (source.remaining() % 2 != 0) {
+            throw new IllegalArgumentException("Source holds an odd number of values: " + source.remaining());
+        }
+        if (target.remaining() < source.remaining()) {
+            throw new IllegalArgumentException("Target has room for " + target.remaining()
+                    + " values, expected " + source.remaining());
+        }
+        int count = source.remaining() / 2;
+        DoubleBuffer in = source.duplicate();
+        DoubleBuffer out = target.duplicate();
+        double[] block = new double[2 * Math.min(BLOCK_SIZE, count)];
+        for (int from = 0; from < count; from += BLOCK_SIZE) {
+            int n = Math.min(BLOCK_SIZE, count - from);
+            in.get(block, 0, 2 * n);
+            if (sourceProjection != null && targetProjection != null) {
+                if (sourceProjection != targetProjection) {
+                    sourceProjection.grid_to_grid(block, 0, targetProjection, block, 0, n);
+                }
+            } else if (sourceProjection != null) {
+                sourceProjection.grid_to_geodetic(block, 0, block, 0, n);
+            } else if (targetProjection != null) {
+                targetProjection.geodetic_to_grid(block, 0, block, 0, n);
+            }
+            out.put(block, 0, 2 * n);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapCoordinateBuffer[grid=" + grid + ", size=" + size + "]";
+    }
+
+    private DoubleBuffer chunkForAppend() {
+        int c = (int) (size / chunkSize);
+        if (c == chunks.size()) {
+            chunks.add(ByteBuffer.allocateDirect(16 * chunkSize).order(ByteOrder.nativeOrder()).asDoubleBuffer());
+        }
+        return chunks.get(c);
+    }
+
+    private DoubleBuffer chunk(long index) {
+        return chunks.get((int) (index / chunkSize));
+    }
+
+    private void checkIndex(long index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+    }
+}
@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Converts large coordinate arrays in parallel by splitting them into
+ * chunks that are converted by the batch methods of
+ * {@link GaussKreugerProjection} on the supplied executor. Every point is
+ * converted by the same code as a sequential conversion, so the results
+ * are bit-identical.
+ * <p>
+ * Converting in place with the destination at the same index as the source
+ * is converted in parallel. Source and destination ranges that otherwise
+ * overlap are converted sequentially on the calling thread, since a chunk
+ * could overwrite input that another chunk has not read yet.
+ */
+public final class ParallelConverter {
+
+    public static final int DEFAULT_CHUNK_SIZE = 16384;
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final int chunkSize;
+
+    /**
+     * Create a converter using one task per available processor and the default chunk size.
+     * @param executor Executor that runs the conversion tasks
+     */
+    public ParallelConverter(ExecutorService executor) {
+        this(executor, Runtime.getRuntime().availableProcessors(), DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Create a converter
+     * @param executor Executor that runs the conversion tasks
+     * @param parallelism Maximum number of tasks converting at the same time
+     * @param chunkSize Number of points converted by a task at a time
+     */
+    public ParallelConverter(ExecutorService executor, int parallelism, int chunkSize) {
+        if (executor == null) {
+            throw new NullPointerException("executor");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        this.executor = executor;
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Parallel conversion from geodetic coordinates in parallel arrays to grid coordinates.
+     * @see GaussKreugerProjection#geodetic_to_grid(double[], double[], int, double[], double[], int, int)
+     * @throws InterruptedException if interrupted while waiting for the conversion to finish
+     */
+    public void geodetic_to_grid(final GaussKreugerProjection projection,
+                                 final double[] latitudes, final double[] longitudes, final int offset,
+                                 final double[] x, final double[] y, final int destOffset, int length)
+            throws InterruptedException {
+        GaussKreugerProjection.checkRange(latitudes, offset, length);
+        GaussKreugerProjection.checkRange(longitudes, offset, length);
+        GaussKreugerProjection.checkRange(x, destOffset, length);
+        GaussKreugerProjection.checkRange(y, destOffset, length);
+        run(new Conversion() {
+            void convert(int from, int count) {
+                projection.geodetic_to_grid(latitudes, longitudes, offset + from, x, y, destOffset + from, count);
+            }
+        }, length, overlaps(latitudes, longitudes, offset, x, y, destOffset, length));
+    }
+
+    /**
+     * Parallel conversion from interleaved geodetic coordinates to interleaved grid coordinates.
+     * @see GaussKreugerProjection#geodetic_to_grid(double[], int, double[], int, int)
+     * @throws InterruptedException if interrupted while waiting for the conversion to finish
+     */
+    public void geodetic_to_grid(final GaussKreugerProjection projection,
+                                 final double[] lat_lon, final int offset,
+                                 final double[] x_y, final int destOffset, int count)
+            throws InterruptedException {
+        GaussKreugerProjection.checkRange(lat_lon, offset, 2 * count);
+        GaussKreugerProjection.checkRange(x_y, destOffset, 2 * count);
+        run(new Conversion() {
+            void convert(int from, int count) {
+                projection.geodetic_to_grid(lat_lon, offset + 2 * from, x_y, destOffset + 2 * from, count);
+            }
+        }, count, overlaps(lat_lon, offset, x_y, destOffset, 2 * count));
+    }
+
+    /**
+     * Parallel conversion from grid coordinates in parallel arrays to geodetic coordinates.
+     * @see GaussKreugerProjection#grid_to_geodetic(double[], double[], int, double[], double[], int, int)
+     * @throws InterruptedException if interrupted while waiting for the conversion to finish
+     */
+    public void grid_to_geodetic(final GaussKreugerProjection projection,
+                                 final double[] x, final double[] y, final int offset,
+                                 final double[] latitudes, final double[] longitudes, final int destOffset, int length)
+            throws InterruptedException {
+        GaussKreugerProjection.checkRange(x, offset, length);
+        GaussKreugerProjection.checkRange(y, offset, length);
+        GaussKreugerProjection.checkRange(latitudes, destOffset, length);
+        GaussKreugerProjection.checkRange(longitudes, destOffset, length);
+        run(new Conversion() {
+            void convert(int from, int count) {
+                projection.grid_to_geodetic(x, y, offset + from, latitudes, longitudes, destOffset + from, count);
+            }
+        }, length, overlaps(x, y, offset, latitudes, longitudes, destOffset, length));
+    }
+
+    /**
+     * Parallel conversion from interleaved grid coordinates to interleaved geodetic coordinates.
+     * @see GaussKreugerProjection#grid_to_geodetic(double[], int, double[], int, int)
+     * @throws InterruptedException if interrupted while waiting for the conversion to finish
+     */
+    public void grid_to_geodetic(final GaussKreugerProjection projection,
+                                 final double[] x_y, final int offset,
+                                 final double[] lat_lon, final int destOffset, int count)
+            throws InterruptedException {
+        GaussKreugerProjection.checkRange(x_y, offset, 2 * count);
+        GaussKreugerProjection.checkRange(lat_lon, destOffset, 2 * count);
+        run(new Conversion() {
+            void convert(int from, int count) {
+                projection.grid_to_geodetic(x_y, offset + 2 * from, lat_lon, destOffset + 2 * from, count);
+            }
+        }, count, overlaps(x_y, offset, lat_lon, destOffset, 2 * count));
+    }
+
+    /**
+     * Parallel conversion from grid coordinates in parallel arrays directly to another projection.
+     * @see GaussKreugerProjection#grid_to_grid(double[], double[], int, GaussKreugerProjection, double[], double[], int, int)
+     * @throws InterruptedException if interrupted while waiting for the conversion to finish
+     */
+    public void grid_to_grid(final GaussKreugerProjection projection,
+                             final double[] x, final double[] y, final int offset,
+                             final GaussKreugerProjection target,
+                             final double[] targetX, final double[] targetY, final int destOffset, int length)
+            throws InterruptedException {
+        GaussKreugerProjection.checkRange(x, offset, length);
+        GaussKreugerProjection.checkRange(y, offset, length);
+        GaussKreugerProjection.checkRange(targetX, destOffset, length);
+        GaussKreugerProjection.checkRange(targetY, destOffset, length);
+        run(new Conversion() {
+            void convert(int from, int count) {
+                projection.grid_to_grid(x, y, offset + from, target, targetX, targetY, destOffset + from, count);
+            }
+        }, length, overlaps(x, y, offset, targetX, targetY, destOffset, length));
+    }
+
+    /**
+     * Parallel conversion from interleaved grid coordinates directly to another projection.
+     * @see GaussKreugerProjection#grid_to_grid(double[], int, GaussKreugerProjection, double[], int, int)
+     * @throws InterruptedException if interrupted while waiting for the conversion to finish
+     */
+    public void grid_to_grid(final GaussKreugerProjection projection,
+                             final double[] x_y, final int offset,
+                             final GaussKreugerProjection target,
+                             final double[] target_x_y, final int destOffset, int count)
+            throws InterruptedException {
+        GaussKreugerProjection.checkRange(x_y, offset, 2 * count);
+        GaussKreugerProjection.checkRange(target_x_y, destOffset, 2 * count);
+        run(new Conversion() {
+            void convert(int from, int count) {
+                projection.grid_to_grid(x_y, offset + 2 * from, target, target_x_y, destOffset + 2 * from, count);
+            }
+        }, count, overlaps(x_y, offset, target_x_y, destOffset, 2 * count));
+    }
+
+    private void run(final Conversion conversion, final int length, boolean sequential)
+            throws InterruptedException {
+        if (sequential || length <= chunkSize) {
+            conversion.convert(0, length);
+            return;
+        }
+        final int chunks = (length - 1) / chunkSize + 1;
+        final AtomicInteger nextChunk = new AtomicInteger();
+        int tasks = Math.min(parallelism, chunks);
+        // Counted down once per task, either when the task finishes or when
+        // it is withdrawn before it started, so that run never returns while
+        // a task may still write into the caller's arrays.
+        final CountDownLatch finished = new CountDownLatch(tasks);
+        List<Task> submitted = new ArrayList<Task>(tasks);
+        try {
+            for (int i = 0; i < tasks; i++) {
+                Task task = new Task(finished) {
+                    void convert() {
+                        int chunk;
+                        while ((chunk = nextChunk.getAndIncrement()) < chunks) {
+                            int from = chunk * chunkSize;
+                            conversion.convert(from, Math.min(chunkSize, length - from));
+                        }
+                    }
+                };
+                task.future = executor.submit(task);
+                submitted.add(task);
+            }
+            for (Task task : submitted) {
+                task.future.get();
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            // Stop handing out chunks if the conversion failed or was interrupted,
+            // withdraw the tasks that have not started and wait for the others.
+            nextChunk.set(chunks);
+            for (Task task : submitted) {
+                task.withdraw();
+            }
+            for (int i = submitted.size(); i < tasks; i++) {
+                finished.countDown();
+            }
+            awaitUninterruptibly(finished);
+        }
+    }
+
+    private static boolean overlaps(double[] a, double[] b, int offset,
+                                    double[] destA, double[] destB, int destOffset, int length) {
+        return overlaps(a, offset, destA, destOffset, length) || overlaps(a, offset, destB, destOffset, length)
+                || overlaps(b, offset, destA, destOffset, length) || overlaps(b, offset, destB, destOffset, length);
+    }
+
+    /**
+     * @return true if the ranges share elements without starting at the same index
+     */
+    private static boolean overlaps(double[] source, int offset, double[] dest, int destOffset, int length) {
+        return source == dest && offset != destOffset
+                && offset < destOffset + length && destOffset < offset + length;
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                latch.await();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private abstract static class Task implements Callable<Void> {
+        private final AtomicBoolean started = new AtomicBoolean();
+        private final CountDownLatch finished;
+        Future<Void> future;
+
+        Task(CountDownLatch finished) {
+            this.finished = finished;
+        }
+
+        abstract void convert();
+
+        public Void call() {
+            if (started.compareAndSet(false, true)) {
+                try {
+                    convert();
+                } finally {
+                    finished.countDown();
+                }
+            }
+            return null;
+        }
+
+        void withdraw() {
+            if (started.compareAndSet(false, true)) {
+                future.cancel(false);
+                finished.countDown();
+            }
+        }
+    }
+
+    private abstract static class Conversion {
+        abstract void convert(int from, int count);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation;
+
+import com.github.goober.coordinatetransformation.exception.UnknownProjectionException;
+import com.github.goober.coordinatetransformation.positions.RT90Position.RT90BesselProjection;
+import com.github.goober.coordinatetransformation.positions.RT90Position.RT90Projection;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position.SWEREFProjection;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Registry of the precomputed Swedish projections.
+ * Note: Parameters for RT90 are choosen to eliminate the
+ * differences between Bessel and GRS80-ellipsoides.
+ * Bessel-variants should only be used if lat/long are given as
+ * RT90-lat/long based on the Bessel ellipsoide (from old maps).
+ * <p>
+ * The registry is filled once when the class is initialized and never
+ * modified afterwards, so lookups are thread safe and lock free, and every
+ * lookup of a projection returns the same shared instance.
+ */
+public final class ProjectionRegistry {
+
+    static final double GRS80_AXIS = 6378137.0; // GRS 80.
+    static final double GRS80_FLATTENING = 1.0 / 298.257222101; // GRS 80.
+    static final double BESSEL_AXIS = 6377397.155; // Bessel 1841.
+    static final double BESSEL_FLATTENING = 1.0 / 299.1528128; // Bessel 1841.
+
+    private static final Map<RT90Projection, GaussKreugerProjection> RT90 =
+            new EnumMap<RT90Projection, GaussKreugerProjection>(RT90Projection.class);
+
+    private static final Map<RT90BesselProjection, GaussKreugerProjection> RT90_BESSEL =
+            new EnumMap<RT90BesselProjection, GaussKreugerProjection>(RT90BesselProjection.class);
+
+    private static final Map<SWEREFProjection, GaussKreugerProjection> SWEREF99 =
+            new EnumMap<SWEREFProjection, GaussKreugerProjection>(SWEREFProjection.class);
+
+    private static final Map<String, GaussKreugerProjection> BY_NAME = new HashMap<String, GaussKreugerProjection>();
+
+    private static final Map<GaussKreugerProjection, String> NAMES = new IdentityHashMap<GaussKreugerProjection, String>();
+
+    static {
+        // RT90 parameters, GRS 80 ellipsoid.
+        register(RT90, RT90Projection.rt90_7_5_gon_v, "rt90_7.5_gon_v",
+                grs80(11.0 + 18.375 / 60.0, 1.000006000000, -667.282, 1500025.141));
+        register(RT90, RT90Projection.rt90_5_0_gon_v, "rt90_5.0_gon_v",
+                grs80(13.0 + 33.376 / 60.0, 1.000005800000, -667.130, 1500044.695));
+        register(RT90, RT90Projection.rt90_2_5_gon_v, "rt90_2.5_gon_v",
+                grs80(15.0 + 48.0 / 60.0 + 22.624306 / 3600.0, 1.00000561024, -667.711, 1500064.274));
+        register(RT90, RT90Projection.rt90_0_0_gon_v, "rt90_0.0_gon_v",
+                grs80(18.0 + 3.378 / 60.0, 1.000005400000, -668.844, 1500083.521));
+        register(RT90, RT90Projection.rt90_2_5_gon_o, "rt90_2.5_gon_o",
+                grs80(20.0 + 18.379 / 60.0, 1.000005200000, -670.706, 1500102.765));
+        register(RT90, RT90Projection.rt90_5_0_gon_o, "rt90_5.0_gon_o",
+                grs80(22.0 + 33.380 / 60.0, 1.000004900000, -672.557, 1500121.846));
+
+        // RT90 parameters, Bessel 1841 ellipsoid.
+        register(RT90_BESSEL, RT90BesselProjection.bessel_rt90_7_5_gon_v, "bessel_rt90_7.5_gon_v",
+                bessel(11.0 + 18.0 / 60.0 + 29.8 / 3600.0));
+        register(RT90_BESSEL, RT90BesselProjection.bessel_rt90_5_0_gon_v, "bessel_rt90_5.0_gon_v",
+                bessel(13.0 + 33.0 / 60.0 + 29.8 / 3600.0));
+        register(RT90_BESSEL, RT90BesselProjection.bessel_rt90_2_5_gon_v, "bessel_rt90_2.5_gon_v",
+                bessel(15.0 + 48.0 / 60.0 + 29.8 / 3600.0));
+        register(RT90_BESSEL, RT90BesselProjection.bessel_rt90_0_0_gon_v, "bessel_rt90_0.0_gon_v",
+                bessel(18.0 + 3.0 / 60.0 + 29.8 / 3600.0));
+        register(RT90_BESSEL, RT90BesselProjection.bessel_rt90_2_5_gon_o, "bessel_rt90_2.5_gon_o",
+                bessel(20.0 + 18.0 / 60.0 + 29.8 / 3600.0));
+        register(RT90_BESSEL, RT90BesselProjection.bessel_rt90_5_0_gon_o, "bessel_rt90_5.0_gon_o",
+                bessel(22.0 + 33.0 / 60.0 + 29.8 / 3600.0));
+
+        // SWEREF99TM and SWEREF99ddmm  parameters.
+        register(SWEREF99, SWEREFProjection.sweref_99_tm, "sweref_99_tm",
+                new GaussKreugerProjection(GRS80_AXIS, GRS80_FLATTENING, 15.00, 0.9996, 0.0, 500000.0));
+        register(SWEREF99, SWEREFProjection.sweref_99_12_00, "sweref_99_1200", sweref99(12.00));
+        register(SWEREF99, SWEREFProjection.sweref_99_13_30, "sweref_99_1330", sweref99(13.50));
+        register(SWEREF99, SWEREFProjection.sweref_99_15_00, "sweref_99_1500", sweref99(15.00));
+        register(SWEREF99, SWEREFProjection.sweref_99_16_30, "sweref_99_1630", sweref99(16.50));
+        register(SWEREF99, SWEREFProjection.sweref_99_18_00, "sweref_99_1800", sweref99(18.00));
+        register(SWEREF99, SWEREFProjection.sweref_99_14_15, "sweref_99_1415", sweref99(14.25));
+        register(SWEREF99, SWEREFProjection.sweref_99_15_45, "sweref_99_1545", sweref99(15.75));
+        register(SWEREF99, SWEREFProjection.sweref_99_17_15, "sweref_99_1715", sweref99(17.25));
+        register(SWEREF99, SWEREFProjection.sweref_99_18_45, "sweref_99_1845", sweref99(18.75));
+        register(SWEREF99, SWEREFProjection.sweref_99_20_15, "sweref_99_2015", sweref99(20.25));
+        register(SWEREF99, SWEREFProjection.sweref_99_21_45, "sweref_99_2145", sweref99(21.75));
+        register(SWEREF99, SWEREFProjection.sweref_99_23_15, "sweref_99_2315", sweref99(23.25));
+    }
+
+    private ProjectionRegistry() {
+    }
+
+    /**
+     * Get the precomputed projection for a RT90 projection type
+     * @param projection Projection type
+     * @return Shared projection instance
+     */
+    public static GaussKreugerProjection get(RT90Projection projection) {
+        return lookup(RT90, projection);
+    }
+
+    /**
+     * Get the precomputed projection for a RT90 projection type on the Bessel 1841 ellipsoid
+     * @param projection Projection type
+     * @return Shared projection instance
+     */
+    public static GaussKreugerProjection get(RT90BesselProjection projection) {
+        return lookup(RT90_BESSEL, projection);
+    }
+
+    /**
+     * Get the precomputed projection for a SWEREF99 projection type
+     * @param projection Projection type
+     * @return Shared projection instance
+     */
+    public static GaussKreugerProjection get(SWEREFProjection projection) {
+        return lookup(SWEREF99, projection);
+    }
+
+    /**
+     * Get the precomputed projection by name, e.g. "rt90_2.5_gon_v" or "sweref_99_tm"
+     * @param projection Projection name
+     * @return Shared projection instance
+     * @throws UnknownProjectionException if the name is not a known projection
+     */
+    public static GaussKreugerProjection get(String projection) {
+        return lookup(BY_NAME, projection);
+    }
+
+    /**
+     * Get the name of a registered projection, e.g. "rt90_2.5_gon_v" or "sweref_99_tm"
+     * @param projection Projection returned by this registry, or one with the same parameters
+     * @return Projection name
+     * @throws UnknownProjectionException if the projection is not registered
+     */
+    public static String getName(GaussKreugerProjection projection) {
+        String name = NAMES.get(projection);
+        if (name == null) {
+            for (Map.Entry<GaussKreugerProjection, String> entry : NAMES.entrySet()) {
+                if (entry.getKey().hasSameParameters(projection)) {
+                    return entry.getValue();
+                }
+            }
+            throw new UnknownProjectionException(String.valueOf(projection));
+        }
+        return name;
+    }
+
+    private static <K> GaussKreugerProjection lookup(Map<K, GaussKreugerProjection> projections, K projection) {
+        GaussKreugerProjection result = projections.get(projection);
+        if (result == null) {
+            throw new UnknownProjectionException(String.valueOf(projection));
+        }
+        return result;
+    }
+
+    private static <K> void register(Map<K, GaussKreugerProjection> projections, K key, String name,
+                                     GaussKreugerProjection projection) {
+        projections.put(key, projection);
+        BY_NAME.put(name, projection);
+        NAMES.put(projection, name);
+    }
+
+    // Sets of default parameters.
+    private static GaussKreugerProjection grs80(double central_meridian, double scale,
+                                                double false_northing, double false_easting) {
+        return new GaussKreugerProjection(GRS80_AXIS, GRS80_FLATTENING, central_meridian,
+                scale, false_northing, false_easting);
+    }
+
+    private static GaussKreugerProjection bessel(double central_meridian) {
+        return new GaussKreugerProjection(BESSEL_AXIS, BESSEL_FLATTENING, central_meridian,
+                1.0, 0.0, 1500000.0);
+    }
+
+    private static GaussKreugerProjection sweref99(double central_meridian) {
+        return new GaussKreugerProjection(GRS80_AXIS, GRS80_FLATTENING, central_meridian,
+                1.0, 0.0, 150000.0);
+    }
+}
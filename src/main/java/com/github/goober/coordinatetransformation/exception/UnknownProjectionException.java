@@ -0,0 +1,32 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation.exception;
+
+/**
+ * Signals that a projection name or identifier is not known.
+ *
+ */
+public class UnknownProjectionException extends IllegalArgumentException {
+
+    /**
+     * Constructs an instance of <code>UnknownProjectionException</code> for the given projection.
+     * @param projection the unknown projection.
+     */
+    public UnknownProjectionException(String projection) {
+        super("Unknown projection: " + projection);
+    }
+}
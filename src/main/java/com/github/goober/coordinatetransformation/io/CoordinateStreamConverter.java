@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.io;
+
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.FixedPointFormatter;
+import com.github.goober.coordinatetransformation.GaussKreugerProjection;
+import com.github.goober.coordinatetransformation.exception.FormatException;
+import com.github.goober.coordinatetransformation.positions.WGS84Formatter;
+import com.github.goober.coordinatetransformation.positions.WGS84Parser;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.channels.Channels;
+
+/**
+ * Converts delimited text files of coordinates row by row. Only the current
+ * row is held in memory, so files of any size can be converted.
+ * Columns other than the two coordinate columns are copied unchanged, and
+ * every line keeps the line terminator it was read with, so a file without
+ * a trailing line terminator is written without one.
+ * Quoted fields are not supported, so the delimiter must not occur
+ * inside any field.
+ */
+public class CoordinateStreamConverter {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final String CHARSET = "UTF-8";
+
+    private final TextCoordinateFormat source;
+    private final TextCoordinateFormat target;
+    private final char delimiter;
+    private final int latitudeColumn;
+    private final int longitudeColumn;
+    private final int headerLines;
+
+    /**
+     * Create a converter for semicolon separated rows with the coordinates
+     * in the first two columns and no header.
+     * @param source Format of the coordinates read
+     * @param target Format of the coordinates written
+     */
+    public CoordinateStreamConverter(TextCoordinateFormat source, TextCoordinateFormat target) {
+        this(source, target, ';', 0, 1, 0);
+    }
+
+    /**
+     * Create a converter
+     * @param source Format of the coordinates read
+     * @param target Format of the coordinates written
+     * @param delimiter Column delimiter
+     * @param latitudeColumn Zero based index of the latitude or northing column
+     * @param longitudeColumn Zero based index of the longitude or easting column
+     * @param headerLines Number of leading lines that are copied without conversion
+     */
+    public CoordinateStreamConverter(TextCoordinateFormat source, TextCoordinateFormat target,
+                                     char delimiter, int latitudeColumn, int longitudeColumn, int headerLines) {
+        if (source == null || target == null) {
+            throw new NullPointerException("source and target must be set");
+        }
+        if (latitudeColumn < 0 || longitudeColumn < 0 || latitudeColumn == longitudeColumn) {
+            throw new IllegalArgumentException("Invalid coordinate columns: " + latitudeColumn + ", " + longitudeColumn);
+        }
+        if (headerLines < 0) {
+            throw new IllegalArgumentException("Header lines must not be negative: " + headerLines);
+        }
+        this.source = source;
+        this.target = target;
+        this.delimiter = delimiter;
+        this.latitudeColumn = latitudeColumn;
+        this.longitudeColumn = longitudeColumn;
+        this.headerLines = headerLines;
+    }
+
+    /**
+     * Convert a UTF-8 encoded file.
+     * @param in File to read
+     * @param out File to write
+     * @return Number of converted rows
+     * @throws IOException if reading or writing fails
+     * @throws FormatException if a row can not be parsed
+     */
+    public long convert(File in, File out) throws IOException, FormatException {
+        FileInputStream input = new FileInputStream(in);
+        try {
+            FileOutputStream output = new FileOutputStream(out);
+            try {
+                Writer writer = Channels.newWriter(output.getChannel(), CHARSET);
+                long rows = convert(Channels.newReader(input.getChannel(), CHARSET), writer);
+                writer.flush();
+                return rows;
+            } finally {
+                output.close();
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+    /**
+     * Convert all rows read from a reader. The writer is flushed but not closed.
+     * @param in Reader to read rows from
+     * @param out Writer to write converted rows to
+     * @return Number of converted rows
+     * @throws IOException if reading or writing fails
+     * @throws FormatException if a row can not be parsed
+     */
+    public long convert(Reader in, Writer out) throws IOException, FormatException {
+        LineReader reader = new LineReader(in);
+        BufferedWriter writer = new BufferedWriter(out, BUFFER_SIZE);
+        RowConverter row = new RowConverter();
+        long lineNumber = 0;
+        long rows = 0;
+        String line;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            if (lineNumber <= headerLines || line.length() == 0) {
+                writer.write(line);
+            } else {
+                row.convert(line, lineNumber, writer);
+                rows++;
+            }
+            writer.write(reader.terminator);
+        }
+        writer.flush();
+        return rows;
+    }
+
+    /**
+     * Reads lines like {@link java.io.BufferedReader#readLine()}, but also
+     * tells which line terminator ended each line.
+     */
+    private static final class LineReader {
+
+        private final Reader in;
+        private final char[] buffer = new char[BUFFER_SIZE];
+        private final StringBuilder line = new StringBuilder(128);
+        private int position;
+        private int limit;
+
+        /**
+         * Terminator of the last line read: "\n", "\r\n", "\r", or "" for a last line without one.
+         */
+        String terminator;
+
+        LineReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * @return The next line without its terminator, or null at the end of the input
+         */
+        String readLine() throws IOException {
+            line.setLength(0);
+            boolean read = false;
+            for (;;) {
+                if (position == limit && !fill()) {
+                    terminator = "";
+                    return read ? line.toString() : null;
+                }
+                read = true;
+                for (int i = position; i < limit; i++) {
+                    char c = buffer[i];
+                    if (c == '\n' || c == '\r') {
+                        line.append(buffer, position, i - position);
+                        position = i + 1;
+                        if (c == '\n') {
+                            terminator = "\n";
+                        } else if ((position < limit || fill()) && buffer[position] == '\n') {
+                            position++;
+                            terminator = "\r\n";
+                        } else {
+                            terminator = "\r";
+                        }
+                        return line.toString();
+                    }
+                }
+                line.append(buffer, position, limit - position);
+                position = limit;
+            }
+        }
+
+        private boolean fill() throws IOException {
+            int n;
+            do {
+                n = in.read(buffer, 0, buffer.length);
+            } while (n == 0);
+            if (n < 0) {
+                return false;
+            }
+            position = 0;
+            limit = n;
+            return true;
+        }
+    }
+
+    /**
+     * Per stream state, reused for every row.
+     */
+    private class RowConverter {
+
+        private final CoordinateHolder coordinate = new CoordinateHolder();
+        private final WGS84Parser parser = new WGS84Parser();
+        private final StringBuilder buffer = new StringBuilder(32);
+        private final int columns = Math.max(latitudeColumn, longitudeColumn) + 1;
+        private final int[] starts = new int[columns];
+        private final int[] ends = new int[columns];
+
+        void convert(String line, long lineNumber, Writer writer) throws IOException, FormatException {
+            int start = 0;
+            for (int column = 0; column < columns; column++) {
+                int end = line.indexOf(delimiter, start);
+                if (end < 0) {
+                    if (column < columns - 1) {
+                        throw new FormatException("Missing coordinate column on line " + lineNumber);
+                    }
+                    end = line.length();
+                }
+                starts[column] = start;
+                ends[column] = end;
+                start = end + 1;
+            }
+
+            try {
+                read(line);
+            } catch (FormatException e) {
+                throw new FormatException("Invalid coordinate on line " + lineNumber + ": " + e.getMessage());
+            }
+
+            int written = 0;
+            for (int column = 0; column < columns; column++) {
+                writer.write(line, written, starts[column] - written);
+                if (column == latitudeColumn) {
+                    write(writer, coordinate.getLatitude(), true);
+                } else if (column == longitudeColumn) {
+                    write(writer, coordinate.getLongitude(), false);
+                } else {
+                    writer.write(line, starts[column], ends[column] - starts[column]);
+                }
+                written = ends[column];
+            }
+            writer.write(line, written, line.length() - written);
+        }
+
+        private void read(String line) throws FormatException {
+            int latStart = starts[latitudeColumn];
+            int latEnd = ends[latitudeColumn];
+            int lonStart = starts[longitudeColumn];
+            int lonEnd = ends[longitudeColumn];
+            GaussKreugerProjection from = source.getProjection();
+            GaussKreugerProjection to = target.getProjection();
+            if (from != null) {
+                double x = parser.parseDecimal(line, latStart, latEnd);
+                double y = parser.parseDecimal(line, lonStart, lonEnd);
+                if (to != null) {
+                    from.grid_to_grid(x, y, to, coordinate);
+                } else {
+                    from.grid_to_geodetic(x, y, coordinate);
+                }
+                return;
+            }
+
+            double latitude = parser.parseLatitude(line, latStart, latEnd, source.getWGS84Format());
+            double longitude = parser.parseLongitude(line, lonStart, lonEnd, source.getWGS84Format());
+            if (to != null) {
+                to.geodetic_to_grid(latitude, longitude, coordinate);
+            } else {
+                coordinate.set(latitude, longitude);
+            }
+        }
+
+        private void write(Writer writer, double value, boolean latitude) throws IOException {
+            buffer.setLength(0);
+            if (target.getProjection() != null) {
+                FixedPointFormatter.append(buffer, value, 3);
+            } else if (latitude) {
+                WGS84Formatter.appendLatitude(buffer, value, target.getWGS84Format());
+            } else {
+                WGS84Formatter.appendLongitude(buffer, value, target.getWGS84Format());
+            }
+            writer.append(buffer);
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.io;
+
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.GaussKreugerProjection;
+import com.github.goober.coordinatetransformation.Position.Grid;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
+import com.github.goober.coordinatetransformation.exception.FormatException;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Memory mapped binary file of coordinates.
+ * <p>
+ * The file starts with a {@value #HEADER_SIZE} byte header followed by one
+ * pair of little-endian doubles per coordinate, latitude/longitude for WGS84
+ * and northing/easting for grid coordinates. The header holds, in little-endian
+ * order:
+ * <pre>
+ *  0  int    magic "CTLC"
+ *  4  short  format version
+ *  6  byte   Position.Grid ordinal
+ *  7  byte   length of the projection name
+ *  8  long   number of coordinates
+ * 16  byte[] projection name as US-ASCII, e.g. "sweref_99_tm", zero padded
+ * </pre>
+ * WGS84 files have an empty projection name.
+ * <p>
+ * Coordinates are read and written directly in the mapped buffers, in windows of
+ * at most {@value #WINDOW_SIZE} coordinates, so files larger than 2 GB are supported.
+ * Instances are not thread safe.
+ */
+public class MappedCoordinateFile implements Closeable {
+
+    public static final int HEADER_SIZE = 64;
+
+    static final int WINDOW_SIZE = 1 << 26;
+
+    private static final int MAGIC = 0x434c5443; // "CTLC" in little-endian.
+    private static final short VERSION = 1;
+    private static final int NAME_OFFSET = 16;
+    private static final int COORDINATE_SIZE = 16;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final boolean writable;
+    private final Grid grid;
+    private final GaussKreugerProjection projection;
+    private final long size;
+    private final MappedByteBuffer[] windows;
+
+    private MappedCoordinateFile(RandomAccessFile file, boolean writable, Grid grid,
+                                 GaussKreugerProjection projection, long size) {
+        this.file = file;
+        this.channel = file.getChannel();
+        this.writable = writable;
+        this.grid = grid;
+        this.projection = projection;
+        this.size = size;
+        this.windows = new MappedByteBuffer[(int) ((size + WINDOW_SIZE - 1) / WINDOW_SIZE)];
+    }
+
+    /**
+     * Create a new file, replacing any existing file.
+     * @param path File to create
+     * @param grid Grid of the coordinates
+     * @param projection Projection from {@link ProjectionRegistry} for grid coordinates, null for WGS84
+     * @param size Number of coordinates
+     * @return Writable file with all coordinates set to zero
+     * @throws IOException if the file can not be created
+     */
+    public static MappedCoordinateFile create(File path, Grid grid, GaussKreugerProjection projection, long size)
+            throws IOException {
+        if (size < 0) {
+            throw new IllegalArgumentException("Size must not be negative: " + size);
+        }
+        if ((grid == Grid.WGS84) != (projection == null)) {
+            throw new IllegalArgumentException("Grid coordinates require a projection, WGS84 coordinates must not have one");
+        }
+        byte[] name = projection == null ? new byte[0] : ProjectionRegistry.getName(projection).getBytes("US-ASCII");
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC);
+        header.putShort(VERSION);
+        header.put((byte) grid.ordinal());
+        header.put((byte) name.length);
+        header.putLong(size);
+        header.put(name);
+        header.clear();
+
+        RandomAccessFile file = new RandomAccessFile(path, "rw");
+        try {
+            file.setLength(0);
+            file.setLength(HEADER_SIZE + size * COORDINATE_SIZE);
+            FileChannel channel = file.getChannel();
+            while (header.hasRemaining()) {
+                channel.write(header, header.position());
+            }
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        }
+        return new MappedCoordinateFile(file, true, grid, projection, size);
+    }
+
+    /**
+     * Open an existing file.
+     * @param path File to open
+     * @param writable Whether coordinates may be changed
+     * @return The opened file
+     * @throws IOException if the file can not be read
+     * @throws FormatException if the file header is invalid
+     */
+    public static MappedCoordinateFile open(File path, boolean writable) throws IOException, FormatException {
+        RandomAccessFile file = new RandomAccessFile(path, writable ? "rw" : "r");
+        try {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            FileChannel channel = file.getChannel();
+            while (header.hasRemaining()) {
+                if (channel.read(header, header.position()) < 0) {
+                    throw new FormatException("Truncated coordinate file header");
+                }
+            }
+            header.flip();
+            if (header.getInt() != MAGIC) {
+                throw new FormatException("Not a coordinate file");
+            }
+            short version = header.getShort();
+            if (version != VERSION) {
+                throw new FormatException("Unsupported coordinate file version " + version);
+            }
+            int gridOrdinal = header.get();
+            int nameLength = header.get();
+            long size = header.getLong();
+            if (gridOrdinal < 0 || gridOrdinal >= Grid.values().length
+                    || nameLength < 0 || nameLength > HEADER_SIZE - NAME_OFFSET || size < 0) {
+                throw new FormatException("Invalid coordinate file header");
+            }
+            if (size > (channel.size() - HEADER_SIZE) / COORDINATE_SIZE) {
+                throw new FormatException("Truncated coordinate file");
+            }
+            Grid grid = Grid.values()[gridOrdinal];
+            byte[] name = new byte[nameLength];
+            header.position(NAME_OFFSET);
+            header.get(name);
+            GaussKreugerProjection projection = null;
+            if (grid != Grid.WGS84) {
+                try {
+                    projection = ProjectionRegistry.get(new String(name, "US-ASCII"));
+                } catch (IllegalArgumentException e) {
+                    throw new FormatException(e.getMessage());
+                }
+            }
+            return new MappedCoordinateFile(file, writable, grid, projection, size);
+        } catch (IOException e) {
+            file.close();
+            throw e;
+        } catch (FormatException e) {
+            file.close();
+            throw e;
+        }
+    }
+
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return Projection of grid coordinates, null for WGS84
+     */
+    public GaussKreugerProjection getProjection() {
+        return projection;
+    }
+
+    /**
+     * @return Number of coordinates in the file
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * @param index Index of the coordinate
+     * @return Latitude or northing of the coordinate
+     */
+    public double getLatitude(long index) throws IOException {
+        return window(index).getDouble(offset(index));
+    }
+
+    /**
+     * @param index Index of the coordinate
+     * @return Longitude or easting of the coordinate
+     */
+    public double getLongitude(long index) throws IOException {
+        return window(index).getDouble(offset(index) + 8);
+    }
+
+    /**
+     * Set a coordinate
+     * @param index Index of the coordinate
+     * @param lat Latitude or northing
+     * @param lon Longitude or easting
+     */
+    public void set(long index, double lat, double lon) throws IOException {
+        if (!writable) {
+            throw new IllegalStateException("File is opened read only");
+        }
+        MappedByteBuffer window = window(index);
+        int offset = offset(index);
+        window.putDouble(offset, lat);
+        window.putDouble(offset + 8, lon);
+    }
+
+    /**
+     * Convert all coordinates in this file into another file of the same size,
+     * reading from and writing to the mapped buffers directly.
+     * @param target Writable file receiving the converted coordinates
+     */
+    public void transformTo(MappedCoordinateFile target) throws IOException {
+        if (target.size != size) {
+            throw new IllegalArgumentException("Target holds " + target.size + " coordinates, expected " + size);
+        }
+        if (!target.writable) {
+            throw new IllegalStateException("Target file is opened read only");
+        }
+        GaussKreugerProjection from = projection;
+        GaussKreugerProjection to = target.projection;
+        CoordinateHolder coordinate = new CoordinateHolder();
+        for (int w = 0; w < windows.length; w++) {
+            long first = (long) w * WINDOW_SIZE;
+            MappedByteBuffer in = window(first);
+            MappedByteBuffer out = target.window(first);
+            int end = (int) Math.min(WINDOW_SIZE, size - first) * COORDINATE_SIZE;
+            for (int offset = 0; offset < end; offset += COORDINATE_SIZE) {
+                double lat = in.getDouble(offset);
+                double lon = in.getDouble(offset + 8);
+                if (from != null && to != null) {
+                    from.grid_to_grid(lat, lon, to, coordinate);
+                } else if (from != null) {
+                    from.grid_to_geodetic(lat, lon, coordinate);
+                } else if (to != null) {
+                    to.geodetic_to_grid(lat, lon, coordinate);
+                } else {
+                    coordinate.set(lat, lon);
+                }
+                out.putDouble(offset, coordinate.getLatitude());
+                out.putDouble(offset + 8, coordinate.getLongitude());
+            }
+        }
+    }
+
+    /**
+     * Flush changes to disk, if writable, and close the file. The mapped
+     * buffers are released when they are garbage collected.
+     */
+    public void close() throws IOException {
+        try {
+            if (writable) {
+                for (MappedByteBuffer window : windows) {
+                    if (window != null) {
+                        window.force();
+                    }
+                }
+            }
+        } finally {
+            file.close();
+        }
+    }
+
+    private MappedByteBuffer window(long index) throws IOException {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for size " + size);
+        }
+        int w = (int) (index / WINDOW_SIZE);
+        MappedByteBuffer window = windows[w];
+        if (window == null) {
+            long first = (long) w * WINDOW_SIZE;
+            long length = Math.min(WINDOW_SIZE, size - first) * COORDINATE_SIZE;
+            window = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY,
+                    HEADER_SIZE + first * COORDINATE_SIZE, length);
+            window.order(ByteOrder.LITTLE_ENDIAN);
+            windows[w] = window;
+        }
+        return window;
+    }
+
+    private static int offset(long index) {
+        return (int) (index % WINDOW_SIZE) * COORDINATE_SIZE;
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.io;
+
+import com.github.goober.coordinatetransformation.GaussKreugerProjection;
+import com.github.goober.coordinatetransformation.Position.Grid;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
+import com.github.goober.coordinatetransformation.positions.RT90Position.RT90Projection;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position.SWEREFProjection;
+import com.github.goober.coordinatetransformation.positions.WGS84Position.WGS84Format;
+
+/**
+ * Describes how coordinates are written as text, either as WGS84 latitude and
+ * longitude in one of the {@link WGS84Format} variants or as northing and
+ * easting in a RT90 or SWEREF99 projection.
+ */
+public final class TextCoordinateFormat {
+
+    private final Grid grid;
+    private final WGS84Format wgs84Format;
+    private final GaussKreugerProjection projection;
+
+    private TextCoordinateFormat(Grid grid, WGS84Format wgs84Format, GaussKreugerProjection projection) {
+        this.grid = grid;
+        this.wgs84Format = wgs84Format;
+        this.projection = projection;
+    }
+
+    /**
+     * WGS84 latitude and longitude in the given format
+     * @param format Format of the values
+     * @return Text format
+     */
+    public static TextCoordinateFormat wgs84(WGS84Format format) {
+        if (format == null) {
+            throw new NullPointerException("format");
+        }
+        return new TextCoordinateFormat(Grid.WGS84, format, null);
+    }
+
+    /**
+     * RT90 northing (X) and easting (Y) in the given projection
+     * @param projection Projection type
+     * @return Text format
+     */
+    public static TextCoordinateFormat rt90(RT90Projection projection) {
+        return new TextCoordinateFormat(Grid.RT90, null, ProjectionRegistry.get(projection));
+    }
+
+    /**
+     * SWEREF99 northing (N) and easting (E) in the given projection
+     * @param projection Projection type
+     * @return Text format
+     */
+    public static TextCoordinateFormat sweref99(SWEREFProjection projection) {
+        return new TextCoordinateFormat(Grid.SWEREF99, null, ProjectionRegistry.get(projection));
+    }
+
+    public Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * @return Format of WGS84 values, or null for grid coordinates
+     */
+    public WGS84Format getWGS84Format() {
+        return wgs84Format;
+    }
+
+    /**
+     * @return Projection of grid coordinates, or null for WGS84 values
+     */
+    public GaussKreugerProjection getProjection() {
+        return projection;
+    }
+}
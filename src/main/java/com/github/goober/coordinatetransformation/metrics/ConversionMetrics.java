@@ -0,0 +1,302 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation.metrics;
+
+import com.github.goober.coordinatetransformation.GaussKreugerProjection;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
+import com.github.goober.coordinatetransformation.exception.UnknownProjectionException;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Optional metrics of the conversions in {@link GaussKreugerProjection},
+ * {@link com.github.goober.coordinatetransformation.PolynomialKernel} and
+ * {@link com.github.goober.coordinatetransformation.InterpolatedProjection},
+ * and of parsing WGS84 coordinates. Kernel and interpolated conversions are
+ * reported under the projection they convert with. Nothing is measured
+ * until an instance has been installed with {@link #install(ConversionMetrics)};
+ * until then every conversion and parse only pays for reading one volatile field.
+ *
+ * <p>For every registered projection name and kind of conversion the number
+ * of calls and points and a latency histogram are kept, in counters striped
+ * over cache lines so that concurrent conversions do not contend. Derived
+ * projections, e.g. from {@link GaussKreugerProjection#withPrecision}, are
+ * counted under the name of the registered projection with the same
+ * parameters, and all other projections under {@link #OTHER}, so the metrics
+ * stay bounded however many projections are created. A batch conversion is
+ * measured as one call. The metrics can be read through a
+ * {@link MetricsListener} or over JMX after {@link #registerMBean()}.</p>
+ *
+ * <p>Latency histograms have power of two buckets: bucket 0 counts calls of
+ * 0 ns, bucket i calls taking from 2^(i-1) up to 2^i ns.</p>
+ */
+public final class ConversionMetrics implements ConversionMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.github.goober.coordinatetransformation:type=ConversionMetrics";
+
+    /**
+     * Name conversions with projections that are not registered are reported under.
+     */
+    public static final String OTHER = "other";
+
+    /**
+     * Most projections whose name is remembered; the names of any further
+     * projections are looked up on every conversion.
+     */
+    private static final int MAX_RESOLVED = 64;
+
+    public enum Operation {
+        GeodeticToGrid, GridToGeodetic, GridToGrid
+    }
+
+    private static volatile ConversionMetrics installed;
+
+    private final ConcurrentMap<String, Stats[]> conversions = new ConcurrentHashMap<String, Stats[]>();
+    private final ConcurrentMap<GaussKreugerProjection, Stats[]> resolved =
+            new ConcurrentHashMap<GaussKreugerProjection, Stats[]>();
+    private final StripedCounter parseFailures = new StripedCounter();
+    private final Stats parses = new Stats();
+
+    /**
+     * @return The installed metrics, or null if metrics are turned off
+     */
+    public static ConversionMetrics current() {
+        return installed;
+    }
+
+    /**
+     * Start collecting metrics into the given instance.
+     * @param metrics Metrics to collect into, or null to turn metrics off
+     */
+    public static void install(ConversionMetrics metrics) {
+        installed = metrics;
+    }
+
+    /**
+     * Turn metrics off. Conversions that are already running may still be recorded.
+     */
+    public static void uninstall() {
+        installed = null;
+    }
+
+    /**
+     * Record a conversion. Called by the projections when metrics are turned on.
+     * @param projection Projection converted from
+     * @param operation Kind of conversion
+     * @param points Number of converted points
+     * @param startNanos Value of {@link System#nanoTime()} when the conversion started
+     */
+    public void recordConversion(GaussKreugerProjection projection, Operation operation, int points,
+                                 long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        Stats[] stats = resolved.get(projection);
+        if (stats == null) {
+            stats = statsFor(nameOf(projection));
+            if (resolved.size() < MAX_RESOLVED) {
+                resolved.putIfAbsent(projection, stats);
+            }
+        }
+        stats[operation.ordinal()].record(points, nanos);
+    }
+
+    /**
+     * Record parsing one value or position. Called by the parser when metrics are turned on.
+     * @param success Whether the text could be parsed
+     * @param startNanos Value of {@link System#nanoTime()} when parsing started
+     */
+    public void recordParse(boolean success, long startNanos) {
+        long nanos = System.nanoTime() - startNanos;
+        parses.record(success ? 1 : 0, nanos);
+        if (!success) {
+            parseFailures.add(1);
+        }
+    }
+
+    /**
+     * Report the current metrics. Projections without any recorded calls of
+     * a kind of conversion are not reported for that kind.
+     * @param listener Listener receiving the metrics
+     */
+    public void publish(MetricsListener listener) {
+        for (Map.Entry<String, Stats[]> entry : conversions.entrySet()) {
+            String name = entry.getKey();
+            for (Operation operation : Operation.values()) {
+                Stats stats = entry.getValue()[operation.ordinal()];
+                long calls = stats.calls.sum();
+                if (calls > 0) {
+                    listener.conversion(name, operation, calls, stats.points.sum(), stats.nanos.sum(),
+                            stats.latency.snapshot());
+                }
+            }
+        }
+        long failures = parseFailures.sum();
+        listener.parse(parses.points.sum(), failures, parses.nanos.sum(), parses.latency.snapshot());
+    }
+
+    /**
+     * Register these metrics with the platform MBean server under {@link #OBJECT_NAME}.
+     * @return The name the metrics were registered under
+     * @throws JMException if the metrics could not be registered
+     */
+    public ObjectName registerMBean() throws JMException {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+        return name;
+    }
+
+    /**
+     * Remove metrics registered with {@link #registerMBean()} from the platform MBean server.
+     * @throws JMException if no metrics are registered
+     */
+    public static void unregisterMBean() throws JMException {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(new ObjectName(OBJECT_NAME));
+    }
+
+    @Override
+    public Map<String, Long> getConversionCalls() {
+        Map<String, Long> values = new TreeMap<String, Long>();
+        for (Map.Entry<String, Totals> entry : totals().entrySet()) {
+            values.put(entry.getKey(), entry.getValue().calls);
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getConversionPoints() {
+        Map<String, Long> values = new TreeMap<String, Long>();
+        for (Map.Entry<String, Totals> entry : totals().entrySet()) {
+            values.put(entry.getKey(), entry.getValue().points);
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getMeanConversionNanos() {
+        Map<String, Long> values = new TreeMap<String, Long>();
+        for (Map.Entry<String, Totals> entry : totals().entrySet()) {
+            values.put(entry.getKey(), entry.getValue().nanos / entry.getValue().calls);
+        }
+        return values;
+    }
+
+    @Override
+    public Map<String, Long> getConversionNanos99thPercentile() {
+        Map<String, Long> values = new TreeMap<String, Long>();
+        for (Map.Entry<String, Totals> entry : totals().entrySet()) {
+            values.put(entry.getKey(), LatencyHistogram.percentile(entry.getValue().histogram, 0.99));
+        }
+        return values;
+    }
+
+    @Override
+    public long getParseCount() {
+        return parses.calls.sum();
+    }
+
+    @Override
+    public long getParseFailureCount() {
+        return parseFailures.sum();
+    }
+
+    @Override
+    public long getMeanParseNanos() {
+        return parses.meanNanos();
+    }
+
+    /**
+     * @return Conversion metrics keyed by projection name and operation
+     */
+    private Map<String, Totals> totals() {
+        final Map<String, Totals> totals = new TreeMap<String, Totals>();
+        publish(new MetricsListener() {
+            public void conversion(String projection, Operation operation, long calls, long points,
+                                   long totalNanos, long[] latencyHistogram) {
+                String key = projection + "/" + operation;
+                Totals total = totals.get(key);
+                if (total == null) {
+                    total = new Totals();
+                    totals.put(key, total);
+                }
+                total.calls += calls;
+                total.points += points;
+                total.nanos += totalNanos;
+                for (int i = 0; i < latencyHistogram.length; i++) {
+                    total.histogram[i] += latencyHistogram[i];
+                }
+            }
+
+            public void parse(long successes, long failures, long totalNanos, long[] latencyHistogram) {
+            }
+        });
+        return totals;
+    }
+
+    private Stats[] statsFor(String name) {
+        Stats[] stats = conversions.get(name);
+        if (stats == null) {
+            stats = new Stats[Operation.values().length];
+            for (int i = 0; i < stats.length; i++) {
+                stats[i] = new Stats();
+            }
+            Stats[] existing = conversions.putIfAbsent(name, stats);
+            if (existing != null) {
+                stats = existing;
+            }
+        }
+        return stats;
+    }
+
+    private static String nameOf(GaussKreugerProjection projection) {
+        try {
+            return ProjectionRegistry.getName(projection);
+        } catch (UnknownProjectionException e) {
+            return OTHER;
+        }
+    }
+
+    private static final class Totals {
+        long calls;
+        long points;
+        long nanos;
+        final long[] histogram = new long[LatencyHistogram.BUCKETS];
+    }
+
+    private static final class Stats {
+        final StripedCounter calls = new StripedCounter();
+        final StripedCounter points = new StripedCounter();
+        final StripedCounter nanos = new StripedCounter();
+        final LatencyHistogram latency = new LatencyHistogram();
+
+        void record(int count, long elapsed) {
+            calls.add(1);
+            points.add(count);
+            nanos.add(elapsed);
+            latency.record(elapsed);
+        }
+
+        long meanNanos() {
+            long count = calls.sum();
+            return count == 0 ? 0 : nanos.sum() / count;
+        }
+    }
+}
@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation.metrics;
+
+import java.util.Map;
+
+/**
+ * JMX view of {@link ConversionMetrics}. Conversion metrics are keyed by
+ * projection name and operation, e.g. "sweref_99_tm/GeodeticToGrid".
+ */
+public interface ConversionMetricsMXBean {
+
+    Map<String, Long> getConversionCalls();
+
+    Map<String, Long> getConversionPoints();
+
+    Map<String, Long> getMeanConversionNanos();
+
+    Map<String, Long> getConversionNanos99thPercentile();
+
+    long getParseCount();
+
+    long getParseFailureCount();
+
+    long getMeanParseNanos();
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Striped histogram of latencies with power of two buckets. Bucket 0 counts
+ * latencies of 0 ns, bucket i latencies from 2^(i-1) up to 2^i ns, and the
+ * last bucket everything longer.
+ */
+final class LatencyHistogram {
+
+    static final int BUCKETS = 40;
+
+    /**
+     * Distance between two stripes, in longs: the buckets rounded up to whole
+     * cache lines plus one cache line of padding.
+     */
+    private static final int STRIDE = (BUCKETS + 7) / 8 * 8 + 8;
+
+    private final AtomicLongArray cells = new AtomicLongArray(StripedCounter.STRIPES * STRIDE);
+
+    void record(long nanos) {
+        int bucket = nanos <= 0 ? 0 : Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(nanos));
+        cells.incrementAndGet(StripedCounter.stripe() * STRIDE + bucket);
+    }
+
+    long[] snapshot() {
+        long[] buckets = new long[BUCKETS];
+        for (int stripe = 0; stripe < StripedCounter.STRIPES; stripe++) {
+            for (int bucket = 0; bucket < BUCKETS; bucket++) {
+                buckets[bucket] += cells.get(stripe * STRIDE + bucket);
+            }
+        }
+        return buckets;
+    }
+
+    /**
+     * Estimate a percentile from a histogram snapshot.
+     * @param buckets Histogram snapshot
+     * @param quantile Quantile between 0 and 1, e.g. 0.99
+     * @return Upper bound in nanoseconds of the bucket holding the percentile, or 0 if the histogram is empty
+     */
+    static long percentile(long[] buckets, double quantile) {
+        long total = 0;
+        for (long count : buckets) {
+            total += count;
+        }
+        long rank = (long) Math.ceil(quantile * total);
+        long seen = 0;
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            seen += buckets[bucket];
+            if (seen >= rank && seen > 0) {
+                return bucket == 0 ? 0 : 1L << bucket;
+            }
+        }
+        return 0;
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation.metrics;
+
+/**
+ * Receives the current metrics from {@link ConversionMetrics#publish(MetricsListener)}.
+ * Latency histograms are indexed as in {@link ConversionMetrics}: bucket 0 counts
+ * calls of 0 ns, bucket i calls taking from 2^(i-1) up to 2^i ns.
+ */
+public interface MetricsListener {
+
+    /**
+     * Metrics of one kind of conversion in one projection.
+     * @param projection Projection name, e.g. "sweref_99_tm"
+     * @param operation Kind of conversion
+     * @param calls Number of conversion calls, a batch conversion counts as one call
+     * @param points Number of converted points
+     * @param totalNanos Total time spent converting
+     * @param latencyHistogram Number of calls per latency bucket
+     */
+    void conversion(String projection, ConversionMetrics.Operation operation, long calls, long points,
+                    long totalNanos, long[] latencyHistogram);
+
+    /**
+     * Metrics of parsing WGS84 coordinates from text.
+     * @param successes Number of successfully parsed values
+     * @param failures Number of values that could not be parsed
+     * @param totalNanos Total time spent parsing
+     * @param latencyHistogram Number of parses per latency bucket
+     */
+    void parse(long successes, long failures, long totalNanos, long[] latencyHistogram);
+}
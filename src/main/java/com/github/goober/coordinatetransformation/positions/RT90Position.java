@@ -15,10 +15,11 @@
  */
 package com.github.goober.coordinatetransformation.positions;
 
-import com.github.goober.coordinatetransformation.GaussKreuger;
+import com.github.goober.coordinatetransformation.ConversionCache;
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.FixedPointFormatter;
 import com.github.goober.coordinatetransformation.Position;
-
-import java.util.Locale;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
 
 
 public class RT90Position extends Position {
@@ -32,6 +33,21 @@ public enum RT90Projection {
     rt90_2_5_gon_o,
     rt90_5_0_gon_o
 }
+
+/**
+ * RT90 projections on the Bessel 1841 ellipsoid. Should only be used if
+ * lat/long are given as RT90-lat/long based on the Bessel ellipsoide (from old maps).
+ */
+public enum RT90BesselProjection {
+
+    bessel_rt90_7_5_gon_v,
+    bessel_rt90_5_0_gon_v,
+    bessel_rt90_2_5_gon_v,
+    bessel_rt90_0_0_gon_v,
+    bessel_rt90_2_5_gon_o,
+    bessel_rt90_5_0_gon_o
+}
+
     private RT90Projection projection;
 
     /**
@@ -63,27 +79,84 @@ public enum RT90Projection {
     public RT90Position(WGS84Position position, RT90Projection rt90projection) {
         super(Grid.RT90);
 
-        GaussKreuger gkProjection = new GaussKreuger();
-        gkProjection.swedish_params(getProjectionString(rt90projection));
-        double[] lat_lon = gkProjection.geodetic_to_grid(position.getLatitude(), position.getLongitude());
+        double[] lat_lon = ProjectionRegistry.get(rt90projection).geodetic_to_grid(position.getLatitude(), position.getLongitude());
         this.latitude = lat_lon[0];
         this.longitude = lat_lon[1];
         this.projection = rt90projection;
     }
 
+    /**
+     * Create a RT90 position by converting a WGS84 position, using a cache for
+     * coordinates that have been converted before
+     * @param position WGS84 position to convert
+     * @param rt90projection Projection to convert to
+     * @param cache Cache of conversion results
+     */
+    public RT90Position(WGS84Position position, RT90Projection rt90projection, ConversionCache cache) {
+        super(Grid.RT90);
+
+        CoordinateHolder x_y = cache.geodetic_to_grid(ProjectionRegistry.get(rt90projection),
+                position.getLatitude(), position.getLongitude(), new CoordinateHolder());
+        this.latitude = x_y.getLatitude();
+        this.longitude = x_y.getLongitude();
+        this.projection = rt90projection;
+    }
+
+    /**
+     * Create a RT90 position by converting a SWEREF99 position directly between
+     * the grids, without going through a WGS84 position
+     * @param position SWEREF99 position to convert
+     * @param rt90projection Projection to convert to
+     */
+    public RT90Position(SWEREF99Position position, RT90Projection rt90projection) {
+        super(Grid.RT90);
+
+        double[] x_y = ProjectionRegistry.get(position.getProjection())
+                .grid_to_grid(position.getLatitude(), position.getLongitude(), ProjectionRegistry.get(rt90projection));
+        this.latitude = x_y[0];
+        this.longitude = x_y[1];
+        this.projection = rt90projection;
+    }
+
     /**
      * Convert position to WGS84 format
      * @return
      */
     public WGS84Position toWGS84() {
-        GaussKreuger gkProjection = new GaussKreuger();
-        gkProjection.swedish_params(getProjectionString());
-        double[] lat_lon = gkProjection.grid_to_geodetic(this.latitude, this.longitude);
+        double[] lat_lon = ProjectionRegistry.get(this.projection).grid_to_geodetic(this.latitude, this.longitude);
 
         WGS84Position newPos = new WGS84Position(lat_lon[0], lat_lon[1]);
         return newPos;
     }
 
+    /**
+     * Convert position to WGS84 format, using a cache for positions that have been converted before
+     * @param cache Cache of conversion results
+     * @return Converted position
+     */
+    public WGS84Position toWGS84(ConversionCache cache) {
+        CoordinateHolder lat_lon = cache.grid_to_geodetic(ProjectionRegistry.get(this.projection),
+                this.latitude, this.longitude, new CoordinateHolder());
+        return new WGS84Position(lat_lon.getLatitude(), lat_lon.getLongitude());
+    }
+
+    /**
+     * Convert position to WGS84 latitude and longitude without allocating a new position
+     * @param result Holder that receives the latitude and longitude
+     * @return The supplied result holder
+     */
+    public CoordinateHolder toWGS84(CoordinateHolder result) {
+        return ProjectionRegistry.get(this.projection).grid_to_geodetic(this.latitude, this.longitude, result);
+    }
+
+    /**
+     * Get projection type
+     * @return
+     */
+    public RT90Projection getProjection() {
+        return this.projection;
+    }
+
     /**
      * Get projection type as String
      * @return
@@ -123,6 +196,9 @@ public enum RT90Projection {
 
     @Override
     public String toString() {
-        return String.format(Locale.US, "X: %f Y: %f, Projection %s", this.latitude, this.longitude, this.getProjectionString());
+        StringBuilder out = new StringBuilder(64).append("X: ");
+        FixedPointFormatter.append(out, this.latitude, 6).append(" Y: ");
+        FixedPointFormatter.append(out, this.longitude, 6).append(", Projection ");
+        return out.append(getProjectionString()).toString();
     }
 }
@@ -15,10 +15,11 @@
  */
 package com.github.goober.coordinatetransformation.positions;
 
-import com.github.goober.coordinatetransformation.GaussKreuger;
+import com.github.goober.coordinatetransformation.ConversionCache;
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.FixedPointFormatter;
 import com.github.goober.coordinatetransformation.Position;
-
-import java.util.Locale;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
 
 public class SWEREF99Position extends Position {
 
@@ -72,29 +73,87 @@ public class SWEREF99Position extends Position {
     public SWEREF99Position(WGS84Position position, SWEREFProjection projection) {
 
         super(Grid.SWEREF99);
-        GaussKreuger gkProjection = new GaussKreuger();
-        gkProjection.swedish_params(getProjectionString(projection));
-        double[] lat_lon = gkProjection.geodetic_to_grid(position.getLatitude(), position.getLongitude());
+        double[] lat_lon = ProjectionRegistry.get(projection).geodetic_to_grid(position.getLatitude(), position.getLongitude());
         this.latitude = lat_lon[0];
         this.longitude = lat_lon[1];
 
         this.projection = projection;
     }
 
+    /**
+     * Create a SWEREF99 position by converting a WGS84 position, using a cache for
+     * coordinates that have been converted before
+     * @param position WGS84 position to convert
+     * @param projection Projection to convert to
+     * @param cache Cache of conversion results
+     */
+    public SWEREF99Position(WGS84Position position, SWEREFProjection projection, ConversionCache cache) {
+        super(Grid.SWEREF99);
+
+        CoordinateHolder x_y = cache.geodetic_to_grid(ProjectionRegistry.get(projection),
+                position.getLatitude(), position.getLongitude(), new CoordinateHolder());
+        this.latitude = x_y.getLatitude();
+        this.longitude = x_y.getLongitude();
+        this.projection = projection;
+    }
+
+    /**
+     * Create a SWEREF99 position by converting a RT90 position directly between
+     * the grids, without going through a WGS84 position
+     * @param position RT90 position to convert
+     * @param projection Projection to convert to
+     */
+    public SWEREF99Position(RT90Position position, SWEREFProjection projection) {
+
+        super(Grid.SWEREF99);
+        double[] x_y = ProjectionRegistry.get(position.getProjection())
+                .grid_to_grid(position.getLatitude(), position.getLongitude(), ProjectionRegistry.get(projection));
+        this.latitude = x_y[0];
+        this.longitude = x_y[1];
+
+        this.projection = projection;
+    }
+
     /**
      * Convert the position to WGS84 format
      * @return
      */
     public WGS84Position toWGS84() {
-        GaussKreuger gkProjection = new GaussKreuger();
-        gkProjection.swedish_params(getProjectionString(this.projection));
-        double[] lat_lon = gkProjection.grid_to_geodetic(this.latitude, this.longitude);
+        double[] lat_lon = ProjectionRegistry.get(this.projection).grid_to_geodetic(this.latitude, this.longitude);
 
         WGS84Position newPos = new WGS84Position(lat_lon[0], lat_lon[1]);
 
         return newPos;
     }
 
+    /**
+     * Convert position to WGS84 format, using a cache for positions that have been converted before
+     * @param cache Cache of conversion results
+     * @return Converted position
+     */
+    public WGS84Position toWGS84(ConversionCache cache) {
+        CoordinateHolder lat_lon = cache.grid_to_geodetic(ProjectionRegistry.get(this.projection),
+                this.latitude, this.longitude, new CoordinateHolder());
+        return new WGS84Position(lat_lon.getLatitude(), lat_lon.getLongitude());
+    }
+
+    /**
+     * Convert position to WGS84 latitude and longitude without allocating a new position
+     * @param result Holder that receives the latitude and longitude
+     * @return The supplied result holder
+     */
+    public CoordinateHolder toWGS84(CoordinateHolder result) {
+        return ProjectionRegistry.get(this.projection).grid_to_geodetic(this.latitude, this.longitude, result);
+    }
+
+    /**
+     * Get projection type
+     * @return
+     */
+    public SWEREFProjection getProjection() {
+        return this.projection;
+    }
+
     /**
      * Get projection type as String
      * @return
@@ -155,6 +214,9 @@ public class SWEREF99Position extends Position {
     }
     @Override
     public String toString() {
-        return String.format(Locale.US, "N: %f E: %f Projection: %s", this.latitude, this.longitude,getProjectionString());
+        StringBuilder out = new StringBuilder(64).append("N: ");
+        FixedPointFormatter.append(out, this.latitude, 6).append(" E: ");
+        FixedPointFormatter.append(out, this.longitude, 6).append(" Projection: ");
+        return out.append(getProjectionString()).toString();
     }
 }
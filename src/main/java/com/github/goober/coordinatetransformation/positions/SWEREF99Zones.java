@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.positions;
+
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position.SWEREFProjection;
+
+import java.util.Arrays;
+
+/**
+ * Selection of the SWEREF 99 local projection zone for a WGS84 position, and
+ * conversion to it in the same call.
+ * <p>
+ * The official zone of a place follows municipality borders. This selects
+ * the zone whose central meridian is closest to the longitude, among the
+ * southern zones (12 00 to 18 00) south of {@link #NORTHERN_ZONES_LATITUDE}
+ * and the northern zones (14 15 to 23 15) north of it, which matches the
+ * official zones for most of the country. Positions outside Sweden get the
+ * nearest outermost zone.
+ */
+public final class SWEREF99Zones {
+
+    /**
+     * Latitude from which the northern zones are used.
+     */
+    public static final double NORTHERN_ZONES_LATITUDE = 61.0;
+
+    /**
+     * Number of points converted at a time by the bulk conversion.
+     */
+    static final int CHUNK_SIZE = 4096;
+
+    private static final SWEREFProjection[] SOUTHERN_ZONES = {
+            SWEREFProjection.sweref_99_12_00,
+            SWEREFProjection.sweref_99_13_30,
+            SWEREFProjection.sweref_99_15_00,
+            SWEREFProjection.sweref_99_16_30,
+            SWEREFProjection.sweref_99_18_00
+    };
+
+    private static final SWEREFProjection[] NORTHERN_ZONES = {
+            SWEREFProjection.sweref_99_14_15,
+            SWEREFProjection.sweref_99_15_45,
+            SWEREFProjection.sweref_99_17_15,
+            SWEREFProjection.sweref_99_18_45,
+            SWEREFProjection.sweref_99_20_15,
+            SWEREFProjection.sweref_99_21_45,
+            SWEREFProjection.sweref_99_23_15
+    };
+
+    // The central meridians of both zone sets are 1.5 degrees apart, the first
+    // boundary lies halfway between the first two central meridians.
+    private static final double ZONE_WIDTH = 1.5;
+    private static final double SOUTHERN_FIRST_BOUNDARY = 12.75;
+    private static final double NORTHERN_FIRST_BOUNDARY = 15.0;
+
+    private SWEREF99Zones() {
+    }
+
+    /**
+     * Select the local zone for a position.
+     * @param latitude WGS84 latitude in degrees
+     * @param longitude WGS84 longitude in degrees
+     * @return Local projection zone
+     */
+    public static SWEREFProjection selectZone(double latitude, double longitude) {
+        if (latitude >= NORTHERN_ZONES_LATITUDE) {
+            return NORTHERN_ZONES[zoneIndex(longitude, NORTHERN_FIRST_BOUNDARY, NORTHERN_ZONES.length)];
+        }
+        return SOUTHERN_ZONES[zoneIndex(longitude, SOUTHERN_FIRST_BOUNDARY, SOUTHERN_ZONES.length)];
+    }
+
+    /**
+     * Select the local zone for a position.
+     * @param position WGS84 position
+     * @return Local projection zone
+     */
+    public static SWEREFProjection selectZone(WGS84Position position) {
+        return selectZone(position.getLatitude(), position.getLongitude());
+    }
+
+    /**
+     * Convert a position to its local zone.
+     * @param position WGS84 position to convert
+     * @return Position in the selected local zone
+     */
+    public static SWEREF99Position toLocalZone(WGS84Position position) {
+        return new SWEREF99Position(position, selectZone(position));
+    }
+
+    /**
+     * Convert a position to its local zone without allocating a result.
+     * @param latitude WGS84 latitude in degrees
+     * @param longitude WGS84 longitude in degrees
+     * @param result Holder that receives the x (northing) and y (easting) values
+     * @return The selected local zone
+     */
+    public static SWEREFProjection toLocalZone(double latitude, double longitude, CoordinateHolder result) {
+        SWEREFProjection zone = selectZone(latitude, longitude);
+        ProjectionRegistry.get(zone).geodetic_to_grid(latitude, longitude, result);
+        return zone;
+    }
+
+    /**
+     * Convert a batch of positions given as parallel arrays to their local zones.
+     * The points of each chunk are grouped by zone and every group is converted
+     * with one batch call, so the coefficients of a zone stay in cache.
+     * Source and destination arrays may be the same arrays, converting in place.
+     * @param latitudes WGS84 latitudes in degrees
+     * @param longitudes WGS84 longitudes in degrees
+     * @param offset Index of the first position to convert
+     * @param x Destination for the x (northing) values
+     * @param y Destination for the y (easting) values
+     * @param zones Destination for the selected zone of every position
+     * @param destOffset Index of the first converted position in the destination arrays
+     * @param length Number of positions to convert
+     */
+    public static void toLocalZones(double[] latitudes, double[] longitudes, int offset,
+                                    double[] x, double[] y, SWEREFProjection[] zones, int destOffset, int length) {
+        checkRange(latitudes.length, offset, length);
+        checkRange(longitudes.length, offset, length);
+        checkRange(x.length, destOffset, length);
+        checkRange(y.length, destOffset, length);
+        checkRange(zones.length, destOffset, length);
+
+        int chunk = Math.min(CHUNK_SIZE, length);
+        SWEREFProjection[] values = SWEREFProjection.values();
+        int[] starts = new int[values.length + 1];
+        int[] order = new int[chunk];
+        double[] lat = new double[chunk];
+        double[] lon = new double[chunk];
+        double[] gridX = new double[chunk];
+        double[] gridY = new double[chunk];
+
+        for (int from = 0; from < length; from += chunk) {
+            int count = Math.min(chunk, length - from);
+            // Count the points of every zone and record the zones
+            Arrays.fill(starts, 0);
+            for (int i = 0; i < count; i++) {
+                SWEREFProjection zone = selectZone(latitudes[offset + from + i], longitudes[offset + from + i]);
+                zones[destOffset + from + i] = zone;
+                starts[zone.ordinal() + 1]++;
+            }
+            for (int z = 0; z < values.length; z++) {
+                starts[z + 1] += starts[z];
+            }
+            // Group the points by zone, then convert every group in one batch
+            for (int i = 0; i < count; i++) {
+                int slot = starts[zones[destOffset + from + i].ordinal()]++;
+                order[slot] = i;
+                lat[slot] = latitudes[offset + from + i];
+                lon[slot] = longitudes[offset + from + i];
+            }
+            int start = 0;
+            for (int z = 0; z < values.length; z++) {
+                int end = starts[z];
+                if (end > start) {
+                    ProjectionRegistry.get(values[z]).geodetic_to_grid(lat, lon, start, gridX, gridY, start, end - start);
+                }
+                start = end;
+            }
+            for (int slot = 0; slot < count; slot++) {
+                x[destOffset + from + order[slot]] = gridX[slot];
+                y[destOffset + from + order[slot]] = gridY[slot];
+            }
+        }
+    }
+
+    private static int zoneIndex(double longitude, double firstBoundary, int zoneCount) {
+        double position = Math.floor((longitude - firstBoundary) / ZONE_WIDTH) + 1.0;
+        return (int) Math.max(0.0, Math.min(zoneCount - 1, position));
+    }
+
+    private static void checkRange(int arrayLength, int offset, int length) {
+        if (offset < 0 || length < 0 || offset > arrayLength - length) {
+            throw new ArrayIndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length
+                    + ") out of bounds for length " + arrayLength);
+        }
+    }
+}
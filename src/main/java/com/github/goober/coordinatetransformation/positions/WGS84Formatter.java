@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.positions;
+
+import com.github.goober.coordinatetransformation.FixedPointFormatter;
+import com.github.goober.coordinatetransformation.positions.WGS84Position.WGS84Format;
+
+import java.io.IOException;
+
+/**
+ * Formats WGS84 values exactly as {@link WGS84Position#latitudeToString(WGS84Format)}
+ * and {@link WGS84Position#longitudeToString(WGS84Format)}, appending to a
+ * caller supplied StringBuilder or Appendable instead of creating strings.
+ * <p>
+ * The static methods are thread safe. An instance keeps a buffer for the
+ * Appendable methods and is not thread safe.
+ */
+public final class WGS84Formatter {
+
+    private final StringBuilder buffer = new StringBuilder(32);
+
+    /**
+     * Append a latitude
+     * @param out Builder to append to
+     * @param latitude Latitude in degrees
+     * @param format Format to use
+     * @return The supplied builder
+     */
+    public static StringBuilder appendLatitude(StringBuilder out, double latitude, WGS84Format format) {
+        return append(out, latitude, format, 'N', 'S');
+    }
+
+    /**
+     * Append a longitude
+     * @param out Builder to append to
+     * @param longitude Longitude in degrees
+     * @param format Format to use
+     * @return The supplied builder
+     */
+    public static StringBuilder appendLongitude(StringBuilder out, double longitude, WGS84Format format) {
+        return append(out, longitude, format, 'E', 'W');
+    }
+
+    /**
+     * Append a latitude to any Appendable, e.g. a Writer
+     * @param out Appendable to append to
+     * @param latitude Latitude in degrees
+     * @param format Format to use
+     * @throws IOException if appending fails
+     */
+    public void appendLatitude(Appendable out, double latitude, WGS84Format format) throws IOException {
+        buffer.setLength(0);
+        out.append(appendLatitude(buffer, latitude, format));
+    }
+
+    /**
+     * Append a longitude to any Appendable, e.g. a Writer
+     * @param out Appendable to append to
+     * @param longitude Longitude in degrees
+     * @param format Format to use
+     * @throws IOException if appending fails
+     */
+    public void appendLongitude(Appendable out, double longitude, WGS84Format format) throws IOException {
+        buffer.setLength(0);
+        out.append(appendLongitude(buffer, longitude, format));
+    }
+
+    private static StringBuilder append(StringBuilder out, double value, WGS84Format format,
+                                        char positiveValue, char negativeValue) {
+        if (format == WGS84Format.DegreesMinutes) {
+            return appendDm(out, value, positiveValue, negativeValue);
+        } else if (format == WGS84Format.DegreesMinutesSeconds) {
+            return appendDms(out, value, positiveValue, negativeValue);
+        }
+        return FixedPointFormatter.append(out, value, 10);
+    }
+
+    private static StringBuilder appendDm(StringBuilder out, double value, char positiveValue, char negativeValue) {
+        if (value == Double.MIN_VALUE) {
+            return out;
+        }
+        double degrees = Math.floor(Math.abs(value));
+        double minutes = (Math.abs(value) - degrees) * 60;
+
+        out.append(value >= 0 ? positiveValue : negativeValue).append(' ');
+        FixedPointFormatter.append(out, degrees, 0).append("º ");
+        return FixedPointFormatter.append(out, Math.floor(minutes * 10000) / 10000, 0).append('\'');
+    }
+
+    private static StringBuilder appendDms(StringBuilder out, double value, char positiveValue, char negativeValue) {
+        if (value == Double.MIN_VALUE) {
+            return out;
+        }
+        double degrees = Math.floor(Math.abs(value));
+        double minutes = Math.floor((Math.abs(value) - degrees) * 60);
+        double seconds = (Math.abs(value) - degrees - minutes / 60) * 3600;
+
+        out.append(value >= 0 ? positiveValue : negativeValue).append(' ');
+        FixedPointFormatter.append(out, degrees, 0).append("º ");
+        FixedPointFormatter.append(out, minutes, 0).append("' ");
+        return FixedPointFormatter.append(out, (double) Math.round(seconds * 100000) / 100000, 5).append('"');
+    }
+}
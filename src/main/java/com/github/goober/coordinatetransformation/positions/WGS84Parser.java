@@ -0,0 +1,352 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.positions;
+
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.exception.FormatException;
+import com.github.goober.coordinatetransformation.metrics.ConversionMetrics;
+import com.github.goober.coordinatetransformation.positions.WGS84Position.WGS84Format;
+
+/**
+ * Single pass parser for WGS84 values in any {@link WGS84Format}, working
+ * directly on ranges of a {@link CharSequence}, a char[] or a byte[] without
+ * creating temporary strings.
+ * <p>
+ * Values are written as in {@link WGS84Position}, e.g. {@code N 59º 58' 55.23"},
+ * {@code E 015º 54.180'} or {@code 59.98201}. Both ',' and '.' are accepted as
+ * decimal separator and both 'º' and '°' as degree symbol. The direction may be
+ * given as N/S/E/W or as a sign. Byte arrays are read as UTF-8 or ISO-8859-1.
+ * <p>
+ * A parser can be reused for any number of values but is not thread safe.
+ */
+public final class WGS84Parser {
+
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    /**
+     * Largest mantissa that is exactly representable as a double.
+     */
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+    private Object text;
+    private int index;
+    private int end;
+
+    /**
+     * Parse a latitude
+     * @param text Text to parse
+     * @param start Index of the first character
+     * @param end Index after the last character
+     * @param format Format of the value
+     * @return Latitude in degrees, negative for south
+     * @throws FormatException if the value is malformed or out of range
+     */
+    public double parseLatitude(CharSequence text, int start, int end, WGS84Format format) throws FormatException {
+        return parseSingle(text, start, end, format, true);
+    }
+
+    public double parseLatitude(char[] text, int start, int end, WGS84Format format) throws FormatException {
+        return parseSingle(text, start, end, format, true);
+    }
+
+    public double parseLatitude(byte[] text, int start, int end, WGS84Format format) throws FormatException {
+        return parseSingle(text, start, end, format, true);
+    }
+
+    /**
+     * Parse a longitude
+     * @param text Text to parse
+     * @param start Index of the first character
+     * @param end Index after the last character
+     * @param format Format of the value
+     * @return Longitude in degrees, negative for west
+     * @throws FormatException if the value is malformed or out of range
+     */
+    public double parseLongitude(CharSequence text, int start, int end, WGS84Format format) throws FormatException {
+        return parseSingle(text, start, end, format, false);
+    }
+
+    public double parseLongitude(char[] text, int start, int end, WGS84Format format) throws FormatException {
+        return parseSingle(text, start, end, format, false);
+    }
+
+    public double parseLongitude(byte[] text, int start, int end, WGS84Format format) throws FormatException {
+        return parseSingle(text, start, end, format, false);
+    }
+
+    /**
+     * Parse a position with latitude followed by longitude, separated by white space,
+     * e.g. {@code N 62º 10.560' E 015º 54.180'}
+     * @param text Text to parse
+     * @param start Index of the first character
+     * @param end Index after the last character
+     * @param format Format of the values
+     * @param result Holder that receives the latitude and longitude
+     * @return The supplied result holder
+     * @throws FormatException if the position is malformed or out of range
+     */
+    public CoordinateHolder parse(CharSequence text, int start, int end, WGS84Format format,
+                                  CoordinateHolder result) throws FormatException {
+        return parsePosition(text, start, end, format, result);
+    }
+
+    public CoordinateHolder parse(char[] text, int start, int end, WGS84Format format,
+                                  CoordinateHolder result) throws FormatException {
+        return parsePosition(text, start, end, format, result);
+    }
+
+    public CoordinateHolder parse(byte[] text, int start, int end, WGS84Format format,
+                                  CoordinateHolder result) throws FormatException {
+        return parsePosition(text, start, end, format, result);
+    }
+
+    /**
+     * Parse a plain decimal number, with ',' or '.' as decimal separator and
+     * surrounding white space allowed.
+     * @param text Text to parse
+     * @param start Index of the first character
+     * @param end Index after the last character
+     * @return The parsed number
+     * @throws FormatException if the number is malformed
+     */
+    public double parseDecimal(CharSequence text, int start, int end) throws FormatException {
+        reset(text, start, end, length(text));
+        skipWhitespace();
+        double sign = 1.0;
+        if (index < this.end && (charAt(index) == '-' || charAt(index) == '+')) {
+            sign = charAt(index++) == '-' ? -1.0 : 1.0;
+        }
+        double value = sign * number();
+        expectEnd();
+        return value;
+    }
+
+    /**
+     * @return Index of the character after the last one parsed, or of the
+     * offending character after a {@link FormatException}
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    private double parseSingle(Object text, int start, int end, WGS84Format format, boolean latitude)
+            throws FormatException {
+        ConversionMetrics metrics = ConversionMetrics.current();
+        long started = metrics == null ? 0L : System.nanoTime();
+        boolean parsed = false;
+        try {
+            reset(text, start, end, length(text));
+            double value = value(format, latitude);
+            expectEnd();
+            parsed = true;
+            return value;
+        } finally {
+            if (metrics != null) {
+                metrics.recordParse(parsed, started);
+            }
+        }
+    }
+
+    private CoordinateHolder parsePosition(Object text, int start, int end, WGS84Format format,
+                                           CoordinateHolder result) throws FormatException {
+        ConversionMetrics metrics = ConversionMetrics.current();
+        long started = metrics == null ? 0L : System.nanoTime();
+        boolean parsed = false;
+        try {
+            reset(text, start, end, length(text));
+            double latitude = value(format, true);
+            if (format == WGS84Format.Degrees && (index >= this.end || !isWhitespace(charAt(index)))) {
+                throw error("Expected white space between latitude and longitude");
+            }
+            double longitude = value(format, false);
+            expectEnd();
+            result.set(latitude, longitude);
+            parsed = true;
+            return result;
+        } finally {
+            if (metrics != null) {
+                metrics.recordParse(parsed, started);
+            }
+        }
+    }
+
+    private void reset(Object text, int start, int end, int length) {
+        if (start < 0 || start > end || end > length) {
+            throw new IndexOutOfBoundsException("Range [" + start + ", " + end + ") out of bounds for length " + length);
+        }
+        this.text = text;
+        this.index = start;
+        this.end = end;
+    }
+
+    private double value(WGS84Format format, boolean latitude) throws FormatException {
+        skipWhitespace();
+        if (index >= end) {
+            throw error("Missing value");
+        }
+        double sign = 1.0;
+        int c = charAt(index);
+        if (c == '-' || c == (latitude ? 'S' : 'W')) {
+            sign = -1.0;
+            index++;
+        } else if (c == '+' || c == (latitude ? 'N' : 'E')) {
+            index++;
+        }
+        skipWhitespace();
+
+        double value = number();
+        if (format != WGS84Format.Degrees) {
+            skipWhitespace();
+            degreeSymbol();
+            skipWhitespace();
+            double minutes = number();
+            if (format == WGS84Format.DegreesMinutesSeconds) {
+                skipWhitespace();
+                symbol('\'', '′');
+                skipWhitespace();
+                double seconds = number();
+                if (seconds >= 60.0) {
+                    throw error("Seconds out of range");
+                }
+                minutes += seconds / 60.0;
+                skipWhitespace();
+                symbol('"', '″');
+            } else {
+                skipWhitespace();
+                symbol('\'', '′');
+            }
+            if (minutes >= 60.0) {
+                throw error("Minutes out of range");
+            }
+            value += minutes / 60.0;
+        }
+        if (value > (latitude ? 90.0 : 180.0)) {
+            throw error((latitude ? "Latitude" : "Longitude") + " out of range");
+        }
+        return sign * value;
+    }
+
+    /**
+     * Unsigned decimal number with ',' or '.' as decimal separator.
+     */
+    private double number() throws FormatException {
+        int start = index;
+        long mantissa = 0;
+        int digits = 0;
+        int scale = -1;
+        boolean exact = true;
+        while (index < end) {
+            int c = charAt(index);
+            if (c >= '0' && c <= '9') {
+                if (mantissa < MAX_EXACT_MANTISSA / 10) {
+                    mantissa = mantissa * 10 + (c - '0');
+                } else {
+                    exact = false;
+                }
+                digits++;
+                if (scale >= 0) {
+                    scale++;
+                }
+            } else if ((c == '.' || c == ',') && scale < 0) {
+                scale = 0;
+            } else {
+                break;
+            }
+            index++;
+        }
+        if (digits == 0) {
+            index = start;
+            throw error("Expected a number");
+        }
+        if (scale <= 0) {
+            scale = 0;
+        }
+        if (exact && scale < POWERS_OF_TEN.length) {
+            return mantissa / POWERS_OF_TEN[scale];
+        }
+        return slowNumber(start, index);
+    }
+
+    /**
+     * Fallback for numbers with more digits than a double can hold exactly.
+     */
+    private double slowNumber(int start, int end) {
+        StringBuilder number = new StringBuilder(end - start);
+        for (int i = start; i < end; i++) {
+            int c = charAt(i);
+            number.append(c == ',' ? '.' : (char) c);
+        }
+        return Double.parseDouble(number.toString());
+    }
+
+    private void degreeSymbol() throws FormatException {
+        // UTF-8 encoded byte arrays are read as ISO-8859-1, where the
+        // degree symbols are preceded by 0xC2.
+        if (index < end && charAt(index) == 'Â' && text instanceof byte[]) {
+            index++;
+        }
+        symbol('º', '°');
+    }
+
+    private void symbol(char symbol, char alternative) throws FormatException {
+        if (index >= end || (charAt(index) != symbol && charAt(index) != alternative)) {
+            throw error("Expected '" + symbol + "'");
+        }
+        index++;
+    }
+
+    private void skipWhitespace() {
+        while (index < end && isWhitespace(charAt(index))) {
+            index++;
+        }
+    }
+
+    private void expectEnd() throws FormatException {
+        skipWhitespace();
+        if (index < end) {
+            throw error("Unexpected character '" + (char) charAt(index) + "'");
+        }
+    }
+
+    private FormatException error(String message) {
+        return new FormatException(message + " at index " + index);
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\t' || c == ' ';
+    }
+
+    private int charAt(int i) {
+        Object text = this.text;
+        if (text instanceof byte[]) {
+            return ((byte[]) text)[i] & 0xff;
+        } else if (text instanceof char[]) {
+            return ((char[]) text)[i];
+        }
+        return ((CharSequence) text).charAt(i);
+    }
+
+    private static int length(Object text) {
+        if (text instanceof byte[]) {
+            return ((byte[]) text).length;
+        } else if (text instanceof char[]) {
+            return ((char[]) text).length;
+        }
+        return ((CharSequence) text).length();
+    }
+}
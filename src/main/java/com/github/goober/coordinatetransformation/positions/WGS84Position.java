@@ -16,10 +16,11 @@
 package com.github.goober.coordinatetransformation.positions;
 
 
+import com.github.goober.coordinatetransformation.CoordinateHolder;
 import com.github.goober.coordinatetransformation.Position;
+import com.github.goober.coordinatetransformation.exception.FormatException;
 
 import java.text.ParseException;
-import java.util.Locale;
 
 public class WGS84Position extends Position {
 
@@ -51,32 +52,16 @@ public enum WGS84Format {Degrees,DegreesMinutes,DegreesMinutesSeconds}
     public WGS84Position(String positionString, WGS84Format format) throws ParseException{
         super(Grid.WGS84);
 
-        if(format.equals(WGS84Format.Degrees)) {
-            positionString = positionString.trim();
-            String[] lat_lon = positionString.split(" ");
-            if (lat_lon.length == 2) {
-               this.latitude = Double.parseDouble(lat_lon[0].replace(",", "."));
-               this.longitude = Double.parseDouble(lat_lon[1].replace(",", "."));
-            }
-            else {
-                throw new ParseException("The position string is invalid",0);
-
-            }
+        WGS84Parser parser = new WGS84Parser();
+        CoordinateHolder lat_lon = new CoordinateHolder();
+        try {
+            parser.parse(positionString, 0, positionString.length(), format, lat_lon);
         }
-        else if (format.equals(WGS84Format.DegreesMinutes) || format.equals(WGS84Format.DegreesMinutesSeconds)) {
-            int firstValueEndPos = 0;
-
-            if(format == WGS84Format.DegreesMinutes)
-                firstValueEndPos = positionString.indexOf("'");
-            else if (format == WGS84Format.DegreesMinutesSeconds)
-                firstValueEndPos = positionString.indexOf("\"");
-
-            String lat = positionString.substring(0,firstValueEndPos +1).trim();
-            String lon = positionString.substring(firstValueEndPos +1).trim();
-
-            setLatitudeFromString(lat, format);
-            setLongitudeFromString(lon,format);
+        catch (FormatException e) {
+            throw new ParseException("The position string is invalid: " + e.getMessage(), parser.getIndex());
         }
+        this.latitude = lat_lon.getLatitude();
+        this.longitude = lat_lon.getLongitude();
     }
 
     /**
@@ -118,12 +103,7 @@ public enum WGS84Format {Degrees,DegreesMinutes,DegreesMinutesSeconds}
          * @return
          */
         public String latitudeToString(WGS84Format format) {
-            if (format == WGS84Format.DegreesMinutes)
-                return convToDmString(this.latitude,"N","S");
-            else if (format == WGS84Format.DegreesMinutesSeconds)
-                return convToDmsString(this.latitude,"N","S");
-            else
-                return String.format(Locale.US, "%.10f", this.latitude);
+            return WGS84Formatter.appendLatitude(new StringBuilder(24), this.latitude, format).toString();
         }
         /**
          * Returns a string represenation in the given format
@@ -131,36 +111,9 @@ public enum WGS84Format {Degrees,DegreesMinutes,DegreesMinutesSeconds}
          * @return
          */
            public String longitudeToString(WGS84Format format) {
-                                 if (format == WGS84Format.DegreesMinutes)
-                return convToDmString(this.longitude,"E","W");
-            else if (format == WGS84Format.DegreesMinutesSeconds)
-                return convToDmsString(this.longitude,"E","W");
-            else
-                return String.format(Locale.US, "%.10f", this.longitude);
+            return WGS84Formatter.appendLongitude(new StringBuilder(24), this.longitude, format).toString();
         }
 
-           private String convToDmString(double value, String positiveValue, String negativeValue) {
-               if (value == Double.MIN_VALUE) {
-                   return "";
-               }
-               double degrees = Math.floor(Math.abs(value));
-               double minutes = (Math.abs(value) - degrees) * 60;
-
-               return String.format(Locale.US, "%s %.0fº %.0f'", value >=0 ? positiveValue : negativeValue, degrees, ((double)Math.floor(minutes * 10000) / 10000));
-           }
-
-           private String convToDmsString(double value, String positiveValue,String negativeValue) {
-
-               if(value == Double.MIN_VALUE) {
-                   return "";
-               }
-               double degrees = Math.floor(Math.abs(value));
-               double minutes = Math.floor((Math.abs(value) - degrees) * 60);
-               double seconds = (Math.abs(value) - degrees - minutes / 60) * 3600;
-
-               return String.format(Locale.US, "%s %.0fº %.0f' %.5f\"",value >=0 ? positiveValue : negativeValue, degrees, minutes, ((double) Math.round(seconds * 100000) / 100000));
-           }
-
            private double parseValueFromDmString(String value, String positiveChar) {
                    double retVal = 0;
                    if (!(value == null)) {
@@ -226,6 +179,8 @@ public enum WGS84Format {Degrees,DegreesMinutes,DegreesMinutesSeconds}
            }
            @Override
            public String toString() {
-               return String.format(Locale.US, "Latitude: %s  Longitude: %s", latitudeToString(WGS84Format.DegreesMinutesSeconds), longitudeToString(WGS84Format.DegreesMinutesSeconds));
+               StringBuilder out = new StringBuilder(64).append("Latitude: ");
+               WGS84Formatter.appendLatitude(out, this.latitude, WGS84Format.DegreesMinutesSeconds).append("  Longitude: ");
+               return WGS84Formatter.appendLongitude(out, this.longitude, WGS84Format.DegreesMinutesSeconds).toString();
            }
 }
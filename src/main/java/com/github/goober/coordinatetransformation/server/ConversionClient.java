@@ -0,0 +1,231 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation.server;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.LinkedList;
+
+/**
+ * Blocking client of {@link ConversionServer}. Requests are buffered by the
+ * send methods and written by {@link #flush()}, so that any number of
+ * requests can be sent before the responses are received in the same order
+ * with {@link #receive(double[], double[], int)}. The server stops reading
+ * from a connection that does not receive its responses, so a client should
+ * not send more than about a megabyte of requests ahead of the responses it
+ * has received. Clients are not thread safe.
+ */
+public final class ConversionClient {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final SocketChannel channel;
+    private final LinkedList<Integer> pending = new LinkedList<Integer>();
+    private ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+    private ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+    private int nextId;
+
+    /**
+     * Connect to a server.
+     * @param address Address of the server
+     * @throws IOException if the connection fails
+     */
+    public ConversionClient(InetSocketAddress address) throws IOException {
+        channel = SocketChannel.open(address);
+        channel.socket().setTcpNoDelay(true);
+        in.flip();
+    }
+
+    /**
+     * Buffer a request converting geodetic coordinates to grid coordinates.
+     * @param projection Name of the projection to convert to, e.g. "sweref_99_tm"
+     * @param latitudes Latitudes in degrees
+     * @param longitudes Longitudes in degrees
+     * @param offset Index of the first coordinate to convert
+     * @param length Number of coordinates to convert
+     * @return Id of the request
+     * @throws IOException if writing a full buffer fails
+     */
+    public int sendGeodeticToGrid(String projection, double[] latitudes, double[] longitudes, int offset, int length)
+            throws IOException {
+        return send(ConversionProtocol.GEODETIC_TO_GRID, projection, null, latitudes, longitudes, offset, length);
+    }
+
+    /**
+     * Buffer a request converting grid coordinates to geodetic coordinates.
+     * @param projection Name of the projection to convert from, e.g. "sweref_99_tm"
+     * @param x X (northing) values
+     * @param y Y (easting) values
+     * @param offset Index of the first coordinate to convert
+     * @param length Number of coordinates to convert
+     * @return Id of the request
+     * @throws IOException if writing a full buffer fails
+     */
+    public int sendGridToGeodetic(String projection, double[] x, double[] y, int offset, int length)
+            throws IOException {
+        return send(ConversionProtocol.GRID_TO_GEODETIC, projection, null, x, y, offset, length);
+    }
+
+    /**
+     * Buffer a request converting grid coordinates directly to another projection.
+     * @param projection Name of the projection to convert from
+     * @param target Name of the projection to convert to
+     * @param x X (northing) values
+     * @param y Y (easting) values
+     * @param offset Index of the first coordinate to convert
+     * @param length Number of coordinates to convert
+     * @return Id of the request
+     * @throws IOException if writing a full buffer fails
+     */
+    public int sendGridToGrid(String projection, String target, double[] x, double[] y, int offset, int length)
+            throws IOException {
+        return send(ConversionProtocol.GRID_TO_GRID, projection, target, x, y, offset, length);
+    }
+
+    /**
+     * Write all buffered requests to the server.
+     * @throws IOException if writing fails
+     */
+    public void flush() throws IOException {
+        out.flip();
+        while (out.hasRemaining()) {
+            channel.write(out);
+        }
+        out.clear();
+    }
+
+    /**
+     * Receive the response to the oldest request without a response. Buffered
+     * requests are flushed first.
+     * @param a Destination for the converted latitudes or x (northing) values
+     * @param b Destination for the converted longitudes or y (easting) values
+     * @param offset Index of the first converted coordinate in the destination arrays
+     * @return Number of converted coordinates
+     * @throws IOException if reading fails, or with the message of the server if the request failed
+     */
+    public int receive(double[] a, double[] b, int offset) throws IOException {
+        if (pending.isEmpty()) {
+            throw new IllegalStateException("No request is waiting for a response");
+        }
+        if (out.position() > 0) {
+            flush();
+        }
+        fill(4);
+        int length = in.getInt();
+        if (length < 5 || length > ConversionProtocol.MAX_FRAME_LENGTH) {
+            throw new IOException("Invalid response length: " + length);
+        }
+        fill(length);
+        int id = in.getInt();
+        int expected = pending.removeFirst();
+        if (id != expected) {
+            throw new IOException("Expected response to request " + expected + " but got " + id);
+        }
+        if (in.get() != ConversionProtocol.OK) {
+            byte[] message = new byte[in.getShort() & 0xffff];
+            in.get(message);
+            throw new IOException("Conversion failed: " + new String(message, UTF8));
+        }
+        int count = in.getInt();
+        if (offset < 0 || offset > a.length - count || offset > b.length - count) {
+            in.position(in.position() + 16 * count);
+            throw new ArrayIndexOutOfBoundsException("Response of " + count + " points does not fit at " + offset);
+        }
+        for (int i = 0; i < count; i++) {
+            a[offset + i] = in.getDouble();
+            b[offset + i] = in.getDouble();
+        }
+        return count;
+    }
+
+    /**
+     * @return Number of requests sent that have not been received
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private int send(byte operation, String projection, String target, double[] a, double[] b,
+                     int offset, int length) throws IOException {
+        if (offset < 0 || length < 0 || offset > a.length - length || offset > b.length - length) {
+            throw new ArrayIndexOutOfBoundsException("Range [" + offset + ", " + offset + " + " + length
+                    + ") out of bounds");
+        }
+        if (length > ConversionProtocol.MAX_POINTS) {
+            throw new IllegalArgumentException("At most " + ConversionProtocol.MAX_POINTS + " points per request");
+        }
+        byte[] source = name(projection);
+        byte[] destination = target == null ? null : name(target);
+        int frameLength = 4 + 1 + 1 + source.length + (destination == null ? 0 : 1 + destination.length)
+                + 4 + 16 * length;
+        if (out.remaining() < 4 + frameLength) {
+            flush();
+            if (out.capacity() < 4 + frameLength) {
+                out = ByteBuffer.allocate(4 + frameLength);
+            }
+        }
+        int id = nextId++;
+        out.putInt(frameLength).putInt(id).put(operation).put((byte) source.length).put(source);
+        if (destination != null) {
+            out.put((byte) destination.length).put(destination);
+        }
+        out.putInt(length);
+        for (int i = offset; i < offset + length; i++) {
+            out.putDouble(a[i]).putDouble(b[i]);
+        }
+        pending.addLast(id);
+        return id;
+    }
+
+    private static byte[] name(String projection) {
+        byte[] bytes = projection.getBytes(ASCII);
+        if (bytes.length > 255) {
+            throw new IllegalArgumentException("Projection name too long: " + projection);
+        }
+        return bytes;
+    }
+
+    /**
+     * Read until at least the given number of bytes are buffered.
+     */
+    private void fill(int bytes) throws IOException {
+        if (in.remaining() >= bytes) {
+            return;
+        }
+        if (in.capacity() < bytes) {
+            in = ByteBuffer.allocate(Math.max(bytes, 2 * in.capacity())).put(in);
+        } else {
+            in.compact();
+        }
+        while (in.position() < bytes) {
+            if (channel.read(in) < 0) {
+                throw new EOFException("Connection closed by the server");
+            }
+        }
+        in.flip();
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation.server;
+
+/**
+ * Binary protocol of {@link ConversionServer}. Clients may send any number
+ * of requests without waiting for responses; responses are sent in the
+ * order the requests were received. All numbers are big endian.
+ *
+ * <p>Request frame:</p>
+ * <pre>
+ * int    length       number of bytes in the frame after this field
+ * int    id           echoed in the response
+ * byte   operation    GEODETIC_TO_GRID, GRID_TO_GEODETIC or GRID_TO_GRID
+ * name   projection   projection converted from or to, e.g. "sweref_99_tm"
+ * name   target       only for GRID_TO_GRID, projection converted to
+ * int    count        number of points
+ * double[2 * count]   interleaved latitude and longitude, or x (northing) and y (easting)
+ * </pre>
+ * <p>where a name is one byte holding the length followed by that many
+ * ASCII characters. The names are those of
+ * {@link com.github.goober.coordinatetransformation.ProjectionRegistry}.</p>
+ *
+ * <p>Response frame:</p>
+ * <pre>
+ * int    length       number of bytes in the frame after this field
+ * int    id           id of the request
+ * byte   status       OK or ERROR
+ * OK:    int count, followed by 2 * count doubles of converted coordinates
+ * ERROR: unsigned short length, followed by that many bytes of UTF-8 encoded message
+ * </pre>
+ * <p>A request that can not be converted, e.g. for an unknown projection,
+ * is answered with an error and the connection stays open. A malformed
+ * frame closes the connection.</p>
+ */
+public final class ConversionProtocol {
+
+    public static final byte GEODETIC_TO_GRID = 0;
+    public static final byte GRID_TO_GEODETIC = 1;
+    public static final byte GRID_TO_GRID = 2;
+
+    public static final byte OK = 0;
+    public static final byte ERROR = 1;
+
+    /**
+     * Largest allowed frame length, 16 MiB.
+     */
+    public static final int MAX_FRAME_LENGTH = 16 * 1024 * 1024;
+
+    /**
+     * Largest number of points in one request, leaving room for the other fields of the frame.
+     */
+    public static final int MAX_POINTS = MAX_FRAME_LENGTH / 16 - 64;
+
+    private ConversionProtocol() {
+    }
+}
@@ -0,0 +1,412 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation.server;
+
+import com.github.goober.coordinatetransformation.GaussKreugerProjection;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
+import com.github.goober.coordinatetransformation.exception.UnknownProjectionException;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Conversion server speaking the {@link ConversionProtocol}, so that programs
+ * on other platforms can share one warmed up conversion process. All
+ * connections are served by one thread on a {@link Selector}. Requests are
+ * converted by the batch methods of {@link GaussKreugerProjection} as soon
+ * as they have been read, so every point gets the same result however the
+ * client batched it, and a connection is not read from while too many
+ * responses wait to be sent to it. Input buffers only grow as the bytes of a large frame arrive, and a
+ * connection is closed if its frame would take the input buffered by all
+ * connections above a quarter of the heap. A client that shuts down its
+ * output still receives the responses to all requests it has sent.
+ *
+ * <p>Run with {@code java com.github.goober.coordinatetransformation.server.ConversionServer [port [address]]}
+ * to serve on the loopback address.</p>
+ */
+public final class ConversionServer {
+
+    public static final int DEFAULT_PORT = 7390;
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Number of points converted at a time; larger requests are converted in several steps.
+     */
+    private static final int CONVERSION_SIZE = 1024;
+
+    /**
+     * Number of response bytes waiting to be sent above which a connection is not read from.
+     */
+    private static final int OUTPUT_LIMIT = 1024 * 1024;
+
+    /**
+     * Bytes the input buffers of all connections together may grow beyond
+     * their initial size. A connection whose frame does not fit is closed.
+     */
+    private static final long INPUT_LIMIT = Runtime.getRuntime().maxMemory() / 4;
+
+    private static final Charset ASCII = Charset.forName("US-ASCII");
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private final Map<String, GaussKreugerProjection> projections = new HashMap<String, GaussKreugerProjection>();
+    // Points being converted, shared by all connections.
+    private final double[] a = new double[CONVERSION_SIZE];
+    private final double[] b = new double[CONVERSION_SIZE];
+    private long bufferedInput;
+    private volatile boolean closed;
+
+    /**
+     * Create a server listening on an address. The server does not serve
+     * any connections until {@link #run()} or {@link #start()} is called.
+     * @param address Address to listen on, port 0 picks a free port
+     * @throws IOException if the address can not be bound
+     */
+    public ConversionServer(InetSocketAddress address) throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.socket().setReuseAddress(true);
+            serverChannel.socket().bind(address);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return Address the server listens on
+     */
+    public InetSocketAddress getAddress() {
+        return (InetSocketAddress) serverChannel.socket().getLocalSocketAddress();
+    }
+
+    /**
+     * Serve connections in a new daemon thread.
+     * @return The started thread
+     */
+    public Thread start() {
+        Thread thread = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    ConversionServer.this.run();
+                } catch (IOException e) {
+                    throw new IllegalStateException("Conversion server failed", e);
+                }
+            }
+        }, "conversion-server-" + getAddress().getPort());
+        thread.setDaemon(true);
+        thread.start();
+        return thread;
+    }
+
+    /**
+     * Serve connections in the calling thread until the server is closed.
+     * @throws IOException if accepting connections fails
+     */
+    public void run() throws IOException {
+        try {
+            while (!closed) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        Connection connection = (Connection) key.attachment();
+                        try {
+                            if (key.isReadable()) {
+                                connection.read();
+                            }
+                            if (key.isValid() && key.isWritable()) {
+                                connection.write();
+                            }
+                        } catch (IOException e) {
+                            connection.close();
+                        }
+                    }
+                }
+            }
+        } catch (ClosedSelectorException e) {
+            // Closed while selecting.
+        } finally {
+            closeAll();
+        }
+    }
+
+    /**
+     * Stop serving and close all connections.
+     */
+    public void close() {
+        closed = true;
+        selector.wakeup();
+        try {
+            serverChannel.close();
+        } catch (IOException e) {
+            // Nothing left to do with the channel.
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        key.attach(new Connection(channel, key));
+    }
+
+    private void closeAll() {
+        if (!selector.isOpen()) {
+            return;
+        }
+        for (SelectionKey key : selector.keys()) {
+            try {
+                key.channel().close();
+            } catch (IOException e) {
+                // Closing anyway.
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            // Closing anyway.
+        }
+    }
+
+    private GaussKreugerProjection projection(String name) {
+        GaussKreugerProjection projection = projections.get(name);
+        if (projection == null) {
+            projection = ProjectionRegistry.get(name);
+            projections.put(name, projection);
+        }
+        return projection;
+    }
+
+    private void convert(byte operation, GaussKreugerProjection source, GaussKreugerProjection target, int count) {
+        if (operation == ConversionProtocol.GEODETIC_TO_GRID) {
+            source.geodetic_to_grid(a, b, 0, a, b, 0, count);
+        } else if (operation == ConversionProtocol.GRID_TO_GEODETIC) {
+            source.grid_to_geodetic(a, b, 0, a, b, 0, count);
+        } else {
+            source.grid_to_grid(a, b, 0, target, a, b, 0, count);
+        }
+    }
+
+    /**
+     * Buffers of one client connection.
+     */
+    private final class Connection {
+
+        private final SocketChannel channel;
+        private final SelectionKey key;
+        private ByteBuffer in = ByteBuffer.allocate(BUFFER_SIZE);
+        private ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+        private boolean inputClosed;
+
+        Connection(SocketChannel channel, SelectionKey key) {
+            this.channel = channel;
+            this.key = key;
+        }
+
+        void read() throws IOException {
+            if (channel.read(in) < 0) {
+                // Half closed by the client, send the remaining responses before closing.
+                inputClosed = true;
+                release();
+                write();
+                return;
+            }
+            in.flip();
+            int needed = 0;
+            while (in.remaining() >= 4) {
+                int length = in.getInt(in.position());
+                if (length < 0 || length > ConversionProtocol.MAX_FRAME_LENGTH) {
+                    close();
+                    return;
+                }
+                if (in.remaining() < 4 + length) {
+                    needed = 4 + length;
+                    break;
+                }
+                int end = in.position() + 4 + length;
+                in.position(in.position() + 4);
+                int limit = in.limit();
+                in.limit(end);
+                try {
+                    request();
+                } catch (RuntimeException e) {
+                    // Malformed frame, e.g. shorter than its fields.
+                    close();
+                    return;
+                }
+                in.limit(limit).position(end);
+            }
+            in.compact();
+            if (needed > in.capacity() && !in.hasRemaining()) {
+                // Grow with the bytes that have arrived, not with the announced length.
+                if (!resize(Math.min(needed, 2 * in.capacity()))) {
+                    close();
+                    return;
+                }
+            } else if (in.position() == 0 && in.capacity() > BUFFER_SIZE) {
+                resize(BUFFER_SIZE);
+            }
+            write();
+        }
+
+        /**
+         * Replace the input buffer, keeping the buffered bytes.
+         * @return False if that would exceed the input buffered by all connections together
+         */
+        private boolean resize(int capacity) {
+            int growth = capacity - in.capacity();
+            if (growth > 0 && bufferedInput + growth > INPUT_LIMIT) {
+                return false;
+            }
+            bufferedInput += growth;
+            in.flip();
+            in = ByteBuffer.allocate(capacity).put(in);
+            return true;
+        }
+
+        private void release() {
+            bufferedInput -= Math.max(0, in.capacity() - BUFFER_SIZE);
+            in = ByteBuffer.allocate(0);
+        }
+
+        private void request() {
+            int id = in.getInt();
+            byte operation = in.get();
+            if (operation != ConversionProtocol.GEODETIC_TO_GRID && operation != ConversionProtocol.GRID_TO_GEODETIC
+                    && operation != ConversionProtocol.GRID_TO_GRID) {
+                throw new IllegalArgumentException("Unknown operation: " + operation);
+            }
+            String sourceName = name();
+            String targetName = operation == ConversionProtocol.GRID_TO_GRID ? name() : null;
+            int count = in.getInt();
+            if (count < 0 || in.remaining() != 16L * count) {
+                throw new IllegalArgumentException("Invalid point count: " + count);
+            }
+            GaussKreugerProjection source;
+            GaussKreugerProjection target;
+            try {
+                source = projection(sourceName);
+                target = targetName == null ? null : projection(targetName);
+            } catch (UnknownProjectionException e) {
+                in.position(in.limit());
+                error(id, e.getMessage());
+                return;
+            }
+            reserve(4 + 4 + 1 + 4 + 16 * count);
+            out.putInt(4 + 1 + 4 + 16 * count).putInt(id).put(ConversionProtocol.OK).putInt(count);
+            for (int from = 0; from < count; from += CONVERSION_SIZE) {
+                int points = Math.min(CONVERSION_SIZE, count - from);
+                for (int i = 0; i < points; i++) {
+                    a[i] = in.getDouble();
+                    b[i] = in.getDouble();
+                }
+                convert(operation, source, target, points);
+                for (int i = 0; i < points; i++) {
+                    out.putDouble(a[i]).putDouble(b[i]);
+                }
+            }
+        }
+
+        private String name() {
+            byte[] bytes = new byte[in.get() & 0xff];
+            in.get(bytes);
+            return new String(bytes, ASCII);
+        }
+
+        private void error(int id, String message) {
+            byte[] bytes = String.valueOf(message).getBytes(UTF8);
+            int length = Math.min(bytes.length, 0xffff);
+            reserve(4 + 4 + 1 + 2 + length);
+            out.putInt(4 + 1 + 2 + length).putInt(id).put(ConversionProtocol.ERROR)
+                    .putShort((short) length).put(bytes, 0, length);
+        }
+
+        private void reserve(int bytes) {
+            if (out.remaining() < bytes) {
+                ByteBuffer larger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes));
+                out.flip();
+                out = larger.put(out);
+            }
+        }
+
+        void write() throws IOException {
+            out.flip();
+            channel.write(out);
+            out.compact();
+            int pending = out.position();
+            if (inputClosed && pending == 0) {
+                close();
+                return;
+            }
+            int ops = pending > 0 ? SelectionKey.OP_WRITE : 0;
+            if (pending < OUTPUT_LIMIT && !inputClosed) {
+                ops |= SelectionKey.OP_READ;
+            }
+            key.interestOps(ops);
+            if (pending == 0 && out.capacity() > BUFFER_SIZE) {
+                out = ByteBuffer.allocate(BUFFER_SIZE);
+            }
+        }
+
+        void close() {
+            release();
+            key.cancel();
+            try {
+                channel.close();
+            } catch (IOException e) {
+                // Closing anyway.
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        InetAddress address = args.length > 1 ? InetAddress.getByName(args[1]) : InetAddress.getByName(null);
+        ConversionServer server = new ConversionServer(new InetSocketAddress(address, port));
+        System.out.println("Conversion server listening on " + server.getAddress());
+        server.run();
+    }
+}
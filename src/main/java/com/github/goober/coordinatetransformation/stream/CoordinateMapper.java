@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.stream;
+
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+
+/**
+ * Reads the coordinates of the records received by a {@link CoordinateProcessor}
+ * and creates the records it publishes. As in {@link CoordinateHolder}, the
+ * latitude holds the x (northing) value and the longitude the y (easting)
+ * value for grid coordinates.
+ * @param <T> Type of the received records
+ * @param <R> Type of the published records
+ */
+public interface CoordinateMapper<T, R> {
+
+    /**
+     * Read the coordinates of a received record.
+     * @param record Received record
+     * @param coordinates Holder receiving the coordinates in the source grid
+     */
+    void read(T record, CoordinateHolder coordinates);
+
+    /**
+     * Create the record to publish for a received record.
+     * @param record Received record
+     * @param lat Converted latitude, or x (northing) value
+     * @param lon Converted longitude, or y (easting) value
+     * @return Record to publish, must not be null
+     */
+    R create(T record, double lat, double lon);
+}
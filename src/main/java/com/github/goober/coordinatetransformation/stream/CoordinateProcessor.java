@@ -0,0 +1,375 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.github.goober.coordinatetransformation.stream;
+
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.GaussKreugerProjection;
+import com.github.goober.coordinatetransformation.Position.Grid;
+
+import org.reactivestreams.Processor;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Converts a stream of coordinate records from one grid to another. Received
+ * records are collected and converted in batches by the batch methods of
+ * {@link GaussKreugerProjection}, which spreads the cost of reading,
+ * signalling and demand accounting over the batch when records arrive faster
+ * than they are consumed. A batch holds the records that have arrived when
+ * the next converted record is needed, so records are never held back
+ * waiting for a batch to fill. Every record is converted by the same code as
+ * a single conversion, so results do not depend on how records were batched.
+ *
+ * <p>Back pressure is respected in both directions: no more records are
+ * published than the subscriber has requested, and at most twice the batch
+ * size of records is requested from upstream ahead of the subscriber. An
+ * error from upstream is published after the records received before it.
+ * The processor publishes to a single subscriber; more subscribers are
+ * rejected with an {@link IllegalStateException}.</p>
+ *
+ * <p>The processor is a Reactive Streams {@link Processor}, so it can be
+ * connected to any Reactive Streams publisher and subscriber. On Java 9 and
+ * later, {@code org.reactivestreams.FlowAdapters} connects it to
+ * {@code java.util.concurrent.Flow} publishers and subscribers.</p>
+ *
+ * @param <T> Type of the received records
+ * @param <R> Type of the published records
+ */
+public final class CoordinateProcessor<T, R> implements Processor<T, R> {
+
+    public static final int DEFAULT_BATCH_SIZE = 256;
+
+    private final Grid sourceGrid;
+    private final GaussKreugerProjection sourceProjection;
+    private final Grid targetGrid;
+    private final GaussKreugerProjection targetProjection;
+    private final CoordinateMapper<T, R> mapper;
+    private final int batchSize;
+
+    private final Queue<T> received = new ConcurrentLinkedQueue<T>();
+    private final AtomicReference<Subscription> upstream = new AtomicReference<Subscription>();
+    private final AtomicReference<Subscriber<? super R>> downstream = new AtomicReference<Subscriber<? super R>>();
+    private final AtomicLong requested = new AtomicLong();
+    private final AtomicInteger wip = new AtomicInteger();
+    private volatile boolean done;
+    private volatile Throwable error;
+    private volatile Throwable rejection;
+    private volatile boolean cancelled;
+
+    // Only accessed by the thread in drain().
+    private final CoordinateHolder coordinates = new CoordinateHolder();
+    private final Object[] records;
+    private final double[] lats;
+    private final double[] lons;
+    private final Object[] converted;
+    private int convertedIndex;
+    private int convertedSize;
+    private int consumed;
+    private boolean terminated;
+
+    /**
+     * Create a processor with the default batch size.
+     * @param sourceGrid Grid of the received coordinates
+     * @param sourceProjection Projection of the received coordinates, null for WGS84
+     * @param targetGrid Grid of the published coordinates
+     * @param targetProjection Projection of the published coordinates, null for WGS84
+     * @param mapper Reads received records and creates published records
+     */
+    public CoordinateProcessor(Grid sourceGrid, GaussKreugerProjection sourceProjection,
+                               Grid targetGrid, GaussKreugerProjection targetProjection,
+                               CoordinateMapper<T, R> mapper) {
+        this(sourceGrid, sourceProjection, targetGrid, targetProjection, mapper, DEFAULT_BATCH_SIZE);
+    }
+
+    /**
+     * Create a processor
+     * @param sourceGrid Grid of the received coordinates
+     * @param sourceProjection Projection of the received coordinates, null for WGS84
+     * @param targetGrid Grid of the published coordinates
+     * @param targetProjection Projection of the published coordinates, null for WGS84
+     * @param mapper Reads received records and creates published records
+     * @param batchSize Maximum number of records converted at a time
+     */
+    public CoordinateProcessor(Grid sourceGrid, GaussKreugerProjection sourceProjection,
+                               Grid targetGrid, GaussKreugerProjection targetProjection,
+                               CoordinateMapper<T, R> mapper, int batchSize) {
+        checkProjection(sourceGrid, sourceProjection);
+        checkProjection(targetGrid, targetProjection);
+        if (mapper == null) {
+            throw new NullPointerException("mapper");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        this.sourceGrid = sourceGrid;
+        this.sourceProjection = sourceProjection;
+        this.targetGrid = targetGrid;
+        this.targetProjection = targetProjection;
+        this.mapper = mapper;
+        this.batchSize = batchSize;
+        this.records = new Object[batchSize];
+        this.lats = new double[batchSize];
+        this.lons = new double[batchSize];
+        this.converted = new Object[batchSize];
+    }
+
+    public Grid getSourceGrid() {
+        return sourceGrid;
+    }
+
+    public Grid getTargetGrid() {
+        return targetGrid;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    @Override
+    public void subscribe(Subscriber<? super R> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        if (!downstream.compareAndSet(null, subscriber)) {
+            subscriber.onSubscribe(new Subscription() {
+                public void request(long n) {
+                }
+
+                public void cancel() {
+                }
+            });
+            subscriber.onError(new IllegalStateException("The processor already has a subscriber"));
+            return;
+        }
+        subscriber.onSubscribe(new Subscription() {
+            public void request(long n) {
+                if (n <= 0) {
+                    rejection = new IllegalArgumentException("Requested number of records must be positive: " + n);
+                    cancelUpstream();
+                } else {
+                    addRequested(n);
+                }
+                drain();
+            }
+
+            public void cancel() {
+                cancelled = true;
+                cancelUpstream();
+                drain();
+            }
+        });
+        drain();
+    }
+
+    @Override
+    public void onSubscribe(Subscription subscription) {
+        if (subscription == null) {
+            throw new NullPointerException("subscription");
+        }
+        if (!upstream.compareAndSet(null, subscription) || cancelled) {
+            subscription.cancel();
+            return;
+        }
+        subscription.request(2L * batchSize);
+    }
+
+    @Override
+    public void onNext(T record) {
+        if (record == null) {
+            throw new NullPointerException("record");
+        }
+        received.offer(record);
+        drain();
+    }
+
+    @Override
+    public void onError(Throwable error) {
+        if (error == null) {
+            throw new NullPointerException("error");
+        }
+        this.error = error;
+        done = true;
+        drain();
+    }
+
+    @Override
+    public void onComplete() {
+        done = true;
+        drain();
+    }
+
+    private void addRequested(long n) {
+        for (;;) {
+            long current = requested.get();
+            long next = current + n < 0 ? Long.MAX_VALUE : current + n;
+            if (requested.compareAndSet(current, next)) {
+                return;
+            }
+        }
+    }
+
+    private void cancelUpstream() {
+        Subscription subscription = upstream.get();
+        if (subscription != null) {
+            subscription.cancel();
+        }
+    }
+
+    /**
+     * Publish converted records while there is demand. Only one thread at a
+     * time runs the loop; calls made meanwhile make that thread loop again.
+     */
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+        int missed = 1;
+        for (;;) {
+            Subscriber<? super R> subscriber = downstream.get();
+            if (subscriber != null && !terminated) {
+                emit(subscriber);
+            }
+            missed = wip.addAndGet(-missed);
+            if (missed == 0) {
+                return;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void emit(Subscriber<? super R> subscriber) {
+        long demand = requested.get();
+        long emitted = 0;
+        for (;;) {
+            if (cancelled) {
+                clear();
+                return;
+            }
+            Throwable rejection = this.rejection;
+            if (rejection != null) {
+                terminate(subscriber, rejection);
+                return;
+            }
+            // Read before checking for received records, which arrive before done is set.
+            boolean finished = done;
+            if (convertedIndex == convertedSize) {
+                if (received.isEmpty()) {
+                    if (finished) {
+                        terminate(subscriber, error);
+                    }
+                    break;
+                }
+                if (emitted == demand) {
+                    break;
+                }
+                try {
+                    convert();
+                } catch (RuntimeException e) {
+                    cancelUpstream();
+                    terminate(subscriber, e);
+                    return;
+                }
+            }
+            if (emitted == demand) {
+                break;
+            }
+            R record = (R) converted[convertedIndex];
+            converted[convertedIndex++] = null;
+            subscriber.onNext(record);
+            emitted++;
+        }
+        if (emitted > 0 && demand != Long.MAX_VALUE) {
+            requested.addAndGet(-emitted);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void convert() {
+        int count = 0;
+        T record;
+        while (count < batchSize && (record = received.poll()) != null) {
+            mapper.read(record, coordinates);
+            records[count] = record;
+            lats[count] = coordinates.getLatitude();
+            lons[count] = coordinates.getLongitude();
+            count++;
+        }
+        if (sourceProjection != targetProjection) {
+            convert(count);
+        }
+        for (int i = 0; i < count; i++) {
+            converted[i] = mapper.create((T) records[i], lats[i], lons[i]);
+            records[i] = null;
+        }
+        convertedIndex = 0;
+        convertedSize = count;
+
+        consumed += count;
+        if (consumed >= batchSize) {
+            Subscription subscription = upstream.get();
+            if (subscription != null) {
+                subscription.request(consumed);
+            }
+            consumed = 0;
+        }
+    }
+
+    private void convert(int count) {
+        if (sourceProjection != null && targetProjection != null) {
+            sourceProjection.grid_to_grid(lats, lons, 0, targetProjection, lats, lons, 0, count);
+        } else if (sourceProjection != null) {
+            sourceProjection.grid_to_geodetic(lats, lons, 0, lats, lons, 0, count);
+        } else {
+            targetProjection.geodetic_to_grid(lats, lons, 0, lats, lons, 0, count);
+        }
+    }
+
+    private void terminate(Subscriber<? super R> subscriber, Throwable failure) {
+        terminated = true;
+        clear();
+        if (failure != null) {
+            subscriber.onError(failure);
+        } else {
+            subscriber.onComplete();
+        }
+    }
+
+    private void clear() {
+        received.clear();
+        for (int i = 0; i < batchSize; i++) {
+            records[i] = null;
+            converted[i] = null;
+        }
+        convertedIndex = 0;
+        convertedSize = 0;
+    }
+
+    private static void checkProjection(Grid grid, GaussKreugerProjection projection) {
+        if (grid == null) {
+            throw new NullPointerException("grid");
+        }
+        if ((grid == Grid.WGS84) != (projection == null)) {
+            throw new IllegalArgumentException("Grid coordinates require a projection, WGS84 coordinates must not have one");
+        }
+    }
+}
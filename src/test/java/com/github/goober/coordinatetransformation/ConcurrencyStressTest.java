@@ -0,0 +1,176 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Shares single instances between many threads that start converting at the same
+ * time, and checks every result against a sequential conversion.
+ */
+public class ConcurrencyStressTest {
+
+    private static final int THREADS = 16;
+    private static final int POINTS = 2000;
+    private static final int ROUNDS = 5;
+
+    private final GaussKreugerProjection sweref = ProjectionRegistry.get("sweref_99_tm");
+    private final GaussKreugerProjection rt90 = ProjectionRegistry.get("rt90_2.5_gon_v");
+
+    private ExecutorService executor;
+    private CyclicBarrier barrier;
+    private double[] latitudes;
+    private double[] longitudes;
+
+    @Before
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(THREADS);
+        barrier = new CyclicBarrier(THREADS);
+        Random random = new Random(42);
+        latitudes = new double[POINTS];
+        longitudes = new double[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            latitudes[i] = 55.0 + 14.0 * random.nextDouble();
+            longitudes[i] = 11.0 + 13.0 * random.nextDouble();
+        }
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        executor.shutdownNow();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSharedProjection() throws Exception {
+        final double[] x = new double[POINTS];
+        final double[] y = new double[POINTS];
+        final double[] rt90X = new double[POINTS];
+        final double[] rt90Y = new double[POINTS];
+        sweref.geodetic_to_grid(latitudes, longitudes, 0, x, y, 0, POINTS);
+        sweref.grid_to_grid(x, y, 0, rt90, rt90X, rt90Y, 0, POINTS);
+        final GaussKreuger gaussKreuger = new GaussKreuger();
+        gaussKreuger.swedish_params("sweref_99_tm");
+
+        runConcurrently(new Callable<Void>() {
+            public Void call() throws Exception {
+                CoordinateHolder holder = new CoordinateHolder();
+                double[] batchX = new double[POINTS];
+                double[] batchY = new double[POINTS];
+                for (int round = 0; round < ROUNDS; round++) {
+                    barrier.await();
+                    for (int i = 0; i < POINTS; i++) {
+                        sweref.geodetic_to_grid(latitudes[i], longitudes[i], holder);
+                        assertEquals(x[i], holder.getLatitude(), 0.0);
+                        assertEquals(y[i], holder.getLongitude(), 0.0);
+                        gaussKreuger.geodetic_to_grid(latitudes[i], longitudes[i], holder);
+                        assertEquals(x[i], holder.getLatitude(), 0.0);
+                        sweref.grid_to_grid(x[i], y[i], rt90, holder);
+                        assertEquals(rt90X[i], holder.getLatitude(), 0.0);
+                        assertEquals(rt90Y[i], holder.getLongitude(), 0.0);
+                    }
+                    sweref.geodetic_to_grid(latitudes, longitudes, 0, batchX, batchY, 0, POINTS);
+                    for (int i = 0; i < POINTS; i++) {
+                        assertEquals(x[i], batchX[i], 0.0);
+                        assertEquals(y[i], batchY[i], 0.0);
+                    }
+                    PolynomialKernel.geodetic_to_grid(sweref, latitudes, longitudes, 0, batchX, batchY, 0, POINTS);
+                    for (int i = 0; i < POINTS; i++) {
+                        assertEquals(x[i], batchX[i], 0.001);
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testInterpolationTableIsBuiltOnce() throws Exception {
+        final InterpolatedProjection interpolated = new InterpolatedProjection(sweref);
+        final double[] x = new double[POINTS];
+        final double[] y = new double[POINTS];
+        new InterpolatedProjection(sweref).geodetic_to_grid(latitudes, longitudes, 0, x, y, 0, POINTS);
+
+        runConcurrently(new Callable<Void>() {
+            public Void call() throws Exception {
+                CoordinateHolder holder = new CoordinateHolder();
+                barrier.await();
+                for (int i = 0; i < POINTS; i++) {
+                    interpolated.geodetic_to_grid(latitudes[i], longitudes[i], holder);
+                    assertEquals(x[i], holder.getLatitude(), 0.0);
+                    assertEquals(y[i], holder.getLongitude(), 0.0);
+                }
+                return null;
+            }
+        });
+    }
+
+    @Test
+    public void testSharedCache() throws Exception {
+        final ConversionCache cache = new ConversionCache(POINTS / 4);
+        final double[] x = new double[POINTS];
+        final double[] y = new double[POINTS];
+        sweref.geodetic_to_grid(latitudes, longitudes, 0, x, y, 0, POINTS);
+
+        runConcurrently(new Callable<Void>() {
+            public Void call() throws Exception {
+                CoordinateHolder holder = new CoordinateHolder();
+                Random random = new Random();
+                for (int round = 0; round < ROUNDS; round++) {
+                    barrier.await();
+                    for (int n = 0; n < POINTS; n++) {
+                        // Favour the first points so that there are both hits and evictions
+                        int i = random.nextBoolean() ? random.nextInt(POINTS / 8) : random.nextInt(POINTS);
+                        cache.geodetic_to_grid(sweref, latitudes[i], longitudes[i], holder);
+                        assertEquals(x[i], holder.getLatitude(), 0.0);
+                        assertEquals(y[i], holder.getLongitude(), 0.0);
+                    }
+                }
+                return null;
+            }
+        });
+        assertEquals((long) THREADS * ROUNDS * POINTS, cache.getHitCount() + cache.getMissCount());
+        assertTrue(cache.getHitCount() > 0);
+        assertTrue(cache.getEvictionCount() > 0);
+        assertTrue(cache.size() <= cache.getMaximumSize());
+    }
+
+    private void runConcurrently(Callable<Void> task) throws Exception {
+        List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        for (int i = 0; i < THREADS; i++) {
+            futures.add(executor.submit(task));
+        }
+        for (Future<Void> future : futures) {
+            // Rethrows assertion errors from the worker threads
+            future.get(60, TimeUnit.SECONDS);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation;
+
+import com.github.goober.coordinatetransformation.positions.RT90Position;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position;
+import com.github.goober.coordinatetransformation.positions.WGS84Position;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConversionCacheTest {
+
+    private final GaussKreugerProjection sweref = ProjectionRegistry.get(SWEREF99Position.SWEREFProjection.sweref_99_tm);
+    private final GaussKreugerProjection rt90 = ProjectionRegistry.get(RT90Position.RT90Projection.rt90_2_5_gon_v);
+
+    @Test
+    public void testCachedResultsMatchUncachedConversion() {
+        ConversionCache cache = new ConversionCache(100);
+        CoordinateHolder holder = new CoordinateHolder();
+        for (int round = 0; round < 3; round++) {
+            assertSame(holder, cache.geodetic_to_grid(sweref, 59.98201, 17.83503, holder));
+            double[] x_y = sweref.geodetic_to_grid(59.98201, 17.83503);
+            assertEquals(x_y[0], holder.getLatitude(), 0.0);
+            assertEquals(x_y[1], holder.getLongitude(), 0.0);
+
+            double[] lat_lon = sweref.grid_to_geodetic(x_y[0], x_y[1]);
+            cache.grid_to_geodetic(sweref, x_y[0], x_y[1], holder);
+            assertEquals(lat_lon[0], holder.getLatitude(), 0.0);
+            assertEquals(lat_lon[1], holder.getLongitude(), 0.0);
+
+            double[] rt90_x_y = sweref.grid_to_grid(x_y[0], x_y[1], rt90);
+            cache.grid_to_grid(sweref, x_y[0], x_y[1], rt90, holder);
+            assertEquals(rt90_x_y[0], holder.getLatitude(), 0.0);
+            assertEquals(rt90_x_y[1], holder.getLongitude(), 0.0);
+        }
+        assertEquals(3, cache.getMissCount());
+        assertEquals(6, cache.getHitCount());
+        assertEquals(3, cache.size());
+    }
+
+    @Test
+    public void testProjectionIsPartOfKey() {
+        ConversionCache cache = new ConversionCache(100);
+        CoordinateHolder holder = new CoordinateHolder();
+        cache.geodetic_to_grid(sweref, 59.0, 18.0, holder);
+        cache.geodetic_to_grid(rt90, 59.0, 18.0, holder);
+        assertEquals(rt90.geodetic_to_grid(59.0, 18.0)[0], holder.getLatitude(), 0.0);
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testLeastRecentlyUsedEntriesAreEvicted() {
+        ConversionCache cache = new ConversionCache(2, 0.0, 0.0, 1);
+        CoordinateHolder holder = new CoordinateHolder();
+        cache.geodetic_to_grid(sweref, 59.0, 18.0, holder);
+        cache.geodetic_to_grid(sweref, 60.0, 18.0, holder);
+        cache.geodetic_to_grid(sweref, 59.0, 18.0, holder);
+        cache.geodetic_to_grid(sweref, 61.0, 18.0, holder);
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals(2, cache.size());
+
+        cache.geodetic_to_grid(sweref, 59.0, 18.0, holder);
+        assertEquals(2, cache.getHitCount());
+        cache.geodetic_to_grid(sweref, 60.0, 18.0, holder);
+        assertEquals(4, cache.getMissCount());
+    }
+
+    @Test
+    public void testSizeIsBoundedAcrossSegments() {
+        ConversionCache cache = new ConversionCache(100, 0.0, 0.0, 8);
+        CoordinateHolder holder = new CoordinateHolder();
+        for (int i = 0; i < 1000; i++) {
+            cache.geodetic_to_grid(sweref, 55.0 + i * 0.01, 15.0, holder);
+        }
+        assertEquals(100, cache.size());
+        assertEquals(900, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testQuantizedCoordinatesShareEntry() {
+        ConversionCache cache = new ConversionCache(100, 1e-6, 0.01, 4);
+        CoordinateHolder first = new CoordinateHolder();
+        CoordinateHolder second = new CoordinateHolder();
+        cache.geodetic_to_grid(sweref, 59.0000001, 18.0, first);
+        cache.geodetic_to_grid(sweref, 58.9999998, 18.0000002, second);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(first.getLatitude(), second.getLatitude(), 0.0);
+        assertEquals(sweref.geodetic_to_grid(59.0, 18.0)[0], second.getLatitude(), 0.0);
+    }
+
+    @Test
+    public void testNonFiniteCoordinatesBypassCache() {
+        ConversionCache cache = new ConversionCache(100, 1e-6, 0.001, 1);
+        CoordinateHolder holder = new CoordinateHolder();
+        GaussKreugerProjection unrounded = sweref.withPrecision(GridPrecision.UNROUNDED);
+        cache.geodetic_to_grid(unrounded, Double.NaN, 17.83503, holder);
+        assertTrue(Double.isNaN(holder.getLatitude()));
+        cache.grid_to_geodetic(sweref, Double.POSITIVE_INFINITY, 674032.0, holder);
+        double[] lat_lon = sweref.grid_to_geodetic(Double.POSITIVE_INFINITY, 674032.0);
+        assertEquals(lat_lon[0], holder.getLatitude(), 0.0);
+        assertEquals(lat_lon[1], holder.getLongitude(), 0.0);
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void testPositionConversionsUseCache() {
+        ConversionCache cache = new ConversionCache(100);
+        WGS84Position wgsPos = new WGS84Position(59.98201, 17.83503);
+        SWEREF99Position swePos = new SWEREF99Position(wgsPos, SWEREF99Position.SWEREFProjection.sweref_99_tm, cache);
+        SWEREF99Position expected = new SWEREF99Position(wgsPos, SWEREF99Position.SWEREFProjection.sweref_99_tm);
+        assertEquals(expected.getLatitude(), swePos.getLatitude(), 0.0);
+        assertEquals(expected.getLongitude(), swePos.getLongitude(), 0.0);
+
+        new RT90Position(wgsPos, RT90Position.RT90Projection.rt90_2_5_gon_v, cache);
+        assertEquals(expected.toWGS84().getLatitude(), swePos.toWGS84(cache).getLatitude(), 0.0);
+        swePos.toWGS84(cache);
+        assertEquals(3, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation;
+
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConversionServiceTest {
+
+    private final GaussKreugerProjection sweref = ProjectionRegistry.get(SWEREF99Position.SWEREFProjection.sweref_99_tm);
+    private final GaussKreugerProjection local = ProjectionRegistry.get(SWEREF99Position.SWEREFProjection.sweref_99_18_00);
+    private ConversionService service;
+
+    @After
+    public void tearDown() throws InterruptedException {
+        if (service != null) {
+            service.shutdown();
+            assertTrue(service.awaitTermination(10, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void testSinglePointIsConvertedAfterTheDelay() throws Exception {
+        service = new ConversionService();
+        double[] x_y = service.geodetic_to_grid(sweref, 59.3, 18.0).get(1, TimeUnit.SECONDS);
+        assertArrayEquals(sweref.geodetic_to_grid(59.3, 18.0), x_y, 0.0);
+        double[] lat_lon = service.grid_to_geodetic(sweref, x_y[0], x_y[1]).get(1, TimeUnit.SECONDS);
+        assertArrayEquals(sweref.grid_to_geodetic(x_y[0], x_y[1]), lat_lon, 0.0);
+    }
+
+    @Test
+    public void testConcurrentSubmissionsAreConvertedInBatches() throws Exception {
+        service = new ConversionService(64, 5, TimeUnit.MILLISECONDS, 1024, daemonThreads());
+        final int threads = 16;
+        final int points = 500;
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        List<Thread> callers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            Thread caller = new Thread() {
+                public void run() {
+                    try {
+                        start.await();
+                        List<Future<double[]>> futures = new ArrayList<Future<double[]>>();
+                        for (int i = 0; i < points; i++) {
+                            GaussKreugerProjection projection = i % 3 == 0 ? local : sweref;
+                            futures.add(service.geodetic_to_grid(projection, lat(seed, i), lon(seed, i)));
+                        }
+                        for (int i = 0; i < points; i++) {
+                            GaussKreugerProjection projection = i % 3 == 0 ? local : sweref;
+                            double[] expected = projection.geodetic_to_grid(lat(seed, i), lon(seed, i));
+                            assertArrayEquals(expected, futures.get(i).get(), 0.0);
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            };
+            caller.start();
+            callers.add(caller);
+        }
+        start.countDown();
+        for (Thread caller : callers) {
+            caller.join();
+        }
+        assertNull(failure.get());
+    }
+
+    @Test
+    public void testShutdownConvertsSubmittedPointsAndRejectsNewOnes() throws Exception {
+        service = new ConversionService(1000, 10, TimeUnit.SECONDS, 1024, daemonThreads());
+        Future<double[]> pending = service.geodetic_to_grid(sweref, 59.3, 18.0);
+        service.shutdown();
+        assertTrue(service.awaitTermination(1, TimeUnit.SECONDS));
+        assertArrayEquals(sweref.geodetic_to_grid(59.3, 18.0), pending.get(), 0.0);
+        try {
+            service.geodetic_to_grid(sweref, 59.3, 18.0);
+        } catch (RejectedExecutionException e) {
+            return;
+        }
+        throw new AssertionError("Expected the service to reject the point");
+    }
+
+    @Test
+    public void testCancelledPointsAreSkipped() throws Exception {
+        service = new ConversionService(1000, 200, TimeUnit.MILLISECONDS, 1024, daemonThreads());
+        Future<double[]> cancelled = service.geodetic_to_grid(sweref, 59.3, 18.0);
+        Future<double[]> converted = service.geodetic_to_grid(sweref, 60.0, 15.0);
+        assertTrue(cancelled.cancel(false));
+        assertTrue(cancelled.isCancelled());
+        assertTrue(cancelled.isDone());
+        assertArrayEquals(sweref.geodetic_to_grid(60.0, 15.0), converted.get(), 0.0);
+        assertEquals(false, converted.cancel(false));
+    }
+
+    private static double lat(int seed, int i) {
+        return 55.5 + ((seed * 7919 + i * 104729) % 1300) / 100.0;
+    }
+
+    private static double lon(int seed, int i) {
+        return 11.5 + ((seed * 6151 + i * 15485863L) % 1200) / 100.0;
+    }
+
+    private static ThreadFactory daemonThreads() {
+        return new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable);
+                thread.setDaemon(true);
+                return thread;
+            }
+        };
+    }
+}
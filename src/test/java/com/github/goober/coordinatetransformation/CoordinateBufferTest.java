@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation;
+
+import com.github.goober.coordinatetransformation.Position.Grid;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class CoordinateBufferTest {
+
+    private static final double[] LATITUDES = {55.3, 57.7, 59.98201, 62.176, 65.58, 68.4};
+    private static final double[] LONGITUDES = {13.0, 11.95, 17.83503, 15.903, 22.15, 18.1};
+
+    private final GaussKreugerProjection sweref = ProjectionRegistry.get("sweref_99_tm");
+    private final GaussKreugerProjection rt90 = ProjectionRegistry.get("rt90_2.5_gon_v");
+
+    @Test
+    public void testBufferGrows() {
+        CoordinateBuffer buffer = new CoordinateBuffer(Grid.WGS84, null, 1);
+        for (int i = 0; i < 100; i++) {
+            buffer.add(i, -i);
+        }
+        buffer.addAll(LATITUDES, LONGITUDES, 1, 3);
+        assertEquals(103, buffer.size());
+        assertEquals(42.0, buffer.getLatitude(42), 0.0);
+        assertEquals(-42.0, buffer.getLongitude(42), 0.0);
+        assertEquals(LATITUDES[3], buffer.getLatitude(102), 0.0);
+        assertEquals(LONGITUDES[3], buffer.get(102, new CoordinateHolder()).getLongitude(), 0.0);
+
+        buffer.trimToSize();
+        assertEquals(103, buffer.capacity());
+        buffer.clear();
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void testTransformInPlace() {
+        CoordinateBuffer buffer = new CoordinateBuffer(Grid.WGS84, null);
+        buffer.addAll(LATITUDES, LONGITUDES, 0, LATITUDES.length);
+
+        buffer.transformTo(Grid.RT90, rt90);
+        assertSame(rt90, buffer.getProjection());
+        for (int i = 0; i < LATITUDES.length; i++) {
+            double[] x_y = rt90.geodetic_to_grid(LATITUDES[i], LONGITUDES[i]);
+            assertEquals(x_y[0], buffer.getLatitude(i), 0.0);
+            assertEquals(x_y[1], buffer.getLongitude(i), 0.0);
+        }
+
+        double[] x = new double[LATITUDES.length];
+        double[] y = new double[LATITUDES.length];
+        buffer.copyTo(0, x, y, 0, x.length);
+        buffer.transformTo(Grid.SWEREF99, sweref);
+        assertEquals(Grid.SWEREF99, buffer.getGrid());
+        for (int i = 0; i < LATITUDES.length; i++) {
+            double[] x_y = rt90.grid_to_grid(x[i], y[i], sweref);
+            assertEquals(x_y[0], buffer.getLatitude(i), 0.0);
+            assertEquals(x_y[1], buffer.getLongitude(i), 0.0);
+        }
+
+        buffer.transformTo(Grid.WGS84, null);
+        assertNull(buffer.getProjection());
+        for (int i = 0; i < LATITUDES.length; i++) {
+            assertEquals(LATITUDES[i], buffer.getLatitude(i), 1e-7);
+            assertEquals(LONGITUDES[i], buffer.getLongitude(i), 1e-7);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGridRequiresProjection() {
+        new CoordinateBuffer(Grid.SWEREF99, null);
+    }
+
+    @Test(expected = IndexOutOfBoundsException.class)
+    public void testIndexIsChecked() {
+        CoordinateBuffer buffer = new CoordinateBuffer(Grid.WGS84, null, 10);
+        buffer.add(1.0, 2.0);
+        buffer.getLatitude(1);
+    }
+}
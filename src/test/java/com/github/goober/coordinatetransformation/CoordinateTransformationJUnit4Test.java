@@ -134,4 +134,22 @@ public class CoordinateTransformationJUnit4Test {
         assertEquals(62.176, lat_s,0.0001d);
         assertEquals(15.903, lon_s,0.0001d);
     }
+
+    @Test
+    public void testRT90ToSweref() {
+        RT90Position rtPos = new RT90Position(6653174.343, 1613318.742);
+        SWEREF99Position swePos = new SWEREF99Position(rtPos, SWEREF99Position.SWEREFProjection.sweref_99_tm);
+        SWEREF99Position viaWgs = new SWEREF99Position(rtPos.toWGS84(), SWEREF99Position.SWEREFProjection.sweref_99_tm);
+
+        assertEquals(viaWgs.getLatitude(), swePos.getLatitude(), 0.0);
+        assertEquals(viaWgs.getLongitude(), swePos.getLongitude(), 0.0);
+
+        // Conversion values from Lantmateriet.se for the same point.
+        assertEquals(6652797.165, swePos.getLatitude(), 0.002d);
+        assertEquals(658185.201, swePos.getLongitude(), 0.002d);
+
+        RT90Position back = new RT90Position(swePos, RT90Position.RT90Projection.rt90_2_5_gon_v);
+        assertEquals(rtPos.getLatitude(), back.getLatitude(), 0.002d);
+        assertEquals(rtPos.getLongitude(), back.getLongitude(), 0.002d);
+    }
 }
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation;
+
+import com.github.goober.coordinatetransformation.positions.RT90Position;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GaussKreugerProjectionTest {
+
+    private static final double[] LATITUDES = {55.3, 57.7, 59.98201, 62.176, 65.58, 68.4};
+    private static final double[] LONGITUDES = {13.0, 11.95, 17.83503, 15.903, 22.15, 18.1};
+
+    private final GaussKreugerProjection projection =
+            ProjectionRegistry.get(SWEREF99Position.SWEREFProjection.sweref_99_tm);
+
+    @Test
+    public void testBatchGeodeticToGridMatchesSinglePoint() {
+        int length = LATITUDES.length;
+        double[] x = new double[length + 1];
+        double[] y = new double[length + 1];
+        projection.geodetic_to_grid(LATITUDES, LONGITUDES, 0, x, y, 1, length);
+
+        double[] lat_lon = new double[2 * length];
+        for (int i = 0; i < length; i++) {
+            lat_lon[2 * i] = LATITUDES[i];
+            lat_lon[2 * i + 1] = LONGITUDES[i];
+        }
+        projection.geodetic_to_grid(lat_lon, 0, lat_lon, 0, length);
+
+        for (int i = 0; i < length; i++) {
+            double[] x_y = projection.geodetic_to_grid(LATITUDES[i], LONGITUDES[i]);
+            assertEquals(x_y[0], x[i + 1], 0.0);
+            assertEquals(x_y[1], y[i + 1], 0.0);
+            assertEquals(x_y[0], lat_lon[2 * i], 0.0);
+            assertEquals(x_y[1], lat_lon[2 * i + 1], 0.0);
+        }
+    }
+
+    @Test
+    public void testBatchGridToGeodeticMatchesSinglePoint() {
+        int length = LATITUDES.length;
+        double[] x = new double[length];
+        double[] y = new double[length];
+        projection.geodetic_to_grid(LATITUDES, LONGITUDES, 0, x, y, 0, length);
+
+        double[] latitudes = new double[length];
+        double[] longitudes = new double[length];
+        projection.grid_to_geodetic(x, y, 0, latitudes, longitudes, 0, length);
+
+        double[] x_y = new double[2 * length];
+        for (int i = 0; i < length; i++) {
+            x_y[2 * i] = x[i];
+            x_y[2 * i + 1] = y[i];
+        }
+        double[] lat_lon = new double[2 * length];
+        projection.grid_to_geodetic(x_y, 0, lat_lon, 0, length);
+
+        for (int i = 0; i < length; i++) {
+            double[] expected = projection.grid_to_geodetic(x[i], y[i]);
+            assertArrayEquals(expected, new double[]{latitudes[i], longitudes[i]}, 0.0);
+            assertArrayEquals(expected, new double[]{lat_lon[2 * i], lat_lon[2 * i + 1]}, 0.0);
+        }
+    }
+
+    @Test
+    public void testHolderConversionMatchesArrayConversion() {
+        CoordinateHolder holder = new CoordinateHolder();
+        for (int i = 0; i < LATITUDES.length; i++) {
+            double[] x_y = projection.geodetic_to_grid(LATITUDES[i], LONGITUDES[i]);
+            assertSame(holder, projection.geodetic_to_grid(LATITUDES[i], LONGITUDES[i], holder));
+            assertEquals(x_y[0], holder.getLatitude(), 0.0);
+            assertEquals(x_y[1], holder.getLongitude(), 0.0);
+
+            double[] lat_lon = projection.grid_to_geodetic(x_y[0], x_y[1]);
+            SWEREF99Position position = new SWEREF99Position(x_y[0], x_y[1]);
+            assertSame(holder, position.toWGS84(holder));
+            assertEquals(lat_lon[0], holder.getLatitude(), 0.0);
+            assertEquals(lat_lon[1], holder.getLongitude(), 0.0);
+        }
+    }
+
+    @Test
+    public void testBatchGridToGridMatchesSinglePoint() {
+        GaussKreugerProjection rt90 = ProjectionRegistry.get("rt90_2.5_gon_v");
+        int length = LATITUDES.length;
+        double[] x_y = new double[2 * length];
+        for (int i = 0; i < length; i++) {
+            double[] rt90_x_y = rt90.geodetic_to_grid(LATITUDES[i], LONGITUDES[i]);
+            x_y[2 * i] = rt90_x_y[0];
+            x_y[2 * i + 1] = rt90_x_y[1];
+        }
+        double[] expected = new double[2 * length];
+        for (int i = 0; i < length; i++) {
+            double[] lat_lon = rt90.grid_to_geodetic(x_y[2 * i], x_y[2 * i + 1]);
+            double[] sweref = projection.geodetic_to_grid(lat_lon[0], lat_lon[1]);
+            expected[2 * i] = sweref[0];
+            expected[2 * i + 1] = sweref[1];
+        }
+        rt90.grid_to_grid(x_y, 0, projection, x_y, 0, length);
+        assertArrayEquals(expected, x_y, 0.0);
+    }
+
+    @Test
+    public void testClenshawMatchesLantmaterietReferencePoints() {
+        GaussKreugerProjection rt90 = ProjectionRegistry.get(RT90Position.RT90Projection.rt90_2_5_gon_v)
+                .withSeriesEvaluation(GaussKreugerProjection.SeriesEvaluation.Clenshaw);
+        GaussKreugerProjection sweref = projection
+                .withSeriesEvaluation(GaussKreugerProjection.SeriesEvaluation.Clenshaw);
+        double latitude = 59.0 + 58.0 / 60.0 + 55.23 / 3600.0;
+        double longitude = 17.0 + 50.0 / 60.0 + 6.12 / 3600.0;
+
+        assertArrayEquals(new double[]{6653174.343, 1613318.742}, rt90.geodetic_to_grid(latitude, longitude), 0.001);
+        assertArrayEquals(new double[]{6652797.165, 658185.201}, sweref.geodetic_to_grid(latitude, longitude), 0.001);
+        // 1 mm is roughly 1e-8 degrees
+        assertArrayEquals(new double[]{latitude, longitude}, sweref.grid_to_geodetic(6652797.165, 658185.201), 1e-8);
+    }
+
+    @Test
+    public void testClenshawMatchesReferenceEvaluation() {
+        String[] names = {"rt90_7.5_gon_v", "rt90_0.0_gon_v", "rt90_5.0_gon_o", "bessel_rt90_2.5_gon_v",
+                "sweref_99_tm", "sweref_99_1200", "sweref_99_2315"};
+        for (String name : names) {
+            GaussKreugerProjection reference = ProjectionRegistry.get(name);
+            GaussKreugerProjection clenshaw =
+                    reference.withSeriesEvaluation(GaussKreugerProjection.SeriesEvaluation.Clenshaw);
+            for (double latitude = 55.0; latitude <= 69.5; latitude += 0.25) {
+                for (double longitude = 10.5; longitude <= 24.5; longitude += 0.25) {
+                    double[] expected = reference.geodetic_to_grid(latitude, longitude);
+                    double[] actual = clenshaw.geodetic_to_grid(latitude, longitude);
+                    assertArrayEquals(name, expected, actual, 0.001);
+
+                    expected = reference.grid_to_geodetic(actual[0], actual[1]);
+                    assertArrayEquals(name, expected, clenshaw.grid_to_geodetic(actual[0], actual[1]), 1e-9);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWithSeriesEvaluationKeepsParameters() {
+        GaussKreugerProjection clenshaw =
+                projection.withSeriesEvaluation(GaussKreugerProjection.SeriesEvaluation.Clenshaw);
+        assertEquals(GaussKreugerProjection.SeriesEvaluation.Reference, projection.getSeriesEvaluation());
+        assertEquals(GaussKreugerProjection.SeriesEvaluation.Clenshaw, clenshaw.getSeriesEvaluation());
+        assertSame(clenshaw, clenshaw.withSeriesEvaluation(GaussKreugerProjection.SeriesEvaluation.Clenshaw));
+        assertTrue(projection.hasSameParameters(clenshaw));
+        assertEquals("sweref_99_tm", ProjectionRegistry.getName(clenshaw));
+    }
+
+    @Test
+    public void testUnroundedPrecisionKeepsFullResult() {
+        GaussKreugerProjection unrounded = projection.withPrecision(GridPrecision.UNROUNDED);
+        assertSame(GridPrecision.MILLIMETRE, projection.getPrecision());
+        boolean fractional = false;
+        for (int i = 0; i < LATITUDES.length; i++) {
+            double[] x_y = unrounded.geodetic_to_grid(LATITUDES[i], LONGITUDES[i]);
+            double[] expected = projection.geodetic_to_grid(LATITUDES[i], LONGITUDES[i]);
+            assertEquals(expected[0], GridPrecision.MILLIMETRE.round(x_y[0]), 0.0);
+            assertEquals(expected[1], GridPrecision.MILLIMETRE.round(x_y[1]), 0.0);
+            fractional |= x_y[0] != expected[0] || x_y[1] != expected[1];
+        }
+        assertTrue(fractional);
+    }
+
+    @Test
+    public void testQuantumPrecision() {
+        GaussKreugerProjection centimetre = projection.withPrecision(GridPrecision.quantum(0.01));
+        GaussKreugerProjection unrounded = projection.withPrecision(GridPrecision.UNROUNDED);
+        assertSame(GridPrecision.MILLIMETRE, GridPrecision.quantum(0.001));
+        for (int i = 0; i < LATITUDES.length; i++) {
+            double[] x_y = centimetre.geodetic_to_grid(LATITUDES[i], LONGITUDES[i]);
+            double[] exact = unrounded.geodetic_to_grid(LATITUDES[i], LONGITUDES[i]);
+            assertEquals(Math.rint(x_y[0] * 100.0), x_y[0] * 100.0, 1e-6);
+            assertEquals(Math.rint(x_y[1] * 100.0), x_y[1] * 100.0, 1e-6);
+            assertArrayEquals(exact, x_y, 0.005);
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testQuantumMustBePositive() {
+        GridPrecision.quantum(0.0);
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testBatchRangeIsCheckedBeforeConverting() {
+        projection.geodetic_to_grid(LATITUDES, LONGITUDES, 2, new double[4], new double[4], 0, LATITUDES.length);
+    }
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation;
+
+import com.github.goober.coordinatetransformation.positions.RT90Position.RT90BesselProjection;
+import com.github.goober.coordinatetransformation.positions.RT90Position.RT90Projection;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class HelmertTransformationTest {
+
+    private final GaussKreugerProjection rt90 = ProjectionRegistry.get(RT90Projection.rt90_2_5_gon_v);
+    private final GaussKreugerProjection bessel = ProjectionRegistry.get(RT90BesselProjection.bessel_rt90_2_5_gon_v);
+
+    @Test
+    public void testAgreesWithModifiedGrs80Projection() {
+        // The RT 90 projections approximate the datum shift within a few decimetres.
+        for (double lat = 55.5; lat < 69.0; lat += 0.5) {
+            for (double lon = 11.5; lon < 24.0; lon += 0.5) {
+                double[] expected = rt90.geodetic_to_grid(lat, lon);
+                double[] bessel_lat_lon = HelmertTransformation.SWEREF99_TO_RT90.transform(lat, lon);
+                double[] actual = bessel.geodetic_to_grid(bessel_lat_lon[0], bessel_lat_lon[1]);
+                assertEquals(expected[0], actual[0], 0.5);
+                assertEquals(expected[1], actual[1], 0.5);
+            }
+        }
+    }
+
+    @Test
+    public void testInverseRoundTrips() {
+        double[] rt90_lat_lon = HelmertTransformation.SWEREF99_TO_RT90.transform(59.3, 18.07);
+        assertEquals(59.3 + 0.00049, rt90_lat_lon[0], 0.00001);
+        assertEquals(18.07 + 0.00345, rt90_lat_lon[1], 0.00001);
+        double[] lat_lon = HelmertTransformation.RT90_TO_SWEREF99.transform(rt90_lat_lon[0], rt90_lat_lon[1]);
+        // The dropped height keeps the round trip from being exact, within a few millimetres.
+        assertEquals(59.3, lat_lon[0], 1e-7);
+        assertEquals(18.07, lat_lon[1], 1e-7);
+    }
+
+    @Test
+    public void testBatchMatchesSinglePoints() {
+        int n = 100;
+        double[] lats = new double[n];
+        double[] lons = new double[n];
+        for (int i = 0; i < n; i++) {
+            lats[i] = 55.5 + i * 0.13;
+            lons[i] = 11.5 + i * 0.12;
+        }
+        double[] x = new double[n];
+        double[] y = new double[n];
+        HelmertTransformation.SWEREF99_TO_RT90.geodetic_to_grid(bessel, lats, lons, 0, x, y, 0, n);
+        double[] back_lats = new double[n];
+        double[] back_lons = new double[n];
+        HelmertTransformation.RT90_TO_SWEREF99.grid_to_geodetic(bessel, x, y, 0, back_lats, back_lons, 0, n);
+        CoordinateHolder holder = new CoordinateHolder();
+        for (int i = 0; i < n; i++) {
+            HelmertTransformation.SWEREF99_TO_RT90.transform(lats[i], lons[i], holder);
+            double[] expected = bessel.geodetic_to_grid(holder.getLatitude(), holder.getLongitude());
+            assertEquals(expected[0], x[i], 0.0011);
+            assertEquals(expected[1], y[i], 0.0011);
+            assertEquals(lats[i], back_lats[i], 1e-7);
+            assertEquals(lons[i], back_lons[i], 1e-7);
+        }
+
+        HelmertTransformation.SWEREF99_TO_RT90.transform(lats, lons, 0, lats, lons, 0, n);
+        assertEquals(holder.getLatitude(), lats[n - 1], 0.0);
+        assertEquals(holder.getLongitude(), lons[n - 1], 0.0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testProjectionMustBeOnTargetEllipsoid() {
+        HelmertTransformation.SWEREF99_TO_RT90.geodetic_to_grid(rt90, new double[1], new double[1], 0,
+                new double[1], new double[1], 0, 1);
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation;
+
+import com.github.goober.coordinatetransformation.positions.RT90Position;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+
+public class InterpolatedProjectionTest {
+
+    @Test
+    public void testErrorBoundForAllProjections() {
+        Random random = new Random(42);
+        for (RT90Position.RT90Projection projection : RT90Position.RT90Projection.values()) {
+            assertWithinErrorBound(InterpolatedProjection.get(projection), random);
+        }
+        for (SWEREF99Position.SWEREFProjection projection : SWEREF99Position.SWEREFProjection.values()) {
+            assertWithinErrorBound(InterpolatedProjection.get(projection), random);
+        }
+    }
+
+    private static void assertWithinErrorBound(InterpolatedProjection interpolated, Random random) {
+        GaussKreugerProjection exact = interpolated.getProjection();
+        CoordinateHolder holder = new CoordinateHolder();
+        for (int i = 0; i < 5000; i++) {
+            double latitude = InterpolatedProjection.MIN_LATITUDE
+                    + (InterpolatedProjection.MAX_LATITUDE - InterpolatedProjection.MIN_LATITUDE) * random.nextDouble();
+            double longitude = InterpolatedProjection.MIN_LONGITUDE
+                    + (InterpolatedProjection.MAX_LONGITUDE - InterpolatedProjection.MIN_LONGITUDE) * random.nextDouble();
+            interpolated.geodetic_to_grid(latitude, longitude, holder);
+            double[] expected = exact.geodetic_to_grid(latitude, longitude);
+            assertEquals(expected[0], holder.getLatitude(), InterpolatedProjection.MAX_ERROR);
+            assertEquals(expected[1], holder.getLongitude(), InterpolatedProjection.MAX_ERROR);
+        }
+        // The corners of the bounding box use the outermost nodes
+        double[] corner = exact.geodetic_to_grid(InterpolatedProjection.MAX_LATITUDE, InterpolatedProjection.MAX_LONGITUDE);
+        assertArrayEquals(corner, interpolated.geodetic_to_grid(InterpolatedProjection.MAX_LATITUDE,
+                InterpolatedProjection.MAX_LONGITUDE), InterpolatedProjection.MAX_ERROR);
+        corner = exact.geodetic_to_grid(InterpolatedProjection.MIN_LATITUDE, InterpolatedProjection.MIN_LONGITUDE);
+        assertArrayEquals(corner, interpolated.geodetic_to_grid(InterpolatedProjection.MIN_LATITUDE,
+                InterpolatedProjection.MIN_LONGITUDE), InterpolatedProjection.MAX_ERROR);
+    }
+
+    @Test
+    public void testPointsOutsideBoundingBoxUseExactProjection() {
+        InterpolatedProjection interpolated = InterpolatedProjection.get(SWEREF99Position.SWEREFProjection.sweref_99_tm);
+        assertFalse(interpolated.covers(52.0, 13.4));
+        assertArrayEquals(interpolated.getProjection().geodetic_to_grid(52.0, 13.4),
+                interpolated.geodetic_to_grid(52.0, 13.4), 0.0);
+    }
+
+    @Test
+    public void testBatchMatchesSinglePoint() {
+        InterpolatedProjection interpolated = InterpolatedProjection.get(RT90Position.RT90Projection.rt90_2_5_gon_v);
+        double[] latitudes = {55.3, 57.7, 59.98201, 62.176, 65.58, 70.1};
+        double[] longitudes = {13.0, 11.95, 17.83503, 15.903, 22.15, 18.1};
+        double[] x = new double[latitudes.length];
+        double[] y = new double[latitudes.length];
+        interpolated.geodetic_to_grid(latitudes, longitudes, 0, x, y, 0, latitudes.length);
+        double[] lat_lon = new double[2 * latitudes.length];
+        for (int i = 0; i < latitudes.length; i++) {
+            lat_lon[2 * i] = latitudes[i];
+            lat_lon[2 * i + 1] = longitudes[i];
+        }
+        interpolated.geodetic_to_grid(lat_lon, 0, lat_lon, 0, latitudes.length);
+        for (int i = 0; i < latitudes.length; i++) {
+            double[] x_y = interpolated.geodetic_to_grid(latitudes[i], longitudes[i]);
+            assertArrayEquals(x_y, new double[]{x[i], y[i]}, 0.0);
+            assertArrayEquals(x_y, new double[]{lat_lon[2 * i], lat_lon[2 * i + 1]}, 0.0);
+        }
+    }
+
+    @Test
+    public void testSharedInstancesInterpolateUnroundedProjection() {
+        InterpolatedProjection interpolated = InterpolatedProjection.get(SWEREF99Position.SWEREFProjection.sweref_99_tm);
+        assertSame(interpolated, InterpolatedProjection.get(SWEREF99Position.SWEREFProjection.sweref_99_tm));
+        assertSame(GridPrecision.UNROUNDED, interpolated.getProjection().getPrecision());
+        assertEquals("sweref_99_tm", ProjectionRegistry.getName(interpolated.getProjection()));
+    }
+}
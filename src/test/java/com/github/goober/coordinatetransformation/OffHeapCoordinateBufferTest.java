@@ -0,0 +1,106 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation;
+
+import com.github.goober.coordinatetransformation.Position.Grid;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+
+import static org.junit.Assert.assertEquals;
+
+public class OffHeapCoordinateBufferTest {
+
+    private final GaussKreugerProjection sweref = ProjectionRegistry.get("sweref_99_tm");
+    private final GaussKreugerProjection rt90 = ProjectionRegistry.get("rt90_2.5_gon_v");
+
+    @Test
+    public void testBufferSpansChunks() {
+        OffHeapCoordinateBuffer buffer = new OffHeapCoordinateBuffer(Grid.WGS84, null, 8);
+        for (int i = 0; i < 100; i++) {
+            buffer.add(55.0 + i * 0.1, 12.0 + i * 0.1);
+        }
+        assertEquals(100, buffer.size());
+        assertEquals(104, buffer.capacity());
+        assertEquals(55.0 + 42 * 0.1, buffer.getLatitude(42), 0.0);
+        assertEquals(12.0 + 99 * 0.1, buffer.get(99, new CoordinateHolder()).getLongitude(), 0.0);
+
+        buffer.set(99, 1.0, 2.0);
+        assertEquals(1.0, buffer.getLatitude(99), 0.0);
+        buffer.clear();
+        buffer.add(3.0, 4.0);
+        buffer.trimToSize();
+        assertEquals(8, buffer.capacity());
+        assertEquals(4.0, buffer.getLongitude(0), 0.0);
+    }
+
+    @Test
+    public void testTransformInPlaceMatchesHeapBuffer() {
+        OffHeapCoordinateBuffer offHeap = new OffHeapCoordinateBuffer(Grid.WGS84, null, 16);
+        CoordinateBuffer heap = new CoordinateBuffer(Grid.WGS84, null);
+        for (int i = 0; i < 50; i++) {
+            offHeap.add(55.0 + i * 0.25, 11.0 + i * 0.2);
+            heap.add(55.0 + i * 0.25, 11.0 + i * 0.2);
+        }
+        offHeap.transformTo(Grid.RT90, rt90);
+        heap.transformTo(Grid.RT90, rt90);
+        assertSameCoordinates(heap, offHeap);
+
+        offHeap.transformTo(Grid.SWEREF99, sweref);
+        heap.transformTo(Grid.SWEREF99, sweref);
+        assertEquals(Grid.SWEREF99, offHeap.getGrid());
+        assertSameCoordinates(heap, offHeap);
+
+        offHeap.transformTo(Grid.WGS84, null);
+        heap.transformTo(Grid.WGS84, null);
+        assertSameCoordinates(heap, offHeap);
+    }
+
+    @Test
+    public void testTransformToSameProjectionKeepsCoordinates() {
+        OffHeapCoordinateBuffer buffer = new OffHeapCoordinateBuffer(Grid.SWEREF99, sweref, 16);
+        buffer.add(6580822.0004, 674032.0004);
+        buffer.transformTo(Grid.SWEREF99, sweref);
+        assertEquals(6580822.0004, buffer.getLatitude(0), 0.0);
+        assertEquals(674032.0004, buffer.getLongitude(0), 0.0);
+    }
+
+    @Test
+    public void testTransformBetweenBuffers() {
+        DoubleBuffer source = ByteBuffer.allocateDirect(8 * 4).order(ByteOrder.LITTLE_ENDIAN).asDoubleBuffer();
+        source.put(new double[]{59.98201, 17.83503, 65.58, 22.15});
+        source.flip();
+        DoubleBuffer target = DoubleBuffer.allocate(6);
+        target.position(2);
+        OffHeapCoordinateBuffer.transform(source, null, target, sweref);
+        assertEquals(0, source.position());
+        assertEquals(2, target.position());
+        double[] x_y = sweref.geodetic_to_grid(65.58, 22.15);
+        assertEquals(x_y[0], target.get(4), 0.0);
+        assertEquals(x_y[1], target.get(5), 0.0);
+    }
+
+    private static void assertSameCoordinates(CoordinateBuffer expected, OffHeapCoordinateBuffer actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.getLatitude(i), actual.getLatitude(i), 0.0);
+            assertEquals(expected.getLongitude(i), actual.getLongitude(i), 0.0);
+        }
+    }
+}
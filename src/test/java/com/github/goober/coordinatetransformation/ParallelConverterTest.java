@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation;
+
+import com.github.goober.coordinatetransformation.positions.RT90Position;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.fail;
+
+public class ParallelConverterTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(4);
+    private final GaussKreugerProjection projection =
+            ProjectionRegistry.get(RT90Position.RT90Projection.rt90_2_5_gon_v);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testParallelResultIsBitIdenticalToSequential() throws InterruptedException {
+        int length = 10007;
+        Random random = new Random(42);
+        double[] latitudes = new double[length];
+        double[] longitudes = new double[length];
+        for (int i = 0; i < length; i++) {
+            latitudes[i] = 55.0 + random.nextDouble() * 14.0;
+            longitudes[i] = 11.0 + random.nextDouble() * 13.0;
+        }
+        ParallelConverter converter = new ParallelConverter(executor, 3, 100);
+
+        double[] x = new double[length];
+        double[] y = new double[length];
+        double[] expectedX = new double[length];
+        double[] expectedY = new double[length];
+        converter.geodetic_to_grid(projection, latitudes, longitudes, 0, x, y, 0, length);
+        projection.geodetic_to_grid(latitudes, longitudes, 0, expectedX, expectedY, 0, length);
+        assertArrayEquals(expectedX, x, 0.0);
+        assertArrayEquals(expectedY, y, 0.0);
+
+        double[] lat_lon = new double[2 * length];
+        double[] expected = new double[2 * length];
+        for (int i = 0; i < length; i++) {
+            lat_lon[2 * i] = x[i];
+            lat_lon[2 * i + 1] = y[i];
+        }
+        projection.grid_to_geodetic(lat_lon, 0, expected, 0, length);
+        converter.grid_to_geodetic(projection, lat_lon, 0, lat_lon, 0, length);
+        assertArrayEquals(expected, lat_lon, 0.0);
+    }
+
+    @Test
+    public void testInterruptedConversionDoesNotWriteAfterReturning() throws InterruptedException {
+        int length = 2000000;
+        double[] latitudes = new double[length];
+        double[] longitudes = new double[length];
+        for (int i = 0; i < length; i++) {
+            latitudes[i] = 55.0 + (i % 1400) * 0.01;
+            longitudes[i] = 11.0 + (i % 1300) * 0.01;
+        }
+        double[] x = new double[length];
+        double[] y = new double[length];
+        ParallelConverter converter = new ParallelConverter(executor, 4, 250000);
+        Thread.currentThread().interrupt();
+        try {
+            converter.geodetic_to_grid(projection, latitudes, longitudes, 0, x, y, 0, length);
+            fail();
+        } catch (InterruptedException e) {
+            // expected
+        }
+        double[] returned = x.clone();
+        Thread.sleep(200);
+        assertArrayEquals(returned, x, 0.0);
+    }
+
+    @Test
+    public void testOverlappingInPlaceConversionMatchesSequential() throws InterruptedException {
+        int count = 10007;
+        double[] lat_lon = new double[2 * count + 2];
+        for (int i = 2; i < lat_lon.length; i += 2) {
+            lat_lon[i] = 55.0 + (i % 1400) * 0.01;
+            lat_lon[i + 1] = 11.0 + (i % 1300) * 0.01;
+        }
+        double[] expected = lat_lon.clone();
+        projection.geodetic_to_grid(expected, 2, expected, 0, count);
+        new ParallelConverter(executor, 3, 100).geodetic_to_grid(projection, lat_lon, 2, lat_lon, 0, count);
+        assertArrayEquals(expected, lat_lon, 0.0);
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class PolynomialKernelTest {
+
+    private static final String[] NAMES = {"rt90_7.5_gon_v", "rt90_5.0_gon_o", "bessel_rt90_2.5_gon_v",
+            "sweref_99_tm", "sweref_99_1200", "sweref_99_2315"};
+
+    @Test
+    public void testMatchesScalarPath() {
+        Random random = new Random(42);
+        // Not a multiple of the block size, and partly outside the polynomial domain
+        int length = 3 * PolynomialKernel.BLOCK_SIZE + 17;
+        for (String name : NAMES) {
+            GaussKreugerProjection projection = ProjectionRegistry.get(name);
+            GaussKreugerProjection unrounded = projection.withPrecision(GridPrecision.UNROUNDED);
+            double[] latitudes = new double[length];
+            double[] longitudes = new double[length];
+            for (int i = 0; i < length; i++) {
+                latitudes[i] = -10.0 + 100.0 * random.nextDouble();
+                longitudes[i] = projection.getCentralMeridian() - 30.0 + 60.0 * random.nextDouble();
+            }
+            latitudes[5] = Double.NaN;
+
+            double[] x = new double[length];
+            double[] y = new double[length];
+            double[] expectedX = new double[length];
+            double[] expectedY = new double[length];
+            PolynomialKernel.geodetic_to_grid(unrounded, latitudes, longitudes, 0, x, y, 0, length);
+            unrounded.geodetic_to_grid(latitudes, longitudes, 0, expectedX, expectedY, 0, length);
+            for (int i = 0; i < length; i++) {
+                assertEquals(name, expectedX[i], x[i], 1e-6);
+                assertEquals(name, expectedY[i], y[i], 1e-6);
+            }
+
+            PolynomialKernel.geodetic_to_grid(projection, latitudes, longitudes, 0, x, y, 0, length);
+            projection.geodetic_to_grid(latitudes, longitudes, 0, expectedX, expectedY, 0, length);
+            for (int i = 0; i < length; i++) {
+                assertEquals(name, expectedX[i], x[i], 0.001);
+                assertEquals(name, expectedY[i], y[i], 0.001);
+            }
+
+            double[] lat = new double[length];
+            double[] lon = new double[length];
+            double[] expectedLat = new double[length];
+            double[] expectedLon = new double[length];
+            PolynomialKernel.grid_to_geodetic(projection, expectedX, expectedY, 0, lat, lon, 0, length);
+            projection.grid_to_geodetic(expectedX, expectedY, 0, expectedLat, expectedLon, 0, length);
+            for (int i = 0; i < length; i++) {
+                assertEquals(name, expectedLat[i], lat[i], 1e-10);
+                assertEquals(name, expectedLon[i], lon[i], 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void testOffsetsAndInPlaceConversion() {
+        GaussKreugerProjection projection = ProjectionRegistry.get("sweref_99_tm");
+        double[] latitudes = {0.0, 55.3, 57.7, 59.98201, 62.176, 65.58, 68.4};
+        double[] longitudes = {0.0, 13.0, 11.95, 17.83503, 15.903, 22.15, 18.1};
+        double[] x = latitudes.clone();
+        double[] y = longitudes.clone();
+        PolynomialKernel.geodetic_to_grid(projection, x, y, 1, x, y, 1, 6);
+        assertEquals(0.0, x[0], 0.0);
+        for (int i = 1; i < latitudes.length; i++) {
+            double[] x_y = projection.geodetic_to_grid(latitudes[i], longitudes[i]);
+            assertEquals(x_y[0], x[i], 0.001);
+            assertEquals(x_y[1], y[i], 0.001);
+        }
+    }
+
+    @Test(expected = ArrayIndexOutOfBoundsException.class)
+    public void testRangeIsChecked() {
+        PolynomialKernel.grid_to_geodetic(ProjectionRegistry.get("sweref_99_tm"),
+                new double[4], new double[4], 1, new double[4], new double[4], 0, 4);
+    }
+}
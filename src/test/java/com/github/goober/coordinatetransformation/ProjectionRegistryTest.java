@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation;
+
+import com.github.goober.coordinatetransformation.exception.UnknownProjectionException;
+import com.github.goober.coordinatetransformation.positions.RT90Position;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class ProjectionRegistryTest {
+
+    @Test
+    public void testEnumAndNameLookupShareInstances() {
+        assertSame(ProjectionRegistry.get("rt90_2.5_gon_v"),
+                ProjectionRegistry.get(RT90Position.RT90Projection.rt90_2_5_gon_v));
+        assertSame(ProjectionRegistry.get("sweref_99_1845"),
+                ProjectionRegistry.get(SWEREF99Position.SWEREFProjection.sweref_99_18_45));
+        assertSame(ProjectionRegistry.get("bessel_rt90_0.0_gon_v"),
+                ProjectionRegistry.get(RT90Position.RT90BesselProjection.bessel_rt90_0_0_gon_v));
+    }
+
+    @Test
+    public void testAllProjectionsRegistered() {
+        for (RT90Position.RT90Projection projection : RT90Position.RT90Projection.values()) {
+            ProjectionRegistry.get(projection);
+        }
+        for (RT90Position.RT90BesselProjection projection : RT90Position.RT90BesselProjection.values()) {
+            assertEquals(6377397.155, ProjectionRegistry.get(projection).getAxis(), 0.0);
+        }
+        for (SWEREF99Position.SWEREFProjection projection : SWEREF99Position.SWEREFProjection.values()) {
+            ProjectionRegistry.get(projection);
+        }
+    }
+
+    @Test
+    public void testSwedishParamsUsesRegistry() {
+        GaussKreuger gkProjection = new GaussKreuger();
+        gkProjection.swedish_params("sweref_99_tm");
+        assertSame(ProjectionRegistry.get(SWEREF99Position.SWEREFProjection.sweref_99_tm), gkProjection.getProjection());
+    }
+
+    @Test(expected = UnknownProjectionException.class)
+    public void testUnknownProjectionName() {
+        new GaussKreuger().swedish_params("rt90_10.0_gon_v");
+    }
+}
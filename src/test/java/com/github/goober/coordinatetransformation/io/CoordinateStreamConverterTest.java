@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.io;
+
+import com.github.goober.coordinatetransformation.exception.FormatException;
+import com.github.goober.coordinatetransformation.positions.RT90Position.RT90Projection;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position.SWEREFProjection;
+import com.github.goober.coordinatetransformation.positions.WGS84Position.WGS84Format;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+
+public class CoordinateStreamConverterTest {
+
+    @Test
+    public void testDmsToSweref() throws IOException, FormatException {
+        CoordinateStreamConverter converter = new CoordinateStreamConverter(
+                TextCoordinateFormat.wgs84(WGS84Format.DegreesMinutesSeconds),
+                TextCoordinateFormat.sweref99(SWEREFProjection.sweref_99_tm),
+                ';', 1, 2, 1);
+        StringWriter out = new StringWriter();
+        long rows = converter.convert(new StringReader(
+                "id;lat;lon;comment\n" +
+                "1;N 59º 58' 55.23\";E 017º 50' 06.12\";Uppsala\n" +
+                "\n"), out);
+
+        // Conversion values from Lantmateriet.se
+        assertEquals(1, rows);
+        assertEquals("id;lat;lon;comment\n1;6652797.165;658185.201;Uppsala\n\n", out.toString());
+    }
+
+    @Test
+    public void testRT90ToWGS84() throws IOException, FormatException {
+        CoordinateStreamConverter converter = new CoordinateStreamConverter(
+                TextCoordinateFormat.rt90(RT90Projection.rt90_2_5_gon_v),
+                TextCoordinateFormat.wgs84(WGS84Format.DegreesMinutesSeconds));
+        StringWriter out = new StringWriter();
+        converter.convert(new StringReader("6583052;1627548"), out);
+
+        // String values from Lantmateriet.se
+        assertEquals("N 59º 20' 56.09287\";E 18º 2' 50.34806\"", out.toString());
+    }
+
+    @Test
+    public void testLineTerminatorsAreKept() throws IOException, FormatException {
+        CoordinateStreamConverter converter = new CoordinateStreamConverter(
+                TextCoordinateFormat.sweref99(SWEREFProjection.sweref_99_tm),
+                TextCoordinateFormat.sweref99(SWEREFProjection.sweref_99_tm),
+                ';', 0, 1, 1);
+        String text = "x;y\r\n6652797.165;658185.201\r\n\r\n6580822.000;674032.000\r6580822.000;674032.000\n"
+                + "6580822.000;674032.000";
+        StringWriter out = new StringWriter();
+        assertEquals(4, converter.convert(new StringReader(text), out));
+        assertEquals(text, out.toString());
+    }
+
+    @Test(expected = FormatException.class)
+    public void testInvalidRow() throws IOException, FormatException {
+        CoordinateStreamConverter converter = new CoordinateStreamConverter(
+                TextCoordinateFormat.rt90(RT90Projection.rt90_2_5_gon_v),
+                TextCoordinateFormat.sweref99(SWEREFProjection.sweref_99_tm));
+        converter.convert(new StringReader("6583052;x"), new StringWriter());
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.io;
+
+import com.github.goober.coordinatetransformation.GaussKreugerProjection;
+import com.github.goober.coordinatetransformation.Position.Grid;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
+import com.github.goober.coordinatetransformation.exception.FormatException;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position.SWEREFProjection;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class MappedCoordinateFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testTransformWGS84ToSweref() throws IOException, FormatException {
+        GaussKreugerProjection sweref = ProjectionRegistry.get(SWEREFProjection.sweref_99_tm);
+        File wgs84File = folder.newFile("wgs84.bin");
+        File swerefFile = folder.newFile("sweref.bin");
+        int size = 1000;
+
+        MappedCoordinateFile wgs84 = MappedCoordinateFile.create(wgs84File, Grid.WGS84, null, size);
+        for (int i = 0; i < size; i++) {
+            wgs84.set(i, 55.5 + i * 0.01, 12.0 + i * 0.01);
+        }
+        wgs84.close();
+
+        wgs84 = MappedCoordinateFile.open(wgs84File, false);
+        MappedCoordinateFile target = MappedCoordinateFile.create(swerefFile, Grid.SWEREF99, sweref, size);
+        wgs84.transformTo(target);
+        target.close();
+
+        MappedCoordinateFile result = MappedCoordinateFile.open(swerefFile, false);
+        assertEquals(Grid.SWEREF99, result.getGrid());
+        assertSame(sweref, result.getProjection());
+        assertEquals(size, result.size());
+        for (int i = 0; i < size; i++) {
+            double[] x_y = sweref.geodetic_to_grid(wgs84.getLatitude(i), wgs84.getLongitude(i));
+            assertEquals(x_y[0], result.getLatitude(i), 0.0);
+            assertEquals(x_y[1], result.getLongitude(i), 0.0);
+        }
+        result.close();
+        wgs84.close();
+    }
+
+    @Test(expected = FormatException.class)
+    public void testInvalidHeader() throws IOException, FormatException {
+        File file = folder.newFile("invalid.bin");
+        FileOutputStream out = new FileOutputStream(file);
+        out.write(new byte[MappedCoordinateFile.HEADER_SIZE]);
+        out.close();
+        MappedCoordinateFile.open(file, false);
+    }
+
+    @Test(expected = FormatException.class)
+    public void testOverflowingSize() throws IOException, FormatException {
+        File file = folder.newFile("overflow.bin");
+        MappedCoordinateFile.create(file, Grid.WGS84, null, 10).close();
+        RandomAccessFile raw = new RandomAccessFile(file, "rw");
+        raw.seek(8);
+        // Little endian Long.MAX_VALUE / 8, which overflows when multiplied by the coordinate size
+        raw.write(new byte[] { -1, -1, -1, -1, -1, -1, -1, 0x0f });
+        raw.close();
+        MappedCoordinateFile.open(file, false);
+    }
+}
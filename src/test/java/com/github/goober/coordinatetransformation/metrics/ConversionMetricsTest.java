@@ -0,0 +1,194 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.metrics;
+
+import com.github.goober.coordinatetransformation.GaussKreugerProjection;
+import com.github.goober.coordinatetransformation.GridPrecision;
+import com.github.goober.coordinatetransformation.InterpolatedProjection;
+import com.github.goober.coordinatetransformation.PolynomialKernel;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
+import com.github.goober.coordinatetransformation.exception.FormatException;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position;
+import com.github.goober.coordinatetransformation.positions.WGS84Parser;
+import com.github.goober.coordinatetransformation.positions.WGS84Position;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConversionMetricsTest {
+
+    private final GaussKreugerProjection sweref = ProjectionRegistry.get(SWEREF99Position.SWEREFProjection.sweref_99_tm);
+
+    @After
+    public void tearDown() {
+        ConversionMetrics.uninstall();
+    }
+
+    @Test
+    public void testNothingIsRecordedWhenTurnedOff() {
+        ConversionMetrics metrics = new ConversionMetrics();
+        sweref.geodetic_to_grid(59.3, 18.0);
+        assertNull(ConversionMetrics.current());
+        assertTrue(metrics.getConversionCalls().isEmpty());
+    }
+
+    @Test
+    public void testConversionsAreCountedPerProjectionAndOperation() {
+        ConversionMetrics metrics = new ConversionMetrics();
+        ConversionMetrics.install(metrics);
+        sweref.geodetic_to_grid(59.3, 18.0);
+        sweref.geodetic_to_grid(new double[]{59.3, 18.0, 60.0, 15.0}, 0, new double[4], 0, 2);
+        sweref.grid_to_geodetic(6575000.0, 674000.0);
+
+        assertEquals(Long.valueOf(2), metrics.getConversionCalls().get("sweref_99_tm/GeodeticToGrid"));
+        assertEquals(Long.valueOf(3), metrics.getConversionPoints().get("sweref_99_tm/GeodeticToGrid"));
+        assertEquals(Long.valueOf(1), metrics.getConversionCalls().get("sweref_99_tm/GridToGeodetic"));
+        assertNull(metrics.getConversionCalls().get("sweref_99_tm/GridToGrid"));
+    }
+
+    @Test
+    public void testKernelAndInterpolatedConversionsAreCounted() {
+        ConversionMetrics metrics = new ConversionMetrics();
+        ConversionMetrics.install(metrics);
+        double[] a = new double[16];
+        double[] b = new double[16];
+        for (int i = 0; i < a.length; i++) {
+            a[i] = 59.0 + i * 0.1;
+            b[i] = 18.0;
+        }
+        PolynomialKernel.geodetic_to_grid(sweref, a, b, 0, a, b, 0, a.length);
+        PolynomialKernel.grid_to_geodetic(sweref, a, b, 0, a, b, 0, a.length);
+        // Building the node table of a new instance is not counted
+        InterpolatedProjection interpolated = new InterpolatedProjection(sweref);
+        interpolated.geodetic_to_grid(59.3, 18.0);
+        interpolated.geodetic_to_grid(new double[]{59.3, 18.0, 40.0, 15.0}, 0, new double[4], 0, 2);
+
+        assertEquals(Long.valueOf(3), metrics.getConversionCalls().get("sweref_99_tm/GeodeticToGrid"));
+        assertEquals(Long.valueOf(19), metrics.getConversionPoints().get("sweref_99_tm/GeodeticToGrid"));
+        assertEquals(Long.valueOf(1), metrics.getConversionCalls().get("sweref_99_tm/GridToGeodetic"));
+        assertEquals(Long.valueOf(16), metrics.getConversionPoints().get("sweref_99_tm/GridToGeodetic"));
+    }
+
+    @Test
+    public void testDerivedProjectionsAreReportedUnderTheRegisteredName() {
+        ConversionMetrics metrics = new ConversionMetrics();
+        ConversionMetrics.install(metrics);
+        sweref.geodetic_to_grid(59.3, 18.0);
+        sweref.withSeriesEvaluation(GaussKreugerProjection.SeriesEvaluation.Clenshaw).geodetic_to_grid(59.3, 18.0);
+
+        assertEquals(Long.valueOf(2), metrics.getConversionCalls().get("sweref_99_tm/GeodeticToGrid"));
+    }
+
+    @Test
+    public void testManyProjectionsKeepMetricsBounded() {
+        ConversionMetrics metrics = new ConversionMetrics();
+        ConversionMetrics.install(metrics);
+        for (int i = 0; i < 200; i++) {
+            sweref.withPrecision(GridPrecision.UNROUNDED).geodetic_to_grid(59.3, 18.0);
+            new GaussKreugerProjection(6378137.0, 1.0 / 298.257222101, 15.005 + i * 0.01, 0.9996, 0.0, 500000.0)
+                    .geodetic_to_grid(59.3, 18.0);
+        }
+
+        Map<String, Long> calls = metrics.getConversionCalls();
+        assertEquals(2, calls.size());
+        assertEquals(Long.valueOf(200), calls.get("sweref_99_tm/GeodeticToGrid"));
+        assertEquals(Long.valueOf(200), calls.get(ConversionMetrics.OTHER + "/GeodeticToGrid"));
+    }
+
+    @Test
+    public void testListenerReceivesHistograms() {
+        ConversionMetrics metrics = new ConversionMetrics();
+        ConversionMetrics.install(metrics);
+        for (int i = 0; i < 100; i++) {
+            sweref.grid_to_grid(6575000.0, 674000.0, sweref);
+        }
+        final long[] received = new long[3];
+        metrics.publish(new MetricsListener() {
+            public void conversion(String projection, ConversionMetrics.Operation operation, long calls,
+                                   long points, long totalNanos, long[] latencyHistogram) {
+                assertEquals("sweref_99_tm", projection);
+                assertEquals(ConversionMetrics.Operation.GridToGrid, operation);
+                received[0] = calls;
+                for (long count : latencyHistogram) {
+                    received[1] += count;
+                }
+            }
+
+            public void parse(long successes, long failures, long totalNanos, long[] latencyHistogram) {
+                received[2] = successes + failures;
+            }
+        });
+        assertEquals(100, received[0]);
+        assertEquals(100, received[1]);
+        assertEquals(0, received[2]);
+        assertTrue(metrics.getConversionNanos99thPercentile().get("sweref_99_tm/GridToGrid") > 0);
+    }
+
+    @Test
+    public void testParsesAreCounted() throws Exception {
+        ConversionMetrics metrics = new ConversionMetrics();
+        ConversionMetrics.install(metrics);
+        WGS84Parser parser = new WGS84Parser();
+        parser.parseLatitude("N 59º 58' 55.23\"", 0, 16, WGS84Position.WGS84Format.DegreesMinutesSeconds);
+        new WGS84Position("59.3 18.0", WGS84Position.WGS84Format.Degrees);
+        try {
+            parser.parseLatitude("x", 0, 1, WGS84Position.WGS84Format.Degrees);
+            fail();
+        } catch (FormatException e) {
+            // expected
+        }
+        assertEquals(3, metrics.getParseCount());
+        assertEquals(1, metrics.getParseFailureCount());
+    }
+
+    @Test
+    public void testHistogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 99; i++) {
+            histogram.record(100);
+        }
+        histogram.record(5000);
+        assertEquals(128, LatencyHistogram.percentile(histogram.snapshot(), 0.5));
+        assertEquals(128, LatencyHistogram.percentile(histogram.snapshot(), 0.99));
+        assertEquals(8192, LatencyHistogram.percentile(histogram.snapshot(), 1.0));
+        assertEquals(0, LatencyHistogram.percentile(new long[LatencyHistogram.BUCKETS], 0.99));
+    }
+
+    @Test
+    public void testRegistersWithPlatformMBeanServer() throws Exception {
+        ConversionMetrics metrics = new ConversionMetrics();
+        ObjectName name = metrics.registerMBean();
+        try {
+            ConversionMetrics.install(metrics);
+            sweref.geodetic_to_grid(59.3, 18.0);
+            Object calls = ManagementFactory.getPlatformMBeanServer().getAttribute(name, "ConversionCalls");
+            assertTrue(calls instanceof javax.management.openmbean.TabularData);
+            assertEquals(1, ((javax.management.openmbean.TabularData) calls).size());
+            assertEquals(0L, ManagementFactory.getPlatformMBeanServer().getAttribute(name, "ParseCount"));
+        } finally {
+            ConversionMetrics.unregisterMBean();
+        }
+    }
+}
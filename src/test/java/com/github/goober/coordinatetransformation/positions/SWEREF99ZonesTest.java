@@ -0,0 +1,79 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.positions;
+
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position.SWEREFProjection;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class SWEREF99ZonesTest {
+
+    @Test
+    public void testSelectZoneForMunicipalities() {
+        assertSame(SWEREFProjection.sweref_99_18_00, SWEREF99Zones.selectZone(59.3293, 18.0686)); // Stockholm
+        assertSame(SWEREFProjection.sweref_99_12_00, SWEREF99Zones.selectZone(57.7089, 11.9746)); // Göteborg
+        assertSame(SWEREFProjection.sweref_99_13_30, SWEREF99Zones.selectZone(55.6050, 13.0038)); // Malmö
+        assertSame(SWEREFProjection.sweref_99_14_15, SWEREF99Zones.selectZone(63.1792, 14.6357)); // Östersund
+        assertSame(SWEREFProjection.sweref_99_20_15, SWEREF99Zones.selectZone(63.8258, 20.2630)); // Umeå
+        assertSame(SWEREFProjection.sweref_99_21_45, SWEREF99Zones.selectZone(65.5848, 22.1547)); // Luleå
+        // Outside Sweden the outermost zones are used
+        assertSame(SWEREFProjection.sweref_99_12_00, SWEREF99Zones.selectZone(55.0, 5.0));
+        assertSame(SWEREFProjection.sweref_99_23_15, SWEREF99Zones.selectZone(68.0, 30.0));
+    }
+
+    @Test
+    public void testToLocalZone() {
+        WGS84Position position = new WGS84Position(59.3293, 18.0686);
+        SWEREF99Position local = SWEREF99Zones.toLocalZone(position);
+        SWEREF99Position expected = new SWEREF99Position(position, SWEREFProjection.sweref_99_18_00);
+        assertSame(SWEREFProjection.sweref_99_18_00, local.getProjection());
+        assertEquals(expected.getLatitude(), local.getLatitude(), 0.0);
+        assertEquals(expected.getLongitude(), local.getLongitude(), 0.0);
+
+        CoordinateHolder holder = new CoordinateHolder();
+        assertSame(SWEREFProjection.sweref_99_18_00, SWEREF99Zones.toLocalZone(59.3293, 18.0686, holder));
+        assertEquals(expected.getLatitude(), holder.getLatitude(), 0.0);
+    }
+
+    @Test
+    public void testBulkConversionMatchesSinglePoint() {
+        Random random = new Random(42);
+        int length = SWEREF99Zones.CHUNK_SIZE + 123;
+        double[] latitudes = new double[length];
+        double[] longitudes = new double[length];
+        for (int i = 0; i < length; i++) {
+            latitudes[i] = 55.0 + 14.0 * random.nextDouble();
+            longitudes[i] = 11.0 + 13.0 * random.nextDouble();
+        }
+        double[] x = latitudes.clone();
+        double[] y = longitudes.clone();
+        SWEREFProjection[] zones = new SWEREFProjection[length];
+        SWEREF99Zones.toLocalZones(x, y, 0, x, y, zones, 0, length);
+
+        CoordinateHolder holder = new CoordinateHolder();
+        for (int i = 0; i < length; i++) {
+            assertSame(SWEREF99Zones.toLocalZone(latitudes[i], longitudes[i], holder), zones[i]);
+            assertEquals(holder.getLatitude(), x[i], 0.0);
+            assertEquals(holder.getLongitude(), y[i], 0.0);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.positions;
+
+import com.github.goober.coordinatetransformation.FixedPointFormatter;
+import com.github.goober.coordinatetransformation.positions.WGS84Position.WGS84Format;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class WGS84FormatterTest {
+
+    @Test
+    public void testFormatMatchesStringFormat() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100000; i++) {
+            double value = (random.nextDouble() - 0.5) * 360.0;
+            assertEquals(String.format(Locale.US, "%.10f", value),
+                    WGS84Formatter.appendLatitude(new StringBuilder(), value, WGS84Format.Degrees).toString());
+            assertEquals(legacyDm(value, "N", "S"),
+                    WGS84Formatter.appendLatitude(new StringBuilder(), value, WGS84Format.DegreesMinutes).toString());
+            assertEquals(legacyDms(value, "E", "W"),
+                    WGS84Formatter.appendLongitude(new StringBuilder(), value, WGS84Format.DegreesMinutesSeconds).toString());
+
+            double grid = random.nextDouble() * 8000000.0;
+            assertEquals(String.format(Locale.US, "%f", grid),
+                    FixedPointFormatter.append(new StringBuilder(), grid, 6).toString());
+        }
+    }
+
+    @Test
+    public void testSpecialValues() {
+        double[] values = {0.0, -0.0, -1e-12, 0.5, 2.5, -0.5, 59.5, Double.NaN, Double.POSITIVE_INFINITY, 1e20};
+        for (double value : values) {
+            for (int decimals = 0; decimals <= 10; decimals++) {
+                assertEquals(String.format(Locale.US, "%." + decimals + "f", value),
+                        FixedPointFormatter.append(new StringBuilder(), value, decimals).toString());
+            }
+        }
+        assertEquals("", WGS84Formatter.appendLatitude(new StringBuilder(), Double.MIN_VALUE,
+                WGS84Format.DegreesMinutesSeconds).toString());
+    }
+
+    @Test
+    public void testAppendable() throws IOException {
+        StringWriter out = new StringWriter();
+        WGS84Formatter formatter = new WGS84Formatter();
+        formatter.appendLatitude(out, 59.98200833333333, WGS84Format.DegreesMinutesSeconds);
+        out.append(' ');
+        formatter.appendLongitude(out, -17.8350333333333, WGS84Format.DegreesMinutesSeconds);
+        assertEquals("N 59º 58' 55.23000\" W 17º 50' 6.12000\"", out.toString());
+    }
+
+    private static String legacyDm(double value, String positiveValue, String negativeValue) {
+        double degrees = Math.floor(Math.abs(value));
+        double minutes = (Math.abs(value) - degrees) * 60;
+        return String.format(Locale.US, "%s %.0fº %.0f'", value >= 0 ? positiveValue : negativeValue,
+                degrees, Math.floor(minutes * 10000) / 10000);
+    }
+
+    private static String legacyDms(double value, String positiveValue, String negativeValue) {
+        double degrees = Math.floor(Math.abs(value));
+        double minutes = Math.floor((Math.abs(value) - degrees) * 60);
+        double seconds = (Math.abs(value) - degrees - minutes / 60) * 3600;
+        return String.format(Locale.US, "%s %.0fº %.0f' %.5f\"", value >= 0 ? positiveValue : negativeValue,
+                degrees, minutes, Math.round(seconds * 100000) / 100000.0);
+    }
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.positions;
+
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.exception.FormatException;
+import com.github.goober.coordinatetransformation.positions.WGS84Position.WGS84Format;
+
+import org.junit.Test;
+
+import java.io.UnsupportedEncodingException;
+import java.text.ParseException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+public class WGS84ParserTest {
+
+    private final WGS84Parser parser = new WGS84Parser();
+
+    @Test
+    public void testParseMatchesLegacyParser() throws FormatException {
+        String[] dms = {"N 59º 58' 55.23\"", "S 12º 0' 1.5\"", "N 62º 10' 33.60\""};
+        for (String value : dms) {
+            WGS84Position legacy = new WGS84Position();
+            legacy.setLatitudeFromString(value, WGS84Format.DegreesMinutesSeconds);
+            assertEquals(legacy.getLatitude(),
+                    parser.parseLatitude(value, 0, value.length(), WGS84Format.DegreesMinutesSeconds), 1e-12);
+        }
+        String dm = "E 015º 54.180'";
+        WGS84Position legacy = new WGS84Position();
+        legacy.setLongitudeFromString(dm, WGS84Format.DegreesMinutes);
+        assertEquals(legacy.getLongitude(),
+                parser.parseLongitude(dm, 0, dm.length(), WGS84Format.DegreesMinutes), 1e-12);
+    }
+
+    @Test
+    public void testParseRanges() throws FormatException, UnsupportedEncodingException {
+        String text = "id;W 017° 50' 06,12\";x";
+        double expected = -(17.0 + 50.0 / 60.0 + 6.12 / 3600.0);
+        assertEquals(expected, parser.parseLongitude(text, 3, 20, WGS84Format.DegreesMinutesSeconds), 1e-12);
+        assertEquals(20, parser.getIndex());
+        assertEquals(expected, parser.parseLongitude(text.toCharArray(), 3, 20, WGS84Format.DegreesMinutesSeconds), 1e-12);
+        byte[] utf8 = text.getBytes("UTF-8");
+        assertEquals(expected, parser.parseLongitude(utf8, 3, 21, WGS84Format.DegreesMinutesSeconds), 1e-12);
+        byte[] latin1 = text.getBytes("ISO-8859-1");
+        assertEquals(expected, parser.parseLongitude(latin1, 3, 20, WGS84Format.DegreesMinutesSeconds), 1e-12);
+    }
+
+    @Test
+    public void testParsePosition() throws FormatException {
+        CoordinateHolder holder = new CoordinateHolder();
+        String degrees = " 62,176  -15.903 ";
+        parser.parse(degrees, 0, degrees.length(), WGS84Format.Degrees, holder);
+        assertEquals(62.176, holder.getLatitude(), 0.0);
+        assertEquals(-15.903, holder.getLongitude(), 0.0);
+
+        String dm = "N 62º 10.560' E 015º 54.180'";
+        parser.parse(dm, 0, dm.length(), WGS84Format.DegreesMinutes, holder);
+        assertEquals(62.176, holder.getLatitude(), 1e-12);
+        assertEquals(15.903, holder.getLongitude(), 1e-12);
+    }
+
+    @Test
+    public void testInvalidValues() {
+        String[] invalid = {"", "N", "N 59º", "N 59º 60' 1\"", "N 91º 0' 0\"", "N 59 58' 55.23\"", "N 59º 58' 55.23\" x"};
+        for (String value : invalid) {
+            try {
+                parser.parseLatitude(value, 0, value.length(), WGS84Format.DegreesMinutesSeconds);
+                fail("Expected FormatException for " + value);
+            } catch (FormatException expected) {
+            }
+        }
+    }
+
+    @Test(expected = ParseException.class)
+    public void testPositionConstructorReportsErrors() throws ParseException {
+        new WGS84Position("N 95º 10.560' E 015º 54.180'", WGS84Format.DegreesMinutes);
+    }
+}
@@ -0,0 +1,227 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.server;
+
+import com.github.goober.coordinatetransformation.GaussKreugerProjection;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ConversionServerTest {
+
+    private final GaussKreugerProjection sweref = ProjectionRegistry.get("sweref_99_tm");
+    private final GaussKreugerProjection rt90 = ProjectionRegistry.get("rt90_2.5_gon_v");
+    private ConversionServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new ConversionServer(new InetSocketAddress(InetAddress.getByName(null), 0));
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void testPipelinedRequestsAreAnsweredInOrder() throws IOException {
+        ConversionClient client = new ConversionClient(server.getAddress());
+        try {
+            double[] lats = new double[1000];
+            double[] lons = new double[1000];
+            for (int i = 0; i < lats.length; i++) {
+                lats[i] = 55.5 + i * 0.013;
+                lons[i] = 11.5 + i * 0.012;
+            }
+            client.sendGeodeticToGrid("sweref_99_tm", lats, lons, 0, 1000);
+            client.sendGeodeticToGrid("sweref_99_tm", lats, lons, 10, 3);
+            client.sendGeodeticToGrid("rt90_2.5_gon_v", lats, lons, 0, 0);
+            assertEquals(3, client.getPendingCount());
+
+            double[] x = new double[1000];
+            double[] y = new double[1000];
+            assertEquals(1000, client.receive(x, y, 0));
+            for (int i = 0; i < lats.length; i++) {
+                double[] expected = sweref.geodetic_to_grid(lats[i], lons[i]);
+                assertEquals(expected[0], x[i], 0.0);
+                assertEquals(expected[1], y[i], 0.0);
+            }
+            assertEquals(3, client.receive(x, y, 0));
+            assertEquals(sweref.geodetic_to_grid(lats[10], lons[10])[0], x[0], 0.0);
+            assertEquals(0, client.receive(x, y, 0));
+
+            client.sendGridToGrid("sweref_99_tm", "rt90_2.5_gon_v", x, y, 0, 1);
+            client.sendGridToGeodetic("sweref_99_tm", x, y, 0, 1);
+            double[] rt90X = new double[1];
+            double[] rt90Y = new double[1];
+            client.receive(rt90X, rt90Y, 0);
+            assertEquals(sweref.grid_to_grid(x[0], y[0], rt90)[0], rt90X[0], 0.0);
+            double[] lat = new double[1];
+            double[] lon = new double[1];
+            client.receive(lat, lon, 0);
+            assertEquals(sweref.grid_to_geodetic(x[0], y[0])[0], lat[0], 0.0);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testUnknownProjectionIsAnErrorResponse() throws IOException {
+        ConversionClient client = new ConversionClient(server.getAddress());
+        try {
+            double[] a = {59.0};
+            double[] b = {18.0};
+            client.sendGeodeticToGrid("no_such_projection", a, b, 0, 1);
+            client.sendGeodeticToGrid("sweref_99_tm", a, b, 0, 1);
+            try {
+                client.receive(a, b, 0);
+                fail();
+            } catch (IOException e) {
+                assertTrue(e.getMessage().contains("no_such_projection"));
+            }
+            assertEquals(1, client.receive(a, b, 0));
+            assertEquals(sweref.geodetic_to_grid(59.0, 18.0)[0], a[0], 0.0);
+        } finally {
+            client.close();
+        }
+    }
+
+    @Test
+    public void testMalformedFrameClosesConnection() throws IOException {
+        Socket socket = new Socket(server.getAddress().getAddress(), server.getAddress().getPort());
+        try {
+            OutputStream out = socket.getOutputStream();
+            out.write(new byte[]{0, 0, 0, 5, 0, 0, 0, 1, 9});
+            out.flush();
+            InputStream in = socket.getInputStream();
+            assertEquals(-1, in.read());
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testServesManyConnections() throws IOException {
+        List<ConversionClient> clients = new ArrayList<ConversionClient>();
+        try {
+            for (int i = 0; i < 50; i++) {
+                ConversionClient client = new ConversionClient(server.getAddress());
+                clients.add(client);
+                client.sendGeodeticToGrid("sweref_99_tm", new double[]{55.5 + i * 0.1}, new double[]{13.0}, 0, 1);
+                client.flush();
+            }
+            double[] x = new double[1];
+            double[] y = new double[1];
+            for (int i = 0; i < clients.size(); i++) {
+                clients.get(i).receive(x, y, 0);
+                assertEquals(sweref.geodetic_to_grid(55.5 + i * 0.1, 13.0)[0], x[0], 0.0);
+            }
+        } finally {
+            for (ConversionClient client : clients) {
+                client.close();
+            }
+        }
+    }
+
+    @Test
+    public void testHalfClosedClientReceivesAllResponses() throws IOException {
+        int count = 1000000;
+        Socket socket = new Socket(server.getAddress().getAddress(), server.getAddress().getPort());
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+            byte[] name = "sweref_99_tm".getBytes("US-ASCII");
+            out.writeInt(4 + 1 + 1 + name.length + 4 + 16 * count);
+            out.writeInt(7);
+            out.writeByte(ConversionProtocol.GEODETIC_TO_GRID);
+            out.writeByte(name.length);
+            out.write(name);
+            out.writeInt(count);
+            for (int i = 0; i < count; i++) {
+                out.writeDouble(55.5 + i * 1e-5);
+                out.writeDouble(13.0);
+            }
+            out.flush();
+            socket.shutdownOutput();
+
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream()));
+            assertEquals(4 + 1 + 4 + 16 * count, in.readInt());
+            assertEquals(7, in.readInt());
+            assertEquals(ConversionProtocol.OK, in.readByte());
+            assertEquals(count, in.readInt());
+            for (int i = 0; i < count; i++) {
+                double x = in.readDouble();
+                double y = in.readDouble();
+                if (i == count - 1) {
+                    double[] expected = sweref.geodetic_to_grid(55.5 + i * 1e-5, 13.0);
+                    assertEquals(expected[0], x, 0.0);
+                    assertEquals(expected[1], y, 0.0);
+                }
+            }
+            assertEquals(-1, in.read());
+        } finally {
+            socket.close();
+        }
+    }
+
+    @Test
+    public void testIncompleteFramesDoNotStopOtherClients() throws IOException {
+        List<Socket> stalled = new ArrayList<Socket>();
+        try {
+            for (int i = 0; i < 40; i++) {
+                Socket socket = new Socket(server.getAddress().getAddress(), server.getAddress().getPort());
+                stalled.add(socket);
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeInt(ConversionProtocol.MAX_FRAME_LENGTH);
+                out.write(new byte[100000]);
+                out.flush();
+            }
+            ConversionClient client = new ConversionClient(server.getAddress());
+            try {
+                double[] a = {59.0};
+                double[] b = {18.0};
+                client.sendGeodeticToGrid("sweref_99_tm", a, b, 0, 1);
+                assertEquals(1, client.receive(a, b, 0));
+                assertEquals(sweref.geodetic_to_grid(59.0, 18.0)[0], a[0], 0.0);
+            } finally {
+                client.close();
+            }
+        } finally {
+            for (Socket socket : stalled) {
+                socket.close();
+            }
+        }
+    }
+}
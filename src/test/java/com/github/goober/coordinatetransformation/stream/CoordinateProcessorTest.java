@@ -0,0 +1,263 @@
+/*
+ * Copyright (C) 2012 Goober <http://www.github.com/goober>
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.github.goober.coordinatetransformation.stream;
+
+import com.github.goober.coordinatetransformation.CoordinateHolder;
+import com.github.goober.coordinatetransformation.GaussKreugerProjection;
+import com.github.goober.coordinatetransformation.Position.Grid;
+import com.github.goober.coordinatetransformation.ProjectionRegistry;
+import com.github.goober.coordinatetransformation.positions.SWEREF99Position;
+import com.github.goober.coordinatetransformation.positions.WGS84Position;
+
+import org.junit.Test;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class CoordinateProcessorTest {
+
+    private static final CoordinateMapper<WGS84Position, SWEREF99Position> MAPPER =
+            new CoordinateMapper<WGS84Position, SWEREF99Position>() {
+                public void read(WGS84Position record, CoordinateHolder coordinates) {
+                    coordinates.set(record.getLatitude(), record.getLongitude());
+                }
+
+                public SWEREF99Position create(WGS84Position record, double lat, double lon) {
+                    return new SWEREF99Position(lat, lon);
+                }
+            };
+
+    private final GaussKreugerProjection sweref = ProjectionRegistry.get(SWEREF99Position.SWEREFProjection.sweref_99_tm);
+
+    @Test
+    public void testConvertsAllRecordsInOrder() {
+        List<WGS84Position> positions = positions(1000);
+        CoordinateProcessor<WGS84Position, SWEREF99Position> processor = processor(64);
+        TestPublisher publisher = new TestPublisher(positions);
+        publisher.subscribe(processor);
+        TestSubscriber subscriber = new TestSubscriber();
+        processor.subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        assertTrue(subscriber.completed);
+        assertNull(subscriber.error);
+        assertEquals(positions.size(), subscriber.received.size());
+        for (int i = 0; i < positions.size(); i++) {
+            SWEREF99Position expected = new SWEREF99Position(positions.get(i), SWEREF99Position.SWEREFProjection.sweref_99_tm);
+            assertEquals(expected.getLatitude(), subscriber.received.get(i).getLatitude(), 0.0);
+            assertEquals(expected.getLongitude(), subscriber.received.get(i).getLongitude(), 0.0);
+        }
+    }
+
+    @Test
+    public void testRespectsDemandInBothDirections() {
+        CoordinateProcessor<WGS84Position, SWEREF99Position> processor = processor(16);
+        TestPublisher publisher = new TestPublisher(positions(100));
+        publisher.subscribe(processor);
+        assertEquals(32, publisher.requested);
+
+        TestSubscriber subscriber = new TestSubscriber();
+        processor.subscribe(subscriber);
+        assertEquals(0, subscriber.received.size());
+        subscriber.subscription.request(5);
+        assertEquals(5, subscriber.received.size());
+        // One batch has been converted, making room for another from upstream.
+        assertEquals(48, publisher.requested);
+        subscriber.subscription.request(20);
+        assertEquals(25, subscriber.received.size());
+        assertEquals(64, publisher.requested);
+        assertFalse(subscriber.completed);
+
+        subscriber.subscription.request(75);
+        assertEquals(100, subscriber.received.size());
+        assertTrue(subscriber.completed);
+    }
+
+    @Test
+    public void testPublishesUpstreamErrorAfterReceivedRecords() {
+        CoordinateProcessor<WGS84Position, SWEREF99Position> processor = processor(16);
+        TestSubscriber subscriber = new TestSubscriber();
+        processor.subscribe(subscriber);
+        processor.onSubscribe(new TestPublisher(positions(0)).new TestSubscription());
+        processor.onNext(new WGS84Position(59.0, 18.0));
+        RuntimeException failure = new RuntimeException("upstream");
+        processor.onError(failure);
+        assertNull(subscriber.error);
+
+        subscriber.subscription.request(1);
+        assertEquals(1, subscriber.received.size());
+        assertEquals(failure, subscriber.error);
+    }
+
+    @Test
+    public void testMapperFailureCancelsUpstream() {
+        CoordinateProcessor<WGS84Position, SWEREF99Position> processor =
+                new CoordinateProcessor<WGS84Position, SWEREF99Position>(Grid.WGS84, null, Grid.SWEREF99, sweref,
+                        new CoordinateMapper<WGS84Position, SWEREF99Position>() {
+                            public void read(WGS84Position record, CoordinateHolder coordinates) {
+                                throw new IllegalStateException("unreadable");
+                            }
+
+                            public SWEREF99Position create(WGS84Position record, double lat, double lon) {
+                                return null;
+                            }
+                        });
+        TestPublisher publisher = new TestPublisher(positions(10));
+        publisher.subscribe(processor);
+        TestSubscriber subscriber = new TestSubscriber();
+        processor.subscribe(subscriber);
+        subscriber.subscription.request(10);
+
+        assertTrue(subscriber.error instanceof IllegalStateException);
+        assertTrue(publisher.cancelled);
+    }
+
+    @Test
+    public void testNonPositiveRequestIsAnError() {
+        CoordinateProcessor<WGS84Position, SWEREF99Position> processor = processor(16);
+        TestPublisher publisher = new TestPublisher(positions(10));
+        publisher.subscribe(processor);
+        TestSubscriber subscriber = new TestSubscriber();
+        processor.subscribe(subscriber);
+        subscriber.subscription.request(0);
+
+        assertTrue(subscriber.error instanceof IllegalArgumentException);
+        assertTrue(publisher.cancelled);
+    }
+
+    @Test
+    public void testCancelStopsPublishing() {
+        CoordinateProcessor<WGS84Position, SWEREF99Position> processor = processor(16);
+        TestPublisher publisher = new TestPublisher(positions(100));
+        publisher.subscribe(processor);
+        TestSubscriber subscriber = new TestSubscriber();
+        processor.subscribe(subscriber);
+        subscriber.subscription.request(3);
+        subscriber.subscription.cancel();
+        subscriber.subscription.request(10);
+
+        assertEquals(3, subscriber.received.size());
+        assertTrue(publisher.cancelled);
+        assertFalse(subscriber.completed);
+    }
+
+    @Test
+    public void testRejectsSecondSubscriber() {
+        CoordinateProcessor<WGS84Position, SWEREF99Position> processor = processor(16);
+        processor.subscribe(new TestSubscriber());
+        TestSubscriber second = new TestSubscriber();
+        processor.subscribe(second);
+
+        assertTrue(second.error instanceof IllegalStateException);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGridAndProjectionMustMatch() {
+        new CoordinateProcessor<WGS84Position, SWEREF99Position>(Grid.WGS84, sweref, Grid.SWEREF99, sweref, MAPPER);
+    }
+
+    private CoordinateProcessor<WGS84Position, SWEREF99Position> processor(int batchSize) {
+        return new CoordinateProcessor<WGS84Position, SWEREF99Position>(Grid.WGS84, null, Grid.SWEREF99, sweref,
+                MAPPER, batchSize);
+    }
+
+    private static List<WGS84Position> positions(int count) {
+        List<WGS84Position> positions = new ArrayList<WGS84Position>();
+        for (int i = 0; i < count; i++) {
+            positions.add(new WGS84Position(55.5 + i * 0.01, 12.0 + i * 0.01));
+        }
+        return positions;
+    }
+
+    /**
+     * Publishes a list synchronously as records are requested.
+     */
+    private static final class TestPublisher implements Publisher<WGS84Position> {
+
+        private final List<WGS84Position> positions;
+        private Subscriber<? super WGS84Position> subscriber;
+        private int index;
+        private long requested;
+        private long pending;
+        private boolean cancelled;
+        private boolean emitting;
+
+        TestPublisher(List<WGS84Position> positions) {
+            this.positions = positions;
+        }
+
+        public void subscribe(Subscriber<? super WGS84Position> subscriber) {
+            this.subscriber = subscriber;
+            subscriber.onSubscribe(new TestSubscription());
+        }
+
+        final class TestSubscription implements Subscription {
+            public void request(long n) {
+                requested += n;
+                pending += n;
+                if (emitting || subscriber == null) {
+                    return;
+                }
+                emitting = true;
+                while (pending > 0 && index < positions.size() && !cancelled) {
+                    pending--;
+                    subscriber.onNext(positions.get(index++));
+                }
+                if (index == positions.size() && !cancelled) {
+                    cancelled = true;
+                    subscriber.onComplete();
+                }
+                emitting = false;
+            }
+
+            public void cancel() {
+                cancelled = true;
+            }
+        }
+    }
+
+    private static final class TestSubscriber implements Subscriber<SWEREF99Position> {
+
+        private final List<SWEREF99Position> received = new ArrayList<SWEREF99Position>();
+        private Subscription subscription;
+        private Throwable error;
+        private boolean completed;
+
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        public void onNext(SWEREF99Position element) {
+            received.add(element);
+        }
+
+        public void onError(Throwable error) {
+            this.error = error;
+        }
+
+        public void onComplete() {
+            completed = true;
+        }
+    }
+}